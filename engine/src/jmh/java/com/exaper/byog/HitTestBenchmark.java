@@ -0,0 +1,71 @@
+package com.exaper.byog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hit testing against the spatial index of vertex centers: finding the touched vertex and collecting vertices within a
+ * screen sized rectangle to draw, at random spots of the graph.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HitTestBenchmark {
+    private static final int PROBE_COUNT = 1024;
+    // Screen of 1080x1920 pixels showing vertices 30 pixels apart.
+    private static final float SCREEN_WIDTH = 36 * SyntheticGraph.SPACING;
+    private static final float SCREEN_HEIGHT = 64 * SyntheticGraph.SPACING;
+
+    @Param({"grid", "geometric", "scale_free"})
+    String graph;
+    @Param({"1000", "10000", "100000", "1000000"})
+    int edges;
+
+    private final SpatialIndex mIndex = new SpatialIndex(SyntheticGraph.SPACING);
+    private final IntList mResult = new IntList();
+    private final float[] mProbes = new float[PROBE_COUNT << 1];
+    private int mProbe;
+
+    @Setup
+    public void setUp() {
+        GraphSnapshot snapshot = SyntheticGraph.create(graph, edges);
+        for (int v = 0; v < snapshot.getVertexCount(); v++) {
+            mIndex.put(v, snapshot.getX(v), snapshot.getY(v));
+        }
+        Random random = new Random(snapshot.getVertexCount());
+        float side = SyntheticGraph.getSide(snapshot);
+        for (int i = 0; i < mProbes.length; i++) {
+            mProbes[i] = random.nextFloat() * side;
+        }
+    }
+
+    @Benchmark
+    public int findNearest() {
+        int probe = (mProbe++ & (PROBE_COUNT - 1)) << 1;
+        return mIndex.findNearest(mProbes[probe], mProbes[probe + 1], SyntheticGraph.SPACING, mResult);
+    }
+
+    @Benchmark
+    public int queryScreen() {
+        int probe = (mProbe++ & (PROBE_COUNT - 1)) << 1;
+        float x = mProbes[probe], y = mProbes[probe + 1];
+        mResult.clear();
+        mIndex.query(x, y, x + SCREEN_WIDTH, y + SCREEN_HEIGHT, mResult);
+        return mResult.size();
+    }
+}
@@ -0,0 +1,71 @@
+package com.exaper.byog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of dropping a vertex onto a neighbor: its edges move over to the neighbor in the edge store, components are
+ * joined and the vertex is removed. Every iteration merges a batch of random vertices of a freshly built graph, hubs
+ * of scale free graphs are the expensive ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, batchSize = MergeBenchmark.MERGES)
+@Measurement(iterations = 10, batchSize = MergeBenchmark.MERGES)
+@Fork(1)
+public class MergeBenchmark {
+    static final int MERGES = 100;
+    private static final long SEED = 7;
+
+    @Param({"grid", "geometric", "scale_free"})
+    String graph;
+    @Param({"1000", "10000", "100000", "1000000"})
+    int edges;
+
+    private final VertexModel mVertices = new VertexModel();
+    private final EdgeStore mEdges = new EdgeStore();
+    private Connectivity mConnectivity;
+    private GraphSnapshot mGraph;
+    private Random mRandom;
+
+    @Setup
+    public void setUp() {
+        mGraph = SyntheticGraph.create(graph, edges);
+    }
+
+    @Setup(Level.Iteration)
+    public void rebuild() {
+        mVertices.clear();
+        mEdges.clear();
+        SyntheticGraph.fill(mGraph, mVertices, mEdges);
+        mConnectivity = new Connectivity(mVertices, mEdges);
+        mConnectivity.getComponentCount();
+        mRandom = new Random(SEED);
+    }
+
+    @Benchmark
+    public void merge() {
+        int victim;
+        do {
+            victim = mRandom.nextInt(mVertices.getIdCount());
+        } while (!mVertices.contains(victim) || mEdges.getDegree(victim) == 0);
+        int absorber = mEdges.getOppositeVertex(mEdges.getIncidentEdge(victim, 0), victim);
+        mEdges.mergeVertices(absorber, victim);
+        mConnectivity.mergeVertices(absorber, victim);
+        mVertices.remove(victim);
+    }
+}
@@ -0,0 +1,75 @@
+package com.exaper.byog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packing every edge into the line buffer drawn with a single call, as a frame of the edge renderer does. Zoomed out
+ * the whole graph is on the screen, zoomed in most edges are culled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackBenchmark {
+    private static final int SCREEN_WIDTH = 1080;
+    private static final int SCREEN_HEIGHT = 1920;
+    private static final float LINE_WIDTH = 2;
+
+    @Param({"grid", "geometric", "scale_free"})
+    String graph;
+    @Param({"1000", "10000", "100000", "1000000"})
+    int edges;
+
+    private final VertexModel mVertices = new VertexModel();
+    private final EdgeStore mEdges = new EdgeStore();
+    private final Viewport mZoomedOut = new Viewport();
+    private final Viewport mZoomedIn = new Viewport();
+    private LineBuffer mZoomedOutLines;
+    private LineBuffer mZoomedInLines;
+
+    @Setup
+    public void setUp() {
+        GraphSnapshot snapshot = SyntheticGraph.create(graph, edges);
+        SyntheticGraph.fill(snapshot, mVertices, mEdges);
+        float side = SyntheticGraph.getSide(snapshot);
+        mZoomedOut.zoom(SCREEN_WIDTH / side, 0, 0);
+        mZoomedIn.zoom(3, 0, 0);
+        mZoomedOutLines = new LineBuffer(mZoomedOut);
+        mZoomedInLines = new LineBuffer(mZoomedIn);
+    }
+
+    @Benchmark
+    public int packZoomedOut() {
+        return pack(mZoomedOutLines);
+    }
+
+    @Benchmark
+    public int packZoomedIn() {
+        return pack(mZoomedInLines);
+    }
+
+    private int pack(LineBuffer lines) {
+        EdgeStore edges = mEdges;
+        lines.clear(edges.getEdgeCount(), SCREEN_WIDTH, SCREEN_HEIGHT, LINE_WIDTH);
+        for (int edge = 0, edgeIdCount = edges.getEdgeIdCount(); edge < edgeIdCount; edge++) {
+            if (edges.isEdge(edge)) {
+                lines.add(mVertices, edges.getSource(edge), edges.getTarget(edge));
+            }
+        }
+        return lines.getLineCount();
+    }
+}
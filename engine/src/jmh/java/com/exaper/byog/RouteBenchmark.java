@@ -0,0 +1,87 @@
+package com.exaper.byog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch routing throughput by number of threads. oneToMany routes from START to every vertex, allPairs routes between
+ * all pairs of vertices. Rows are summed up as they stream in, nothing is collected.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RouteBenchmark {
+    @Param({"grid", "geometric", "scale_free"})
+    String graph;
+    @Param({"1000", "10000"})
+    int edges;
+    @Param({"1", "2", "4", "8"})
+    int threads;
+
+    private BatchRouter mRouter;
+    private ExecutorService mExecutor;
+    private int[] mSources;
+    private int[] mVertices;
+
+    @Setup
+    public void setUp() {
+        GraphSnapshot snapshot = SyntheticGraph.create(graph, edges);
+        mRouter = new BatchRouter(snapshot, threads);
+        mExecutor = Executors.newFixedThreadPool(threads);
+        mSources = new int[]{snapshot.getStart()};
+        mVertices = new int[snapshot.getVertexCount()];
+        for (int v = 0; v < mVertices.length; v++) {
+            mVertices[v] = v;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mExecutor.shutdown();
+    }
+
+    @Benchmark
+    public void oneToMany(Blackhole blackhole) throws InterruptedException {
+        mRouter.route(mSources, mVertices, new SumListener(blackhole), mExecutor);
+    }
+
+    @Benchmark
+    public void allPairs(Blackhole blackhole) throws InterruptedException {
+        mRouter.routeAllPairs(new SumListener(blackhole), mExecutor);
+    }
+
+    private static final class SumListener implements BatchRouter.Listener {
+        private final Blackhole mBlackhole;
+
+        SumListener(Blackhole blackhole) {
+            mBlackhole = blackhole;
+        }
+
+        @Override
+        public void onRow(BatchRouter.Row row) {
+            double sum = 0;
+            for (int i = 0, count = row.getTargetCount(); i < count; i++) {
+                sum += row.getDistance(i);
+            }
+            mBlackhole.consume(sum);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.exaper.byog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shortest path latency of every path search, jgrapht_dijkstra being the baseline the others are compared to.
+ * dragFrame solves after a vertex of the shortest path moved, as every frame of a drag does. rebuild solves on a graph
+ * of a new structure, as the first search after an edit does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolveBenchmark {
+    @Param({"grid", "geometric", "scale_free"})
+    String graph;
+    @Param({"1000", "10000", "100000", "1000000"})
+    int edges;
+    @Param({"incremental", "dijkstra", "a_star", "bidirectional_a_star", "jgrapht_dijkstra"})
+    String search;
+
+    private final ShortestPathEngine mEngine = new ShortestPathEngine();
+    // Graph with a vertex of the shortest path at two positions.
+    private final GraphSnapshot[] mDragFrames = new GraphSnapshot[2];
+    // Graph under two structure versions.
+    private final GraphSnapshot[] mStructures = new GraphSnapshot[2];
+    private int mFrame;
+
+    @Setup
+    public void setUp() {
+        GraphSnapshot snapshot = SyntheticGraph.create(graph, edges);
+        mEngine.setPathSearch(createPathSearch(search));
+        mEngine.update(snapshot);
+        IntList path = mEngine.getShortestPath();
+        int dragged = path.get(path.size() / 2);
+        for (int i = 0; i < 2; i++) {
+            float[] coordinates = new float[snapshot.getVertexCount() << 1];
+            for (int v = 0; v < snapshot.getVertexCount(); v++) {
+                coordinates[v << 1] = snapshot.getX(v);
+                coordinates[(v << 1) + 1] = snapshot.getY(v);
+            }
+            coordinates[dragged << 1] += i * SyntheticGraph.SPACING / 2;
+            int[] edgeArray = new int[snapshot.getEdgeCount() << 1];
+            for (int e = 0; e < snapshot.getEdgeCount(); e++) {
+                edgeArray[e << 1] = snapshot.getEdgeSource(e);
+                edgeArray[(e << 1) + 1] = snapshot.getEdgeTarget(e);
+            }
+            mDragFrames[i] = new GraphSnapshot(0, edgeArray, coordinates, snapshot.getStart(), snapshot.getEnd());
+            mStructures[i] = new GraphSnapshot(i + 1, edgeArray, coordinates, snapshot.getStart(),
+                    snapshot.getEnd());
+        }
+    }
+
+    @Benchmark
+    public IntList dragFrame() {
+        mEngine.update(mDragFrames[mFrame++ & 1]);
+        return mEngine.getShortestPath();
+    }
+
+    @Benchmark
+    public IntList rebuild() {
+        mEngine.update(mStructures[mFrame++ & 1]);
+        return mEngine.getShortestPath();
+    }
+
+    private static PathSearch createPathSearch(String search) {
+        switch (search) {
+            case "incremental":
+                return null;
+            case "dijkstra":
+                return new DijkstraPathSearch();
+            case "a_star":
+                return new AStarPathSearch();
+            case "bidirectional_a_star":
+                return new BidirectionalAStarPathSearch();
+            case "jgrapht_dijkstra":
+                return new JGraphTPathSearch();
+            default:
+                throw new IllegalArgumentException("Unknown path search " + search);
+        }
+    }
+}
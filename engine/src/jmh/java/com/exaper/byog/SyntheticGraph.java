@@ -0,0 +1,198 @@
+package com.exaper.byog;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Deterministic graphs benchmarks run on, sized by their number of edges:
+ * <ul>
+ * <li>grid: square grid with slightly jittered vertices,</li>
+ * <li>geometric: random points connected to the ones within a radius, about 8 neighbors per vertex,</li>
+ * <li>scale_free: Barabasi-Albert graph, every vertex attaches to 4 earlier ones preferring well connected ones.</li>
+ * </ul>
+ * Vertices are {@link #SPACING} apart on average. START and END are two far apart vertices of a component holding at
+ * least half of the graph.
+ */
+final class SyntheticGraph {
+    static final float SPACING = 10;
+
+    private static final long SEED = 42;
+    private static final int SCALE_FREE_DEGREE = 4;
+    private static final float GEOMETRIC_DEGREE = 8;
+
+    private SyntheticGraph() {
+    }
+
+    static GraphSnapshot create(String type, int edgeCount) {
+        Random random = new Random(SEED);
+        IntList edges = new IntList();
+        float[] coordinates;
+        switch (type) {
+            case "grid":
+                coordinates = grid(edgeCount, random, edges);
+                break;
+            case "geometric":
+                coordinates = geometric(edgeCount, random, edges);
+                break;
+            case "scale_free":
+                coordinates = scaleFree(edgeCount, random, edges);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown graph " + type);
+        }
+        return withEndpoints(edges.toArray(), coordinates);
+    }
+
+    /**
+     * Adds vertices and edges of the graph to empty model and store, vertex ids match snapshot indices.
+     */
+    static void fill(GraphSnapshot graph, VertexModel vertices, EdgeStore edges) {
+        for (int v = 0, vertexCount = graph.getVertexCount(); v < vertexCount; v++) {
+            vertices.add(VertexModel.TYPE_INTERMEDIATE, graph.getX(v), graph.getY(v));
+        }
+        for (int e = 0, edgeCount = graph.getEdgeCount(); e < edgeCount; e++) {
+            edges.addEdge(graph.getEdgeSource(e), graph.getEdgeTarget(e));
+        }
+    }
+
+    /**
+     * @return side of the square holding vertices of the graph.
+     */
+    static float getSide(GraphSnapshot graph) {
+        return (float) Math.sqrt(graph.getVertexCount()) * SPACING;
+    }
+
+    private static float[] grid(int edgeCount, Random random, IntList edges) {
+        // Grid of side s has 2s(s - 1) edges.
+        int side = (int) Math.ceil((1 + Math.sqrt(1 + 2.0 * edgeCount)) / 2);
+        float[] coordinates = new float[side * side << 1];
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int v = row * side + column;
+                coordinates[v << 1] = (column + (random.nextFloat() - 0.5f) / 2) * SPACING;
+                coordinates[(v << 1) + 1] = (row + (random.nextFloat() - 0.5f) / 2) * SPACING;
+                if (column > 0) {
+                    edges.add(v - 1);
+                    edges.add(v);
+                }
+                if (row > 0) {
+                    edges.add(v - side);
+                    edges.add(v);
+                }
+            }
+        }
+        return coordinates;
+    }
+
+    private static float[] geometric(int edgeCount, Random random, IntList edges) {
+        int vertexCount = Math.max(2, Math.round(edgeCount * 2 / GEOMETRIC_DEGREE));
+        float side = (float) Math.sqrt(vertexCount) * SPACING;
+        // Disk of this radius holds GEOMETRIC_DEGREE vertices on average.
+        float radius = (float) (SPACING * Math.sqrt(GEOMETRIC_DEGREE / Math.PI));
+        float[] coordinates = randomCoordinates(vertexCount, side, random);
+        // Vertices bucketed into cells of the radius, so that only neighboring cells are compared.
+        int columns = (int) Math.ceil(side / radius) + 1;
+        int[] heads = new int[columns * columns];
+        int[] next = new int[vertexCount];
+        Arrays.fill(heads, -1);
+        for (int v = 0; v < vertexCount; v++) {
+            int cell = (int) (coordinates[(v << 1) + 1] / radius) * columns + (int) (coordinates[v << 1] / radius);
+            next[v] = heads[cell];
+            heads[cell] = v;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            int column = (int) (coordinates[v << 1] / radius), row = (int) (coordinates[(v << 1) + 1] / radius);
+            for (int r = Math.max(0, row - 1); r <= Math.min(columns - 1, row + 1); r++) {
+                for (int c = Math.max(0, column - 1); c <= Math.min(columns - 1, column + 1); c++) {
+                    for (int other = heads[r * columns + c]; other >= 0; other = next[other]) {
+                        if (other > v && Math.hypot(coordinates[other << 1] - coordinates[v << 1],
+                                coordinates[(other << 1) + 1] - coordinates[(v << 1) + 1]) <= radius) {
+                            edges.add(v);
+                            edges.add(other);
+                        }
+                    }
+                }
+            }
+        }
+        return coordinates;
+    }
+
+    private static float[] scaleFree(int edgeCount, Random random, IntList edges) {
+        int degree = SCALE_FREE_DEGREE;
+        int vertexCount = Math.max(degree + 1, edgeCount / degree);
+        float[] coordinates = randomCoordinates(vertexCount, (float) Math.sqrt(vertexCount) * SPACING, random);
+        // Endpoints of all edges, a uniform pick from them picks vertices proportionally to their degree.
+        IntList endpoints = new IntList();
+        for (int v = 1; v <= degree; v++) {
+            addEdge(edges, endpoints, v - 1, v);
+        }
+        int[] targets = new int[degree];
+        for (int v = degree + 1; v < vertexCount; v++) {
+            int targetCount = 0;
+            while (targetCount < degree) {
+                int target = endpoints.get(random.nextInt(endpoints.size()));
+                boolean picked = false;
+                for (int i = 0; i < targetCount; i++) {
+                    picked |= targets[i] == target;
+                }
+                if (!picked) {
+                    targets[targetCount++] = target;
+                }
+            }
+            for (int i = 0; i < degree; i++) {
+                addEdge(edges, endpoints, targets[i], v);
+            }
+        }
+        return coordinates;
+    }
+
+    private static void addEdge(IntList edges, IntList endpoints, int v1, int v2) {
+        edges.add(v1);
+        edges.add(v2);
+        endpoints.add(v1);
+        endpoints.add(v2);
+    }
+
+    private static float[] randomCoordinates(int vertexCount, float side, Random random) {
+        float[] coordinates = new float[vertexCount << 1];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = random.nextFloat() * side;
+        }
+        return coordinates;
+    }
+
+    /**
+     * @return graph with START at a vertex of a large component and END at the last vertex breadth first search from
+     * it reaches.
+     */
+    private static GraphSnapshot withEndpoints(int[] edges, float[] coordinates) {
+        CompactGraph compactGraph = new CompactGraph();
+        compactGraph.build(new GraphSnapshot(0, edges, coordinates, -1, -1));
+        int vertexCount = coordinates.length >> 1;
+        int[] queue = new int[vertexCount];
+        boolean[] visited = new boolean[vertexCount];
+        for (int start = 0; start < vertexCount; start++) {
+            if (visited[start]) {
+                continue;
+            }
+            int head = 0, tail = 0;
+            queue[tail++] = start;
+            visited[start] = true;
+            while (head < tail) {
+                int vertex = queue[head++];
+                for (int arc = compactGraph.getFirstArc(vertex), last = compactGraph.getFirstArc(vertex + 1);
+                     arc < last; arc++) {
+                    int other = compactGraph.getArcVertex(arc);
+                    if (!visited[other]) {
+                        visited[other] = true;
+                        queue[tail++] = other;
+                    }
+                }
+            }
+            if (tail * 2 >= vertexCount) {
+                return new GraphSnapshot(0, edges, coordinates, start, queue[tail - 1]);
+            }
+        }
+        throw new IllegalStateException("Graph has no large component");
+    }
+}
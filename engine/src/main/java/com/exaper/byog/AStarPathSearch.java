@@ -0,0 +1,43 @@
+package com.exaper.byog;
+
+/**
+ * A* guided by straight line distance to the end vertex. Heuristic is admissible and consistent because
+ * {@link CompactGraph} weights are Euclidean distances between vertex positions.
+ */
+public class AStarPathSearch implements PathSearch {
+    private final SearchState mState = new SearchState();
+
+    @Override
+    public boolean findPath(CompactGraph graph, int start, int end, IntList path) {
+        SearchState state = mState;
+        IntMinHeap queue = state.queue;
+        state.reset(graph.getVertexCount());
+        state.setDistance(start, 0, -1);
+        queue.push(start, graph.distance(start, end));
+        while (!queue.isEmpty()) {
+            int vertex = queue.poll();
+            if (vertex == end) {
+                path.clear();
+                path.add(start);
+                state.appendPath(graph, start, end, path);
+                return true;
+            }
+            double distance = state.getDistance(vertex);
+            for (int arc = graph.getFirstArc(vertex), last = graph.getFirstArc(vertex + 1); arc < last; arc++) {
+                int edge = graph.getArcEdge(arc);
+                int other = graph.getArcVertex(arc);
+                double otherDistance = distance + graph.getWeight(edge);
+                if (otherDistance < state.getDistance(other)) {
+                    state.setDistance(other, otherDistance, edge);
+                    queue.push(other, otherDistance + graph.distance(other, end));
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long getSettledVertexCount() {
+        return mState.queue.getPollCount();
+    }
+}
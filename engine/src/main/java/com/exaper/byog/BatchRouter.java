@@ -0,0 +1,251 @@
+package com.exaper.byog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless one-to-many and many-to-many shortest path queries. Every source gets a Dijkstra which stops once all
+ * targets are settled. Sources are claimed one at a time by tasks running in parallel, so tasks that get the cheap
+ * sources take more of them. Each task has its own search state, and all of them read the same graph.
+ * <p>
+ * Results are streamed to a {@link Listener} a {@link Row} at a time instead of being collected. Memory taken by an
+ * all-pairs query is then a search state per task rather than the distance matrix. Every query gets tasks of its own,
+ * so queries can run at once and tasks of an interrupted query cannot disturb the next one.
+ */
+public class BatchRouter {
+    public interface Listener {
+        /**
+         * Called on the task threads, possibly by several of them at once, with sources in no particular order.
+         *
+         * @param row distances from a source to all targets. It is reused once this returns.
+         */
+        void onRow(Row row);
+    }
+
+    /**
+     * Shortest paths from a source to every target, read straight from the search tree.
+     */
+    public static final class Row {
+        private final SearchState mState = new SearchState();
+        private CompactGraph mGraph;
+        private int[] mTargets;
+        private int mSourceIndex;
+        private int mSource;
+
+        /**
+         * @return index of the source in the sources passed to the query.
+         */
+        public int getSourceIndex() {
+            return mSourceIndex;
+        }
+
+        public int getSource() {
+            return mSource;
+        }
+
+        public int getTargetCount() {
+            return mTargets.length;
+        }
+
+        public int getTarget(int targetIndex) {
+            return mTargets[targetIndex];
+        }
+
+        /**
+         * @return length of the shortest path to the target or {@link Double#POSITIVE_INFINITY} if there is none.
+         */
+        public double getDistance(int targetIndex) {
+            return mState.getDistance(mTargets[targetIndex]);
+        }
+
+        /**
+         * @param path receives vertices of the shortest path from the source to the target, both inclusive.
+         * @return false if there is no path to the target.
+         */
+        public boolean getPath(int targetIndex, IntList path) {
+            int target = mTargets[targetIndex];
+            if (!mState.isReached(target)) {
+                return false;
+            }
+            path.clear();
+            path.add(mSource);
+            mState.appendPath(mGraph, mSource, target, path);
+            return true;
+        }
+    }
+
+    // Only read once built, shared by all tasks.
+    private final CompactGraph mGraph = new CompactGraph();
+    private final int mParallelism;
+
+    /**
+     * @param snapshot    graph to query, it is copied and can be reused right away.
+     * @param parallelism number of tasks a query runs at once.
+     */
+    public BatchRouter(GraphSnapshot snapshot, int parallelism) {
+        mGraph.build(snapshot);
+        mParallelism = parallelism;
+    }
+
+    public int getVertexCount() {
+        return mGraph.getVertexCount();
+    }
+
+    /**
+     * Finds shortest paths from every source to every target and hands them to the listener a source at a time.
+     * Blocks until all sources are done.
+     *
+     * @throws InterruptedException if interrupted, rows of some of the sources might have been delivered.
+     * @throws RuntimeException    thrown by the listener, remaining sources are skipped then.
+     */
+    public void route(int[] sources, int[] targets, Listener listener, ExecutorService executor)
+            throws InterruptedException {
+        checkVertices(sources);
+        checkVertices(targets);
+        Query query = new Query(sources, targets, mGraph.getVertexCount(), listener);
+        List<RowSearch> searches = new ArrayList<>(mParallelism);
+        for (int i = 0; i < mParallelism; i++) {
+            searches.add(new RowSearch(query));
+        }
+        List<Future<Void>> futures = executor.invokeAll(searches);
+        try {
+            for (int i = 0, size = futures.size(); i < size; i++) {
+                futures.get(i).get();
+            }
+        } catch (ExecutionException e) {
+            // Failures of the listener are rethrown as they are.
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Finds shortest paths between all pairs of vertices, see {@link #route}. A row per vertex is delivered, targets
+     * of a row are all vertices in order of their ids.
+     */
+    public void routeAllPairs(Listener listener, ExecutorService executor) throws InterruptedException {
+        int[] vertices = new int[mGraph.getVertexCount()];
+        for (int v = 0; v < vertices.length; v++) {
+            vertices[v] = v;
+        }
+        route(vertices, vertices, listener, executor);
+    }
+
+    private void checkVertices(int[] vertices) {
+        for (int vertex : vertices) {
+            if (vertex < 0 || vertex >= mGraph.getVertexCount()) {
+                throw new IllegalArgumentException("No vertex " + vertex);
+            }
+        }
+    }
+
+    private static final class Query {
+        final int[] sources;
+        final int[] targets;
+        final boolean[] targetMarks;
+        // Number of distinct targets.
+        final int targetCount;
+        final Listener listener;
+        // Next source to claim.
+        final AtomicInteger nextSource = new AtomicInteger();
+
+        Query(int[] sources, int[] targets, int vertexCount, Listener listener) {
+            this.sources = sources;
+            this.targets = targets;
+            this.listener = listener;
+            targetMarks = new boolean[vertexCount];
+            int targetCount = 0;
+            for (int target : targets) {
+                if (!targetMarks[target]) {
+                    targetMarks[target] = true;
+                    targetCount++;
+                }
+            }
+            this.targetCount = targetCount;
+        }
+    }
+
+    /**
+     * Claims sources of the query until there are none left and runs a search from each of them.
+     */
+    private final class RowSearch implements Callable<Void> {
+        private final Query mQuery;
+        private final Row mRow = new Row();
+
+        RowSearch(Query query) {
+            mQuery = query;
+            mRow.mGraph = mGraph;
+            mRow.mTargets = query.targets;
+        }
+
+        @Override
+        public Void call() throws InterruptedException {
+            Query query = mQuery;
+            int[] sources = query.sources;
+            Row row = mRow;
+            try {
+                for (int i = query.nextSource.getAndIncrement(); i < sources.length;
+                     i = query.nextSource.getAndIncrement()) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    row.mSourceIndex = i;
+                    row.mSource = sources[i];
+                    search(row.mState, sources[i]);
+                    query.listener.onRow(row);
+                }
+            } catch (InterruptedException | RuntimeException e) {
+                // Other tasks stop claiming sources as well.
+                query.nextSource.set(sources.length);
+                throw e;
+            }
+            return null;
+        }
+
+        /**
+         * Dijkstra from the source until all targets are settled. Targets left unreached have no path.
+         */
+        private void search(SearchState state, int source) {
+            CompactGraph graph = mGraph;
+            boolean[] targetMarks = mQuery.targetMarks;
+            IntMinHeap queue = state.queue;
+            state.reset(graph.getVertexCount());
+            state.setDistance(source, 0, -1);
+            int remainingTargets = mQuery.targetCount;
+            if (remainingTargets == 0) {
+                return;
+            }
+            queue.push(source, 0);
+            while (!queue.isEmpty()) {
+                int vertex = queue.poll();
+                if (targetMarks[vertex] && --remainingTargets == 0) {
+                    return;
+                }
+                double distance = state.getDistance(vertex);
+                for (int arc = graph.getFirstArc(vertex), last = graph.getFirstArc(vertex + 1); arc < last; arc++) {
+                    int edge = graph.getArcEdge(arc);
+                    int other = graph.getArcVertex(arc);
+                    double otherDistance = distance + graph.getWeight(edge);
+                    if (otherDistance < state.getDistance(other)) {
+                        state.setDistance(other, otherDistance, edge);
+                        queue.push(other, otherDistance);
+                    }
+                }
+            }
+        }
+    }
+}
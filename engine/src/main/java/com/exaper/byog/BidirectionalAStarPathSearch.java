@@ -0,0 +1,63 @@
+package com.exaper.byog;
+
+/**
+ * Bidirectional A* with average potential: forward search uses (d(v, end) - d(start, v)) / 2 and backward search
+ * its negation, where d is straight line distance. Both searches then see the same reduced edge costs, which lets
+ * them stop as soon as the sum of their queue minimums reaches the best path found so far.
+ */
+public class BidirectionalAStarPathSearch implements PathSearch {
+    private final SearchState mForward = new SearchState();
+    private final SearchState mBackward = new SearchState();
+
+    @Override
+    public boolean findPath(CompactGraph graph, int start, int end, IntList path) {
+        SearchState forward = mForward, backward = mBackward;
+        forward.reset(graph.getVertexCount());
+        backward.reset(graph.getVertexCount());
+        forward.setDistance(start, 0, -1);
+        forward.queue.push(start, potential(graph, start, end, start));
+        backward.setDistance(end, 0, -1);
+        backward.queue.push(end, -potential(graph, start, end, end));
+        double bestDistance = start == end ? 0 : Double.POSITIVE_INFINITY;
+        int meetingVertex = start == end ? start : -1;
+        while (!forward.queue.isEmpty() && !backward.queue.isEmpty() &&
+                forward.queue.peekKey() + backward.queue.peekKey() < bestDistance) {
+            boolean isForward = forward.queue.size() <= backward.queue.size();
+            SearchState search = isForward ? forward : backward;
+            SearchState other = isForward ? backward : forward;
+            int vertex = search.queue.poll();
+            double distance = search.getDistance(vertex);
+            for (int arc = graph.getFirstArc(vertex), last = graph.getFirstArc(vertex + 1); arc < last; arc++) {
+                int edge = graph.getArcEdge(arc);
+                int neighbour = graph.getArcVertex(arc);
+                double neighbourDistance = distance + graph.getWeight(edge);
+                if (neighbourDistance < search.getDistance(neighbour)) {
+                    search.setDistance(neighbour, neighbourDistance, edge);
+                    double potential = potential(graph, start, end, neighbour);
+                    search.queue.push(neighbour, neighbourDistance + (isForward ? potential : -potential));
+                    if (other.isReached(neighbour) && neighbourDistance + other.getDistance(neighbour) < bestDistance) {
+                        bestDistance = neighbourDistance + other.getDistance(neighbour);
+                        meetingVertex = neighbour;
+                    }
+                }
+            }
+        }
+        if (meetingVertex < 0) {
+            return false;
+        }
+        path.clear();
+        path.add(start);
+        forward.appendPath(graph, start, meetingVertex, path);
+        backward.appendReversedPath(graph, end, meetingVertex, path);
+        return true;
+    }
+
+    @Override
+    public long getSettledVertexCount() {
+        return mForward.queue.getPollCount() + mBackward.queue.getPollCount();
+    }
+
+    private static double potential(CompactGraph graph, int start, int end, int vertex) {
+        return (graph.distance(vertex, end) - graph.distance(start, vertex)) / 2;
+    }
+}
@@ -0,0 +1,151 @@
+package com.exaper.byog;
+
+/**
+ * Undirected graph with int vertices [0, vertexCount) and int edges [0, edgeCount), stored in compressed sparse row
+ * form: arcs of vertex v are [getFirstArc(v), getFirstArc(v + 1)). Edge weights are Euclidean distances between
+ * vertex positions and follow vertex moves. Arrays are reused between rebuilds, so rebuilding a graph which is not
+ * bigger than any of the previous ones does not allocate.
+ */
+public class CompactGraph {
+    private int mVertexCount;
+    private int mEdgeCount;
+    // Pairs of x, y coordinates of vertices.
+    private float[] mCoordinates = new float[0];
+    // Pairs of endpoints of edges.
+    private int[] mEdges = new int[0];
+    private double[] mWeights = new double[0];
+    private int[] mFirstArcs = new int[1];
+    private int[] mArcVertices = new int[0];
+    private int[] mArcEdges = new int[0];
+
+    public void build(GraphSnapshot snapshot) {
+        int vertexCount = snapshot.getVertexCount();
+        int edgeCount = snapshot.getEdgeCount();
+        ensureCapacity(vertexCount, edgeCount);
+        mVertexCount = vertexCount;
+        mEdgeCount = edgeCount;
+        for (int v = 0; v < vertexCount; v++) {
+            mCoordinates[v << 1] = snapshot.getX(v);
+            mCoordinates[(v << 1) + 1] = snapshot.getY(v);
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            mEdges[e << 1] = snapshot.getEdgeSource(e);
+            mEdges[(e << 1) + 1] = snapshot.getEdgeTarget(e);
+        }
+        buildArcs();
+    }
+
+    public int getVertexCount() {
+        return mVertexCount;
+    }
+
+    public int getEdgeCount() {
+        return mEdgeCount;
+    }
+
+    public float getX(int vertex) {
+        return mCoordinates[vertex << 1];
+    }
+
+    public float getY(int vertex) {
+        return mCoordinates[(vertex << 1) + 1];
+    }
+
+    /**
+     * Moves vertex and updates weights of its edges.
+     *
+     * @return false if vertex was at this position already.
+     */
+    public boolean setPosition(int vertex, float x, float y) {
+        if (mCoordinates[vertex << 1] == x && mCoordinates[(vertex << 1) + 1] == y) {
+            return false;
+        }
+        mCoordinates[vertex << 1] = x;
+        mCoordinates[(vertex << 1) + 1] = y;
+        for (int arc = mFirstArcs[vertex], end = mFirstArcs[vertex + 1]; arc < end; arc++) {
+            mWeights[mArcEdges[arc]] = distance(vertex, mArcVertices[arc]);
+        }
+        return true;
+    }
+
+    public int getFirstArc(int vertex) {
+        return mFirstArcs[vertex];
+    }
+
+    public int getDegree(int vertex) {
+        return mFirstArcs[vertex + 1] - mFirstArcs[vertex];
+    }
+
+    public int getArcVertex(int arc) {
+        return mArcVertices[arc];
+    }
+
+    public int getArcEdge(int arc) {
+        return mArcEdges[arc];
+    }
+
+    public int getEdgeSource(int edge) {
+        return mEdges[edge << 1];
+    }
+
+    public int getEdgeTarget(int edge) {
+        return mEdges[(edge << 1) + 1];
+    }
+
+    public int getOppositeVertex(int edge, int vertex) {
+        int source = mEdges[edge << 1];
+        return source != vertex ? source : mEdges[(edge << 1) + 1];
+    }
+
+    public double getWeight(int edge) {
+        return mWeights[edge];
+    }
+
+    public double distance(int vertex1, int vertex2) {
+        return Math.hypot(mCoordinates[vertex1 << 1] - mCoordinates[vertex2 << 1],
+                mCoordinates[(vertex1 << 1) + 1] - mCoordinates[(vertex2 << 1) + 1]);
+    }
+
+    private void ensureCapacity(int vertexCount, int edgeCount) {
+        if (mFirstArcs.length < vertexCount + 1) {
+            mCoordinates = new float[vertexCount << 1];
+            mFirstArcs = new int[vertexCount + 1];
+        }
+        if (mWeights.length < edgeCount) {
+            mEdges = new int[edgeCount << 1];
+            mWeights = new double[edgeCount];
+            mArcVertices = new int[edgeCount << 1];
+            mArcEdges = new int[edgeCount << 1];
+        }
+    }
+
+    private void buildArcs() {
+        // Counting sort of arcs by their origin: count degrees, turn them into offsets, then place arcs.
+        int[] firstArcs = mFirstArcs;
+        for (int v = 0; v <= mVertexCount; v++) {
+            firstArcs[v] = 0;
+        }
+        for (int i = 0, length = mEdgeCount << 1; i < length; i++) {
+            firstArcs[mEdges[i] + 1]++;
+        }
+        for (int v = 0; v < mVertexCount; v++) {
+            firstArcs[v + 1] += firstArcs[v];
+        }
+        for (int e = 0; e < mEdgeCount; e++) {
+            int source = mEdges[e << 1], target = mEdges[(e << 1) + 1];
+            // While placing, firstArcs[v] is the next free arc of v.
+            int sourceArc = firstArcs[source]++;
+            mArcVertices[sourceArc] = target;
+            mArcEdges[sourceArc] = e;
+            int targetArc = firstArcs[target]++;
+            mArcVertices[targetArc] = source;
+            mArcEdges[targetArc] = e;
+            mWeights[e] = distance(source, target);
+        }
+        // Placement advanced every offset to the start of the next vertex, shift them back.
+        for (int v = mVertexCount; v > 0; v--) {
+            firstArcs[v] = firstArcs[v - 1];
+        }
+        firstArcs[0] = 0;
+    }
+}
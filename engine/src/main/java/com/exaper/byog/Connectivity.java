@@ -0,0 +1,175 @@
+package com.exaper.byog;
+
+import java.util.Arrays;
+
+/**
+ * Connected components of the graph kept in a union-find forest with union by size and path halving, so queries take
+ * near constant time. Added vertices and edges, and merged vertices are applied incrementally. Union-find can not
+ * split components, so other removals invalidate the forest and it is rebuilt from the model on the next query.
+ * <p>
+ * Merged away vertices stay in the forest as ghosts linking their component together, they are not counted in
+ * component sizes.
+ */
+public class Connectivity {
+    private final VertexModel mVertices;
+    private final EdgeStore mEdges;
+    private int[] mParents = new int[0];
+    // Forest nodes under the root, ghosts included.
+    private int[] mNodes = new int[0];
+    // Live vertices under the root.
+    private int[] mSizes = new int[0];
+    private boolean[] mGhosts = new boolean[0];
+    private int mComponentCount;
+    private boolean mValid;
+
+    public Connectivity(VertexModel vertices, EdgeStore edges) {
+        mVertices = vertices;
+        mEdges = edges;
+    }
+
+    public boolean isConnected(int vertex1, int vertex2) {
+        ensureValid();
+        return find(vertex1) == find(vertex2);
+    }
+
+    public int getComponentCount() {
+        ensureValid();
+        return mComponentCount;
+    }
+
+    /**
+     * @return number of vertices in the component of the vertex.
+     */
+    public int getComponentSize(int vertex) {
+        ensureValid();
+        return mSizes[find(vertex)];
+    }
+
+    /**
+     * Registers an isolated vertex.
+     */
+    public void addVertex(int vertex) {
+        if (!mValid) {
+            return;
+        }
+        ensureCapacity(vertex + 1);
+        if (mGhosts[vertex] || mParents[vertex] != vertex || mNodes[vertex] != 1) {
+            // Recycled id is still linked into the forest.
+            invalidate();
+            return;
+        }
+        mSizes[vertex] = 1;
+        mComponentCount++;
+    }
+
+    /**
+     * Unregisters the vertex removed along with its edges.
+     */
+    public void removeVertex(int vertex) {
+        if (!mValid || mGhosts[vertex]) {
+            return;
+        }
+        if (mParents[vertex] == vertex && mNodes[vertex] == 1) {
+            mSizes[vertex] = 0;
+            mComponentCount--;
+        } else {
+            invalidate();
+        }
+    }
+
+    public void addEdge(int vertex1, int vertex2) {
+        if (mValid) {
+            union(vertex1, vertex2);
+        }
+    }
+
+    public void removeEdge(int vertex1, int vertex2) {
+        invalidate();
+    }
+
+    /**
+     * Applies moving edges of victim over to absorber. Victim stays as a ghost until the forest is rebuilt.
+     */
+    public void mergeVertices(int absorber, int victim) {
+        if (!mValid) {
+            return;
+        }
+        int root = union(absorber, victim);
+        mSizes[root]--;
+        mGhosts[victim] = true;
+    }
+
+    public void invalidate() {
+        mValid = false;
+    }
+
+    private void ensureValid() {
+        if (mValid) {
+            return;
+        }
+        int idCount = mVertices.getIdCount();
+        ensureCapacity(idCount);
+        mComponentCount = 0;
+        for (int vertex = 0; vertex < mParents.length; vertex++) {
+            boolean contains = vertex < idCount && mVertices.contains(vertex);
+            mParents[vertex] = vertex;
+            mNodes[vertex] = 1;
+            mSizes[vertex] = contains ? 1 : 0;
+            mGhosts[vertex] = false;
+            if (contains) {
+                mComponentCount++;
+            }
+        }
+        mValid = true;
+        for (int edge = 0, edgeIdCount = mEdges.getEdgeIdCount(); edge < edgeIdCount; edge++) {
+            if (mEdges.isEdge(edge)) {
+                union(mEdges.getSource(edge), mEdges.getTarget(edge));
+            }
+        }
+    }
+
+    /**
+     * @return root of the joined component.
+     */
+    private int union(int vertex1, int vertex2) {
+        int root1 = find(vertex1), root2 = find(vertex2);
+        if (root1 == root2) {
+            return root1;
+        }
+        if (mNodes[root1] < mNodes[root2]) {
+            int root = root1;
+            root1 = root2;
+            root2 = root;
+        }
+        mParents[root2] = root1;
+        mNodes[root1] += mNodes[root2];
+        mSizes[root1] += mSizes[root2];
+        mComponentCount--;
+        return root1;
+    }
+
+    private int find(int vertex) {
+        int[] parents = mParents;
+        while (parents[vertex] != vertex) {
+            parents[vertex] = parents[parents[vertex]];
+            vertex = parents[vertex];
+        }
+        return vertex;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (mParents.length >= capacity) {
+            return;
+        }
+        int oldLength = mParents.length;
+        int length = Math.max(capacity, oldLength << 1);
+        mParents = Arrays.copyOf(mParents, length);
+        mNodes = Arrays.copyOf(mNodes, length);
+        mSizes = Arrays.copyOf(mSizes, length);
+        mGhosts = Arrays.copyOf(mGhosts, length);
+        for (int vertex = oldLength; vertex < length; vertex++) {
+            mParents[vertex] = vertex;
+            mNodes[vertex] = 1;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.exaper.byog;
+
+import java.util.Arrays;
+
+/**
+ * Undirected simple graph edges between int vertices. Edges get recycled int ids, every vertex keeps an adjacency
+ * array of its edges and edges are additionally hashed by their unordered endpoint pair. Adding, finding and removing
+ * an edge take O(1), removing or merging a vertex takes O(degree).
+ */
+public class EdgeStore {
+    private final LongIntHashMap mEdgesByKey = new LongIntHashMap();
+    private final IntList mFreeEdges = new IntList();
+    private int[] mSources = new int[16];
+    private int[] mTargets = new int[16];
+    // Positions of the edge in adjacency arrays of its source and target.
+    private int[] mSourcePositions = new int[16];
+    private int[] mTargetPositions = new int[16];
+    private int[][] mAdjacency = new int[16][];
+    private int[] mDegrees = new int[16];
+    private int mEdgeIdCount;
+    private int mEdgeCount;
+    private int mVersion;
+
+    public int getEdgeCount() {
+        return mEdgeCount;
+    }
+
+    /**
+     * @return upper bound of edge ids, ids of removed edges in [0, getEdgeIdCount()) are not valid edges.
+     */
+    public int getEdgeIdCount() {
+        return mEdgeIdCount;
+    }
+
+    /**
+     * @return counter incremented on every change.
+     */
+    public int getVersion() {
+        return mVersion;
+    }
+
+    public boolean isEdge(int edge) {
+        return edge < mEdgeIdCount && mSources[edge] >= 0;
+    }
+
+    public int getSource(int edge) {
+        return mSources[edge];
+    }
+
+    public int getTarget(int edge) {
+        return mTargets[edge];
+    }
+
+    public int getOppositeVertex(int edge, int vertex) {
+        return mSources[edge] != vertex ? mSources[edge] : mTargets[edge];
+    }
+
+    public int getDegree(int vertex) {
+        return vertex < mDegrees.length ? mDegrees[vertex] : 0;
+    }
+
+    public int getIncidentEdge(int vertex, int index) {
+        return mAdjacency[vertex][index];
+    }
+
+    /**
+     * @return edge between vertices or -1 if there is none.
+     */
+    public int findEdge(int vertex1, int vertex2) {
+        return mEdgesByKey.get(key(vertex1, vertex2));
+    }
+
+    /**
+     * @return id of the new edge or -1 if it would be a loop or a duplicate.
+     */
+    public int addEdge(int vertex1, int vertex2) {
+        if (vertex1 == vertex2) {
+            return -1;
+        }
+        long key = key(vertex1, vertex2);
+        if (mEdgesByKey.get(key) >= 0) {
+            return -1;
+        }
+        int edge = mFreeEdges.isEmpty() ? mEdgeIdCount++ : mFreeEdges.removeLast();
+        ensureEdgeCapacity(edge + 1);
+        ensureVertexCapacity(Math.max(vertex1, vertex2) + 1);
+        mSources[edge] = vertex1;
+        mTargets[edge] = vertex2;
+        mSourcePositions[edge] = append(vertex1, edge);
+        mTargetPositions[edge] = append(vertex2, edge);
+        mEdgesByKey.put(key, edge);
+        mEdgeCount++;
+        mVersion++;
+        return edge;
+    }
+
+    public void removeEdge(int edge) {
+        int source = mSources[edge], target = mTargets[edge];
+        detach(source, mSourcePositions[edge]);
+        detach(target, mTargetPositions[edge]);
+        mEdgesByKey.remove(key(source, target));
+        mSources[edge] = mTargets[edge] = -1;
+        mFreeEdges.add(edge);
+        mEdgeCount--;
+        mVersion++;
+    }
+
+    public void removeVertex(int vertex) {
+        while (getDegree(vertex) > 0) {
+            removeEdge(mAdjacency[vertex][mDegrees[vertex] - 1]);
+        }
+    }
+
+    /**
+     * Moves edges of victim over to absorber. Edges which would become loops or duplicates are dropped.
+     */
+    public void mergeVertices(int absorber, int victim) {
+        if (absorber == victim) {
+            return;
+        }
+        while (getDegree(victim) > 0) {
+            int edge = mAdjacency[victim][mDegrees[victim] - 1];
+            int other = getOppositeVertex(edge, victim);
+            removeEdge(edge);
+            addEdge(absorber, other);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(mDegrees, 0);
+        Arrays.fill(mSources, -1);
+        Arrays.fill(mTargets, -1);
+        mEdgesByKey.clear();
+        mFreeEdges.clear();
+        mEdgeIdCount = 0;
+        mEdgeCount = 0;
+        mVersion++;
+    }
+
+    /**
+     * @return position of the edge in vertex adjacency array.
+     */
+    private int append(int vertex, int edge) {
+        int[] adjacency = mAdjacency[vertex];
+        int degree = mDegrees[vertex];
+        if (adjacency == null) {
+            adjacency = mAdjacency[vertex] = new int[4];
+        } else if (degree == adjacency.length) {
+            adjacency = mAdjacency[vertex] = Arrays.copyOf(adjacency, degree << 1);
+        }
+        adjacency[degree] = edge;
+        mDegrees[vertex] = degree + 1;
+        return degree;
+    }
+
+    /**
+     * Removes edge at the position from vertex adjacency array by moving the last edge into its place.
+     */
+    private void detach(int vertex, int position) {
+        int[] adjacency = mAdjacency[vertex];
+        int last = --mDegrees[vertex];
+        if (position != last) {
+            int moved = adjacency[last];
+            adjacency[position] = moved;
+            if (mSources[moved] == vertex) {
+                mSourcePositions[moved] = position;
+            } else {
+                mTargetPositions[moved] = position;
+            }
+        }
+    }
+
+    private void ensureEdgeCapacity(int capacity) {
+        if (capacity > mSources.length) {
+            int oldCapacity = mSources.length;
+            int newCapacity = Math.max(capacity, oldCapacity << 1);
+            mSources = Arrays.copyOf(mSources, newCapacity);
+            mTargets = Arrays.copyOf(mTargets, newCapacity);
+            mSourcePositions = Arrays.copyOf(mSourcePositions, newCapacity);
+            mTargetPositions = Arrays.copyOf(mTargetPositions, newCapacity);
+            Arrays.fill(mSources, oldCapacity, newCapacity, -1);
+            Arrays.fill(mTargets, oldCapacity, newCapacity, -1);
+        }
+    }
+
+    private void ensureVertexCapacity(int capacity) {
+        if (capacity > mDegrees.length) {
+            int newCapacity = Math.max(capacity, mDegrees.length << 1);
+            mAdjacency = Arrays.copyOf(mAdjacency, newCapacity);
+            mDegrees = Arrays.copyOf(mDegrees, newCapacity);
+        }
+    }
+
+    /**
+     * @return key of the unordered vertex pair.
+     */
+    private static long key(int vertex1, int vertex2) {
+        return vertex1 < vertex2 ? ((long) vertex1 << 32) | vertex2 : ((long) vertex2 << 32) | vertex1;
+    }
+}
@@ -0,0 +1,335 @@
+package com.exaper.byog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Fruchterman-Reingold force-directed layout. Vertices repel each other and edges pull their ends together, the
+ * largest step a vertex can make shrinks every iteration until the layout settles.
+ * <p>
+ * Repulsion is approximated with a Barnes-Hut quadtree: a distant cell acts as a single body at its center of mass,
+ * which makes an iteration O(n log n) instead of O(n^2). Forces are computed for chunks of vertices in parallel, every
+ * chunk writes displacements of its own vertices only. Vertices are dense ids 0..n-1.
+ */
+public class ForceLayout {
+    // Cells smaller than THETA times their distance are approximated.
+    private static final float THETA = 0.8f;
+    private static final float COOLING = 0.95f;
+    private static final float GRAVITY = 0.1f;
+    // Relative strength of repulsion, as in Hu's spring-electrical model, keeps large graphs from spreading out.
+    private static final float REPULSION = 0.2f;
+    // Layout has converged once no vertex moves farther than this fraction of the edge length.
+    private static final float CONVERGENCE = 0.01f;
+    private static final int MAX_ITERATIONS = 500;
+    private static final int MAX_DEPTH = 24;
+    private static final int MIN_CHUNK_SIZE = 1024;
+
+    private final int mVertexCount;
+    private final float[] mX;
+    private final float[] mY;
+    private final float[] mDX;
+    private final float[] mDY;
+    // Neighbors of vertex v are mNeighbors[mNeighborOffsets[v]..mNeighborOffsets[v + 1]).
+    private final int[] mNeighborOffsets;
+    private final int[] mNeighbors;
+    private final float mEdgeLength;
+    private final List<Callable<Void>> mChunks = new ArrayList<>();
+    private float mTemperature;
+    private float mMaxMove = Float.POSITIVE_INFINITY;
+    private int mIteration;
+    private float mCenterX;
+    private float mCenterY;
+
+    // Quadtree, node 0 is the root and children of a node take four consecutive slots.
+    private int mNodeCount;
+    private int[] mFirstChild = new int[0];
+    // Vertex of a single vertex leaf, -1 for empty leaves and inner nodes, -2 for leaves of coincident vertices.
+    private int[] mNodeVertex = new int[0];
+    private float[] mMass = new float[0];
+    private float[] mMassX = new float[0];
+    private float[] mMassY = new float[0];
+    private float[] mNodeX = new float[0];
+    private float[] mNodeY = new float[0];
+    private float[] mNodeHalfSize = new float[0];
+
+    /**
+     * @param coordinates x and y of every vertex, interleaved.
+     * @param edges       ends of every edge, interleaved.
+     * @param edgeLength  desired distance between connected vertices.
+     */
+    public ForceLayout(float[] coordinates, int[] edges, float edgeLength) {
+        int vertexCount = coordinates.length >> 1;
+        mVertexCount = vertexCount;
+        mX = new float[vertexCount];
+        mY = new float[vertexCount];
+        mDX = new float[vertexCount];
+        mDY = new float[vertexCount];
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (int v = 0; v < vertexCount; v++) {
+            mX[v] = coordinates[v << 1];
+            mY[v] = coordinates[(v << 1) + 1];
+            minX = Math.min(minX, mX[v]);
+            maxX = Math.max(maxX, mX[v]);
+            minY = Math.min(minY, mY[v]);
+            maxY = Math.max(maxY, mY[v]);
+        }
+        mNeighborOffsets = new int[vertexCount + 1];
+        mNeighbors = new int[edges.length];
+        for (int edge : edges) {
+            mNeighborOffsets[edge + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            mNeighborOffsets[v + 1] += mNeighborOffsets[v];
+        }
+        int[] positions = new int[vertexCount];
+        for (int i = 0; i < edges.length; i += 2) {
+            int v1 = edges[i], v2 = edges[i + 1];
+            mNeighbors[mNeighborOffsets[v1] + positions[v1]++] = v2;
+            mNeighbors[mNeighborOffsets[v2] + positions[v2]++] = v1;
+        }
+        mEdgeLength = edgeLength;
+        // Vertices might need to travel across the whole layout at first.
+        float extent = vertexCount > 0 ? Math.max(maxX - minX, maxY - minY) : 0;
+        mTemperature = Math.max(extent, edgeLength * (float) Math.sqrt(vertexCount)) / 10;
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, vertexCount / (Runtime.getRuntime().availableProcessors() * 4) + 1);
+        for (int start = 0; start < vertexCount; start += chunkSize) {
+            mChunks.add(new Chunk(start, Math.min(vertexCount, start + chunkSize)));
+        }
+    }
+
+    public int getVertexCount() {
+        return mVertexCount;
+    }
+
+    public boolean isConverged() {
+        return mVertexCount < 2 || mIteration >= MAX_ITERATIONS || mMaxMove < mEdgeLength * CONVERGENCE;
+    }
+
+    /**
+     * Copies x and y of every vertex, interleaved, into coordinates.
+     */
+    public void getCoordinates(float[] coordinates) {
+        for (int v = 0; v < mVertexCount; v++) {
+            coordinates[v << 1] = mX[v];
+            coordinates[(v << 1) + 1] = mY[v];
+        }
+    }
+
+    /**
+     * Copies x and y of every vertex, interleaved, into the pair of coordinates at the given index.
+     *
+     * @param indices index of the pair of every vertex, such as its id in a {@link VertexModel}.
+     */
+    public void getCoordinates(float[] coordinates, int[] indices) {
+        for (int v = 0; v < mVertexCount; v++) {
+            int index = indices[v];
+            coordinates[index << 1] = mX[v];
+            coordinates[(index << 1) + 1] = mY[v];
+        }
+    }
+
+    /**
+     * Runs an iteration, computing forces on the executor.
+     */
+    public void step(ExecutorService executor) throws InterruptedException {
+        buildQuadtree();
+        float centerX = 0, centerY = 0;
+        for (int v = 0; v < mVertexCount; v++) {
+            centerX += mX[v];
+            centerY += mY[v];
+        }
+        mCenterX = centerX / mVertexCount;
+        mCenterY = centerY / mVertexCount;
+        List<Future<Void>> futures = executor.invokeAll(mChunks);
+        try {
+            for (int i = 0, size = futures.size(); i < size; i++) {
+                futures.get(i).get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        float maxMove = 0, temperature = mTemperature;
+        for (int v = 0; v < mVertexCount; v++) {
+            float dX = mDX[v], dY = mDY[v];
+            float length = (float) Math.sqrt(dX * dX + dY * dY);
+            if (length > 0) {
+                float move = Math.min(length, temperature);
+                mX[v] += dX / length * move;
+                mY[v] += dY / length * move;
+                maxMove = Math.max(maxMove, move);
+            }
+        }
+        mMaxMove = maxMove;
+        mTemperature *= COOLING;
+        mIteration++;
+    }
+
+    private void computeDisplacement(int v, int[] stack) {
+        float x = mX[v], y = mY[v];
+        float k2 = REPULSION * mEdgeLength * mEdgeLength;
+        float dX = 0, dY = 0;
+        // Repulsion k^2 / d from other vertices, cells far enough act as a whole.
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            float mass = mMass[node];
+            if (mass == 0) {
+                continue;
+            }
+            float cX = mMassX[node], cY = mMassY[node];
+            float nodeDX = x - cX, nodeDY = y - cY;
+            float distance2 = nodeDX * nodeDX + nodeDY * nodeDY;
+            int firstChild = mFirstChild[node];
+            if (firstChild >= 0) {
+                float size = mNodeHalfSize[node] * 2;
+                if (size * size >= THETA * THETA * distance2) {
+                    stack[top++] = firstChild;
+                    stack[top++] = firstChild + 1;
+                    stack[top++] = firstChild + 2;
+                    stack[top++] = firstChild + 3;
+                    continue;
+                }
+            } else if (mNodeVertex[node] == v) {
+                continue;
+            }
+            if (distance2 < 1e-6f) {
+                // Coincident vertices are pushed apart in opposite directions.
+                nodeDX = nodeDY = mNodeVertex[node] >= 0 && v < mNodeVertex[node] ? -1e-3f : 1e-3f;
+                distance2 = 2e-6f;
+                if (mNodeVertex[node] == -2) {
+                    // Leaf of coincident vertices includes v itself.
+                    mass -= 1;
+                }
+            }
+            float force = k2 * mass / distance2;
+            dX += nodeDX * force;
+            dY += nodeDY * force;
+        }
+        // Attraction d^2 / k along edges.
+        for (int i = mNeighborOffsets[v], end = mNeighborOffsets[v + 1]; i < end; i++) {
+            int u = mNeighbors[i];
+            float edgeDX = x - mX[u], edgeDY = y - mY[u];
+            float distance = (float) Math.sqrt(edgeDX * edgeDX + edgeDY * edgeDY);
+            dX -= edgeDX * distance / mEdgeLength;
+            dY -= edgeDY * distance / mEdgeLength;
+        }
+        // Gravity towards the center keeps disconnected components together and the layout compact.
+        dX -= (x - mCenterX) * GRAVITY;
+        dY -= (y - mCenterY) * GRAVITY;
+        mDX[v] = dX;
+        mDY[v] = dY;
+    }
+
+    private void buildQuadtree() {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (int v = 0; v < mVertexCount; v++) {
+            minX = Math.min(minX, mX[v]);
+            maxX = Math.max(maxX, mX[v]);
+            minY = Math.min(minY, mY[v]);
+            maxY = Math.max(maxY, mY[v]);
+        }
+        mNodeCount = 0;
+        int root = allocateNode((minX + maxX) / 2, (minY + maxY) / 2,
+                Math.max(Math.max(maxX - minX, maxY - minY) / 2, 1));
+        for (int v = 0; v < mVertexCount; v++) {
+            insert(root, v);
+        }
+        for (int node = 0; node < mNodeCount; node++) {
+            if (mMass[node] > 0) {
+                mMassX[node] /= mMass[node];
+                mMassY[node] /= mMass[node];
+            }
+        }
+    }
+
+    private void insert(int node, int v) {
+        float x = mX[v], y = mY[v];
+        for (int depth = 0; ; depth++) {
+            boolean empty = mMass[node] == 0;
+            mMass[node]++;
+            mMassX[node] += x;
+            mMassY[node] += y;
+            if (mFirstChild[node] < 0) {
+                if (empty) {
+                    mNodeVertex[node] = v;
+                    return;
+                }
+                if (depth == MAX_DEPTH) {
+                    mNodeVertex[node] = -2;
+                    return;
+                }
+                // Split the leaf, moving its vertex one level down.
+                int other = mNodeVertex[node];
+                mNodeVertex[node] = -1;
+                float half = mNodeHalfSize[node] / 2, nodeX = mNodeX[node], nodeY = mNodeY[node];
+                int firstChild = allocateNode(nodeX - half, nodeY - half, half);
+                allocateNode(nodeX + half, nodeY - half, half);
+                allocateNode(nodeX - half, nodeY + half, half);
+                allocateNode(nodeX + half, nodeY + half, half);
+                mFirstChild[node] = firstChild;
+                int child = firstChild + quadrant(node, mX[other], mY[other]);
+                mMass[child] = 1;
+                mMassX[child] = mX[other];
+                mMassY[child] = mY[other];
+                mNodeVertex[child] = other;
+            }
+            node = mFirstChild[node] + quadrant(node, x, y);
+        }
+    }
+
+    private int quadrant(int node, float x, float y) {
+        return (x >= mNodeX[node] ? 1 : 0) + (y >= mNodeY[node] ? 2 : 0);
+    }
+
+    private int allocateNode(float x, float y, float halfSize) {
+        if (mNodeCount == mFirstChild.length) {
+            int capacity = Math.max(16, mNodeCount << 1);
+            mFirstChild = Arrays.copyOf(mFirstChild, capacity);
+            mNodeVertex = Arrays.copyOf(mNodeVertex, capacity);
+            mMass = Arrays.copyOf(mMass, capacity);
+            mMassX = Arrays.copyOf(mMassX, capacity);
+            mMassY = Arrays.copyOf(mMassY, capacity);
+            mNodeX = Arrays.copyOf(mNodeX, capacity);
+            mNodeY = Arrays.copyOf(mNodeY, capacity);
+            mNodeHalfSize = Arrays.copyOf(mNodeHalfSize, capacity);
+        }
+        int node = mNodeCount++;
+        mFirstChild[node] = -1;
+        mNodeVertex[node] = -1;
+        mMass[node] = 0;
+        mMassX[node] = 0;
+        mMassY[node] = 0;
+        mNodeX[node] = x;
+        mNodeY[node] = y;
+        mNodeHalfSize[node] = halfSize;
+        return node;
+    }
+
+    private final class Chunk implements Callable<Void> {
+        private final int mStart;
+        private final int mEnd;
+        // Traversal stack, a level adds at most three nodes to it.
+        private final int[] mStack = new int[MAX_DEPTH * 3 + 4];
+
+        Chunk(int start, int end) {
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        public Void call() {
+            for (int v = mStart; v < mEnd; v++) {
+                computeDisplacement(v, mStack);
+            }
+            return null;
+        }
+    }
+}
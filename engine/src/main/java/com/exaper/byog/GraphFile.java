@@ -0,0 +1,216 @@
+package com.exaper.byog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Compact binary graph snapshot, little endian:
+ * <pre>
+ * int magic, int version, int vertexCount, int edgeCount, long sequence
+ * vertexCount x (int id, int type, float x, float y)
+ * edgeCount x (int source id, int target id)
+ * </pre>
+ * Sequence is the number of the last {@link GraphJournal} record the snapshot includes. Files are memory mapped and
+ * read in place, nothing is parsed upfront.
+ */
+public final class GraphFile {
+    private static final int MAGIC = 0x474f5942; // "BYOG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int VERTEX_SIZE = 16;
+    private static final int EDGE_SIZE = 8;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final ByteBuffer mBuffer;
+    private final int mVertexCount;
+    private final int mEdgeCount;
+    private final int mEdgesOffset;
+    private final long mSequence;
+
+    private GraphFile(ByteBuffer buffer, int vertexCount, int edgeCount, long sequence) {
+        mBuffer = buffer;
+        mVertexCount = vertexCount;
+        mEdgeCount = edgeCount;
+        mEdgesOffset = HEADER_SIZE + vertexCount * VERTEX_SIZE;
+        mSequence = sequence;
+    }
+
+    public long getSequence() {
+        return mSequence;
+    }
+
+    public int getVertexCount() {
+        return mVertexCount;
+    }
+
+    public int getId(int row) {
+        return mBuffer.getInt(HEADER_SIZE + row * VERTEX_SIZE);
+    }
+
+    /**
+     * @return one of VertexModel.TYPE_* constants.
+     */
+    public int getType(int row) {
+        return mBuffer.getInt(HEADER_SIZE + row * VERTEX_SIZE + 4);
+    }
+
+    public float getX(int row) {
+        return mBuffer.getFloat(HEADER_SIZE + row * VERTEX_SIZE + 8);
+    }
+
+    public float getY(int row) {
+        return mBuffer.getFloat(HEADER_SIZE + row * VERTEX_SIZE + 12);
+    }
+
+    public int getEdgeCount() {
+        return mEdgeCount;
+    }
+
+    public int getEdgeSource(int edge) {
+        return mBuffer.getInt(mEdgesOffset + edge * EDGE_SIZE);
+    }
+
+    public int getEdgeTarget(int edge) {
+        return mBuffer.getInt(mEdgesOffset + edge * EDGE_SIZE + 4);
+    }
+
+    /**
+     * Maps the file into memory. Mapping stays valid after the file is closed.
+     *
+     * @throws IOException if file can not be read or is not a graph file.
+     */
+    public static GraphFile map(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Not a graph file " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a graph file " + file);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported graph file version " + buffer.getInt(4));
+            }
+            int vertexCount = buffer.getInt(8), edgeCount = buffer.getInt(12);
+            if (vertexCount < 0 || edgeCount < 0
+                    || size != HEADER_SIZE + (long) vertexCount * VERTEX_SIZE + (long) edgeCount * EDGE_SIZE) {
+                throw new IOException("Corrupted graph file " + file);
+            }
+            return new GraphFile(buffer, vertexCount, edgeCount, buffer.getLong(16));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Writes the graph outside of any journal, with sequence 0.
+     */
+    public static void write(File file, VertexModel vertices, EdgeStore edges) throws IOException {
+        write(file, vertices, edges, 0);
+    }
+
+    /**
+     * Writes vertices and edges to the file, replacing its contents, and syncs it to the storage.
+     */
+    public static void write(File file, VertexModel vertices, EdgeStore edges, long sequence) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            channel.truncate(0);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            putHeader(buffer, vertices, edges, sequence);
+            for (int vertex = 0, idCount = vertices.getIdCount(); vertex < idCount; vertex++) {
+                if (vertices.contains(vertex)) {
+                    ensureRemaining(channel, buffer, VERTEX_SIZE);
+                    putVertex(buffer, vertices, vertex);
+                }
+            }
+            for (int edge = 0, edgeIdCount = edges.getEdgeIdCount(); edge < edgeIdCount; edge++) {
+                if (edges.isEdge(edge)) {
+                    ensureRemaining(channel, buffer, EDGE_SIZE);
+                    putEdge(buffer, edges, edge);
+                }
+            }
+            flush(channel, buffer);
+            channel.force(false);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * @return contents of the file holding vertices and edges, for {@link #write(File, ByteBuffer)} to write later,
+     * possibly on another thread. Takes about as long as copying the graph.
+     */
+    public static ByteBuffer encode(VertexModel vertices, EdgeStore edges, long sequence) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + vertices.size() * VERTEX_SIZE
+                + edges.getEdgeCount() * EDGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        putHeader(buffer, vertices, edges, sequence);
+        for (int vertex = 0, idCount = vertices.getIdCount(); vertex < idCount; vertex++) {
+            if (vertices.contains(vertex)) {
+                putVertex(buffer, vertices, vertex);
+            }
+        }
+        for (int edge = 0, edgeIdCount = edges.getEdgeIdCount(); edge < edgeIdCount; edge++) {
+            if (edges.isEdge(edge)) {
+                putEdge(buffer, edges, edge);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes contents made by {@link #encode} to the file, replacing what it had, and syncs it to the storage.
+     */
+    public static void write(File file, ByteBuffer contents) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            channel.truncate(0);
+            ByteBuffer buffer = contents.duplicate();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void putHeader(ByteBuffer buffer, VertexModel vertices, EdgeStore edges, long sequence) {
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(vertices.size()).putInt(edges.getEdgeCount()).putLong(sequence);
+    }
+
+    private static void putVertex(ByteBuffer buffer, VertexModel vertices, int vertex) {
+        buffer.putInt(vertex).putInt(vertices.getType(vertex)).putFloat(vertices.getX(vertex))
+                .putFloat(vertices.getY(vertex));
+    }
+
+    private static void putEdge(ByteBuffer buffer, EdgeStore edges, int edge) {
+        buffer.putInt(edges.getSource(edge)).putInt(edges.getTarget(edge));
+    }
+
+    private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int size) throws IOException {
+        if (buffer.remaining() < size) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,508 @@
+package com.exaper.byog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append-only journal of graph edits on top of a {@link GraphFile} snapshot. Records are buffered and appended to the
+ * journal file through a {@link FileChannel}, so saving an edit costs O(size of the edit). Once the journal grows
+ * larger than the graph, it is compacted: the graph is written as a new snapshot and the journal starts over.
+ * <p>
+ * Journal file, little endian:
+ * <pre>
+ * int magic, int version, long base sequence
+ * n x (int operation, int vertex, int argument, float x, float y)
+ * </pre>
+ * Records are numbered from base sequence + 1. Recovery loads the snapshot and replays records with numbers above
+ * the snapshot sequence, so a crash between writing a snapshot and truncating the journal does not apply records
+ * twice. A record torn by a crash is ignored. Recording starts after the first {@link #compact}, or after
+ * {@link #resume} if the graph was restored with vertex ids of the journal.
+ * <p>
+ * Once a write fails, records following the lost ones would be replayed against the wrong graph. Recording stops
+ * then, the journal keeps what was written before, and {@link #needsCompaction} asks for a compaction to save the
+ * graph again.
+ * <p>
+ * Large graphs are compacted in the background: {@link #beginCompaction} encodes the graph, {@link Compaction#write}
+ * writes the snapshot on another thread and {@link #finishCompaction} starts the journal over with records made
+ * meanwhile. Until then records are appended to the old journal, which stays valid for recovery with either
+ * snapshot. Apart from {@link Compaction#write} not thread safe.
+ */
+public class GraphJournal {
+    /**
+     * Snapshot of the graph taken by {@link #beginCompaction}, waiting to be written.
+     */
+    public final class Compaction {
+        private final ByteBuffer mContents;
+        // Sequence of the snapshot.
+        private final long mSequence;
+        // Journal size when the snapshot was taken, records past it are made after the snapshot.
+        private final long mJournalSize;
+        private volatile boolean mCancelled;
+        private volatile boolean mWritten;
+
+        private Compaction(ByteBuffer contents, long sequence, long journalSize) {
+            mContents = contents;
+            mSequence = sequence;
+            mJournalSize = journalSize;
+        }
+
+        /**
+         * Writes the snapshot and makes it the one to recover from. Can be called on any thread, it is skipped if
+         * the snapshot was written by {@link #close} already or the compaction was cancelled by {@link #compact},
+         * {@link #close} or {@link #delete}.
+         */
+        public void write() throws IOException {
+            synchronized (mSnapshotLock) {
+                if (!mCancelled && !mWritten) {
+                    replaceSnapshot(mContents, null, null, mSequence);
+                    mWritten = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Graph edits recorded in the journal. Vertex ids are those of the graph at the time of the edit.
+     */
+    public interface Operations {
+        void addVertex(int vertex, int type, float x, float y);
+
+        void moveVertex(int vertex, float x, float y);
+
+        void removeVertex(int vertex);
+
+        /**
+         * Moves edges of victim over to absorber and removes victim.
+         */
+        void mergeVertices(int absorber, int victim);
+
+        void addEdge(int vertex1, int vertex2);
+
+        void removeEdge(int vertex1, int vertex2);
+    }
+
+    private static final int MAGIC = 0x4a4f5942; // "BYOJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 20;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    // Journal is not compacted before it has this many records, no matter how small the graph is.
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    private static final int OPERATION_ADD_VERTEX = 1;
+    private static final int OPERATION_MOVE_VERTEX = 2;
+    private static final int OPERATION_REMOVE_VERTEX = 3;
+    private static final int OPERATION_MERGE_VERTICES = 4;
+    private static final int OPERATION_ADD_EDGE = 5;
+    private static final int OPERATION_REMOVE_EDGE = 6;
+
+    private final File mSnapshotFile;
+    private final File mJournalFile;
+    private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    // Held while the snapshot file is replaced.
+    private final Object mSnapshotLock = new Object();
+    private RandomAccessFile mFile;
+    private FileChannel mChannel;
+    // Number of the last record.
+    private long mSequence;
+    private int mRecordCount;
+    // Failure of a write made while recording, reported by the next flush.
+    private IOException mPendingError;
+    // A write failed, records are dropped until the graph is saved by a compaction.
+    private boolean mBroken;
+    private Compaction mCompaction;
+
+    public GraphJournal(File snapshotFile, File journalFile) {
+        mSnapshotFile = snapshotFile;
+        mJournalFile = journalFile;
+    }
+
+    /**
+     * @return snapshot to recover from or null if there is none.
+     */
+    public GraphFile openSnapshot() throws IOException {
+        return mSnapshotFile.exists() ? GraphFile.map(mSnapshotFile) : null;
+    }
+
+    /**
+     * Replays records made after the snapshot onto the target.
+     *
+     * @param snapshot snapshot the target was loaded from or null if there is none.
+     */
+    public void replay(GraphFile snapshot, Operations target) throws IOException {
+        mSequence = snapshot != null ? snapshot.getSequence() : 0;
+        if (!mJournalFile.exists()) {
+            return;
+        }
+        RandomAccessFile file = new RandomAccessFile(mJournalFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a graph journal " + mJournalFile);
+            }
+            long sequence = buffer.getLong(8);
+            for (int offset = HEADER_SIZE; offset + RECORD_SIZE <= size; offset += RECORD_SIZE) {
+                if (++sequence > mSequence) {
+                    apply(buffer, offset, target);
+                    mSequence = sequence;
+                }
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * @return true if the journal has grown past the graph of the given size or lost records, and should be
+     * compacted. False while a compaction is in progress.
+     */
+    public boolean needsCompaction(int graphSize) {
+        return mCompaction == null && (mBroken || mRecordCount > Math.max(MIN_COMPACTION_RECORDS, graphSize));
+    }
+
+    /**
+     * @return true once the journal has been compacted, until it is closed.
+     */
+    public boolean isRecording() {
+        return mChannel != null;
+    }
+
+    public boolean isCompacting() {
+        return mCompaction != null;
+    }
+
+    /**
+     * Writes the graph as the new snapshot and starts the journal over. Snapshot is replaced atomically. Compaction
+     * in progress, if any, is cancelled.
+     */
+    public void compact(VertexModel vertices, EdgeStore edges) throws IOException {
+        // Buffered records are part of the snapshot. Should compaction fail, they are lost.
+        mBuffer.clear();
+        mPendingError = null;
+        mBroken = true;
+        synchronized (mSnapshotLock) {
+            cancelCompaction();
+            replaceSnapshot(null, vertices, edges, mSequence);
+        }
+        if (mChannel == null) {
+            mFile = new RandomAccessFile(mJournalFile, "rw");
+            mChannel = mFile.getChannel();
+        }
+        mChannel.truncate(0);
+        mBuffer.putInt(MAGIC).putInt(VERSION).putLong(mSequence);
+        write();
+        mRecordCount = 0;
+        mBroken = false;
+    }
+
+    /**
+     * Starts recording after the replayed records, without a compaction. Vertex ids of the graph have to be those of
+     * the journal, as restored by {@link JournalReader}. A record torn by a crash is cut off. Journal ending before
+     * the snapshot is started over, records appended to it would be numbered below the snapshot.
+     */
+    public void resume() throws IOException {
+        if (mChannel != null) {
+            throw new IllegalStateException("Journal is recording already");
+        }
+        mFile = new RandomAccessFile(mJournalFile, "rw");
+        mChannel = mFile.getChannel();
+        mBuffer.clear();
+        mPendingError = null;
+        mBroken = false;
+        try {
+            long size = mChannel.size();
+            long recordCount = size < HEADER_SIZE ? -1 : (size - HEADER_SIZE) / RECORD_SIZE;
+            if (recordCount >= 0) {
+                mBuffer.limit(HEADER_SIZE);
+                while (mBuffer.hasRemaining()) {
+                    if (mChannel.read(mBuffer, mBuffer.position()) < 0) {
+                        throw new IOException("Journal " + mJournalFile + " got shorter");
+                    }
+                }
+                recordCount = mBuffer.getLong(8) + recordCount == mSequence ? recordCount : -1;
+                mBuffer.clear();
+            }
+            if (recordCount < 0) {
+                mChannel.truncate(0);
+                mBuffer.putInt(MAGIC).putInt(VERSION).putLong(mSequence);
+                write();
+                recordCount = 0;
+            } else {
+                mChannel.truncate(HEADER_SIZE + recordCount * RECORD_SIZE);
+                mChannel.position(mChannel.size());
+            }
+            mRecordCount = (int) recordCount;
+        } catch (IOException e) {
+            mBuffer.clear();
+            mFile.close();
+            mFile = null;
+            mChannel = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Takes a snapshot of the graph for {@link Compaction#write} to write on another thread, recording goes on
+     * meanwhile. {@link #finishCompaction} has to be called once it is written or failed to.
+     *
+     * @throws IllegalStateException if a compaction is in progress already.
+     */
+    public Compaction beginCompaction(VertexModel vertices, EdgeStore edges) {
+        if (mChannel == null) {
+            throw new IllegalStateException("Journal has to be compacted before recording");
+        }
+        if (mCompaction != null) {
+            throw new IllegalStateException("Compaction is in progress already");
+        }
+        long journalSize = -1;
+        try {
+            flush();
+            journalSize = mChannel.size();
+        } catch (IOException e) {
+            // Snapshot is going to save these records anyway.
+            mBroken = true;
+        }
+        mBuffer.clear();
+        mPendingError = null;
+        mCompaction = new Compaction(GraphFile.encode(vertices, edges, mSequence), mSequence, journalSize);
+        return mCompaction;
+    }
+
+    /**
+     * Starts the journal over with records made after the snapshot, if it was written. Otherwise keeps recording to
+     * the current journal.
+     *
+     * @throws IOException if the journal could not be replaced, the current one is kept then.
+     */
+    public void finishCompaction(Compaction compaction) throws IOException {
+        if (compaction != mCompaction) {
+            return;
+        }
+        mCompaction = null;
+        if (!compaction.mWritten || mChannel == null) {
+            return;
+        }
+        if (!mBroken) {
+            try {
+                flush();
+            } catch (IOException e) {
+                mBroken = true;
+            }
+        }
+        // Records lost before or during the compaction are not in the written part of the journal, which can only be
+        // dropped then. Records lost after the snapshot ask for another compaction.
+        long tailSize = mBroken ? 0 : mChannel.size() - compaction.mJournalSize;
+        ByteBuffer journal = ByteBuffer.allocate((int) (HEADER_SIZE + tailSize)).order(ByteOrder.LITTLE_ENDIAN);
+        journal.putInt(MAGIC).putInt(VERSION).putLong(compaction.mSequence);
+        while (journal.hasRemaining()) {
+            if (mChannel.read(journal, compaction.mJournalSize + journal.position() - HEADER_SIZE) < 0) {
+                throw new IOException("Journal " + mJournalFile + " got shorter");
+            }
+        }
+        journal.flip();
+        File temporaryFile = new File(mJournalFile.getPath() + ".tmp");
+        RandomAccessFile file = new RandomAccessFile(temporaryFile, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            channel.truncate(0);
+            while (journal.hasRemaining()) {
+                channel.write(journal);
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        if (!temporaryFile.renameTo(mJournalFile)) {
+            file.close();
+            throw new IOException("Unable to replace " + mJournalFile);
+        }
+        mFile.close();
+        mFile = file;
+        mChannel = file.getChannel();
+        mChannel.position(mChannel.size());
+        mRecordCount = (int) (mSequence - compaction.mSequence);
+        mBroken = mBroken && mSequence > compaction.mSequence;
+    }
+
+    /**
+     * Appends buffered records to the journal file. Once flushed, records survive the process being killed.
+     *
+     * @throws IOException if writing this or any earlier record failed.
+     */
+    public void flush() throws IOException {
+        if (mPendingError != null) {
+            IOException error = mPendingError;
+            mPendingError = null;
+            throw error;
+        }
+        if (mChannel != null && !mBroken) {
+            try {
+                write();
+            } catch (IOException e) {
+                mBroken = true;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Finishes compaction in progress, if any, writing its snapshot on this thread unless it was written already.
+     * Once closed, the journal writes no files, so another journal can take them over.
+     */
+    public void close() throws IOException {
+        try {
+            Compaction compaction = mCompaction;
+            if (compaction != null) {
+                compaction.write();
+                finishCompaction(compaction);
+            }
+            flush();
+        } finally {
+            synchronized (mSnapshotLock) {
+                // Snapshot of a compaction that failed to finish is not written later on.
+                cancelCompaction();
+            }
+            if (mFile != null) {
+                mFile.close();
+                mFile = null;
+                mChannel = null;
+            }
+        }
+    }
+
+    /**
+     * Closes the journal and deletes its files, the graph starts over empty.
+     */
+    public void delete() throws IOException {
+        mBuffer.clear();
+        mPendingError = null;
+        mBroken = false;
+        close();
+        synchronized (mSnapshotLock) {
+            cancelCompaction();
+            if ((mSnapshotFile.exists() && !mSnapshotFile.delete())
+                    || (mJournalFile.exists() && !mJournalFile.delete())) {
+                throw new IOException("Unable to delete " + mSnapshotFile + " or " + mJournalFile);
+            }
+        }
+        mSequence = 0;
+        mRecordCount = 0;
+    }
+
+    public void addVertex(int vertex, int type, float x, float y) {
+        record(OPERATION_ADD_VERTEX, vertex, type, x, y);
+    }
+
+    public void moveVertex(int vertex, float x, float y) {
+        record(OPERATION_MOVE_VERTEX, vertex, 0, x, y);
+    }
+
+    public void removeVertex(int vertex) {
+        record(OPERATION_REMOVE_VERTEX, vertex, 0, 0, 0);
+    }
+
+    public void mergeVertices(int absorber, int victim) {
+        record(OPERATION_MERGE_VERTICES, absorber, victim, 0, 0);
+    }
+
+    public void addEdge(int vertex1, int vertex2) {
+        record(OPERATION_ADD_EDGE, vertex1, vertex2, 0, 0);
+    }
+
+    public void removeEdge(int vertex1, int vertex2) {
+        record(OPERATION_REMOVE_EDGE, vertex1, vertex2, 0, 0);
+    }
+
+    private void record(int operation, int vertex, int argument, float x, float y) {
+        if (mChannel == null) {
+            throw new IllegalStateException("Journal has to be compacted before recording");
+        }
+        mSequence++;
+        mRecordCount++;
+        if (mBroken) {
+            return;
+        }
+        if (mBuffer.remaining() < RECORD_SIZE) {
+            try {
+                write();
+            } catch (IOException e) {
+                mPendingError = e;
+                mBroken = true;
+                return;
+            }
+        }
+        mBuffer.putInt(operation).putInt(vertex).putInt(argument).putFloat(x).putFloat(y);
+    }
+
+    private void cancelCompaction() {
+        if (mCompaction != null) {
+            mCompaction.mCancelled = true;
+            mCompaction = null;
+        }
+    }
+
+    /**
+     * Writes either encoded contents or the graph to a temporary file, which then replaces the snapshot.
+     */
+    private void replaceSnapshot(ByteBuffer contents, VertexModel vertices, EdgeStore edges, long sequence)
+            throws IOException {
+        File temporaryFile = new File(mSnapshotFile.getPath() + ".tmp");
+        if (contents != null) {
+            GraphFile.write(temporaryFile, contents);
+        } else {
+            GraphFile.write(temporaryFile, vertices, edges, sequence);
+        }
+        if (!temporaryFile.renameTo(mSnapshotFile)) {
+            throw new IOException("Unable to replace " + mSnapshotFile);
+        }
+    }
+
+    private void write() throws IOException {
+        mBuffer.flip();
+        try {
+            while (mBuffer.hasRemaining()) {
+                mChannel.write(mBuffer);
+            }
+        } finally {
+            mBuffer.clear();
+        }
+    }
+
+    private static void apply(ByteBuffer buffer, int offset, Operations target) throws IOException {
+        int operation = buffer.getInt(offset), vertex = buffer.getInt(offset + 4), argument = buffer.getInt(offset + 8);
+        float x = buffer.getFloat(offset + 12), y = buffer.getFloat(offset + 16);
+        switch (operation) {
+            case OPERATION_ADD_VERTEX:
+                target.addVertex(vertex, argument, x, y);
+                break;
+            case OPERATION_MOVE_VERTEX:
+                target.moveVertex(vertex, x, y);
+                break;
+            case OPERATION_REMOVE_VERTEX:
+                target.removeVertex(vertex);
+                break;
+            case OPERATION_MERGE_VERTICES:
+                target.mergeVertices(vertex, argument);
+                break;
+            case OPERATION_ADD_EDGE:
+                target.addEdge(vertex, argument);
+                break;
+            case OPERATION_REMOVE_EDGE:
+                target.removeEdge(vertex, argument);
+                break;
+            default:
+                throw new IOException("Unknown journal operation " + operation + " at " + offset);
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package com.exaper.byog;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming parser of external graph files:
+ * <ul>
+ * <li>edge lists, a "source target [weight]" line per edge, '#' and '%' start comments;</li>
+ * <li>DIMACS shortest path graphs, ".gr" with "a source target weight" arc lines, optionally accompanied by ".co"
+ * with "v id x y" coordinate lines.</li>
+ * </ul>
+ * Files are read through a fixed buffer and numbers are parsed in place, memory taken besides the buffer is a vertex
+ * id table proportional to the number of vertices. Weights are ignored, edge lengths are distances between vertices.
+ * <p>
+ * Vertices are reported with dense ids in order of appearance, each before the first edge referring to it. Without
+ * coordinates, vertices are laid out along a sunflower spiral in order of appearance. Coordinates are scaled so that
+ * every vertex gets about spacing x spacing of area. Both layouts are centered at (0, 0).
+ */
+public final class GraphParser implements GraphSource {
+    public interface Sink {
+        /**
+         * @param vertexCount number of vertices the file declares or -1 if it is not known upfront.
+         */
+        void begin(int vertexCount) throws IOException;
+
+        /**
+         * @param vertex id larger than the previous one. Parsed files number vertices densely from 0.
+         * @param type   one of the {@link VertexModel} types, vertices of parsed files are intermediate.
+         */
+        void addVertex(int vertex, int type, float x, float y) throws IOException;
+
+        void addEdge(int vertex1, int vertex2) throws IOException;
+    }
+
+    /**
+     * Graph or coordinates file, opened each time it is read. Lets files be read from streams other than
+     * {@link FileInputStream}, such as content providers.
+     */
+    public interface Input {
+        InputStream open() throws IOException;
+
+        /**
+         * @return name of the file shown in error messages.
+         */
+        String getName();
+
+        /**
+         * @return size in bytes or -1 if it is not known.
+         */
+        long getLength();
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final double GOLDEN_ANGLE = Math.PI * (3 - Math.sqrt(5));
+
+    private final Input mGraphFile;
+    // DIMACS coordinates, null for edge lists and DIMACS graphs without coordinates.
+    private final Input mCoordinatesFile;
+    private final boolean mDimacs;
+    private final float mSpacing;
+    // Negative if size of a file is not known.
+    private final long mTotalBytes;
+    private long mBytesRead;
+    // Dense ids keyed by file ids.
+    private final LongIntHashMap mVertices = new LongIntHashMap();
+
+    private GraphParser(Input graphFile, Input coordinatesFile, boolean dimacs, float spacing) {
+        mGraphFile = graphFile;
+        mCoordinatesFile = coordinatesFile;
+        mDimacs = dimacs;
+        mSpacing = spacing;
+        long graphLength = graphFile.getLength(), coordinatesLength = coordinatesFile != null
+                ? coordinatesFile.getLength() : 0;
+        // Coordinates are read twice, for bounds and for vertices.
+        mTotalBytes = graphLength < 0 || coordinatesLength < 0 ? -1 : graphLength + (coordinatesLength << 1);
+    }
+
+    public static GraphParser edgeList(File file, float spacing) {
+        return edgeList(input(file), spacing);
+    }
+
+    public static GraphParser edgeList(Input input, float spacing) {
+        return new GraphParser(input, null, false, spacing);
+    }
+
+    /**
+     * @param coordinatesFile ".co" file or null if vertices should be laid out along a spiral.
+     */
+    public static GraphParser dimacs(File graphFile, File coordinatesFile, float spacing) {
+        return dimacs(input(graphFile), coordinatesFile != null ? input(coordinatesFile) : null, spacing);
+    }
+
+    /**
+     * @param coordinatesFile ".co" file or null if vertices should be laid out along a spiral.
+     */
+    public static GraphParser dimacs(Input graphFile, Input coordinatesFile, float spacing) {
+        return new GraphParser(graphFile, coordinatesFile, true, spacing);
+    }
+
+    public static Input input(final File file) {
+        return new Input() {
+            @Override
+            public InputStream open() throws IOException {
+                return new FileInputStream(file);
+            }
+
+            @Override
+            public String getName() {
+                return file.getName();
+            }
+
+            @Override
+            public long getLength() {
+                return file.length();
+            }
+        };
+    }
+
+    /**
+     * @return false if vertices are laid out along a spiral.
+     */
+    public boolean hasCoordinates() {
+        return mCoordinatesFile != null;
+    }
+
+    public float getSpacing() {
+        return mSpacing;
+    }
+
+    /**
+     * @return fraction of bytes parsed so far, 0 if size of a file is not known.
+     */
+    @Override
+    public float getProgress() {
+        if (mTotalBytes < 0) {
+            return 0;
+        }
+        return mTotalBytes > 0 ? Math.min(1, (float) mBytesRead / mTotalBytes) : 1;
+    }
+
+    @Override
+    public void parse(Sink sink) throws IOException {
+        mVertices.clear();
+        mBytesRead = 0;
+        if (mCoordinatesFile != null) {
+            parseCoordinates(sink);
+        }
+        Tokenizer tokenizer = new Tokenizer(mGraphFile);
+        try {
+            boolean begun = mCoordinatesFile != null;
+            while (tokenizer.nextLine()) {
+                int c = tokenizer.skipSpaces();
+                if (mDimacs && c == 'p' && !begun) {
+                    // p sp <vertices> <arcs>
+                    tokenizer.skipToken();
+                    tokenizer.skipToken();
+                    sink.begin((int) tokenizer.nextLong());
+                    begun = true;
+                    continue;
+                }
+                if (c < 0 || c == 'c' || c == 'p' || c == '#' || c == '%') {
+                    continue;
+                }
+                if (mDimacs) {
+                    if (c != 'a') {
+                        throw tokenizer.error("Unexpected line");
+                    }
+                    tokenizer.skipToken();
+                }
+                if (!begun) {
+                    sink.begin(-1);
+                    begun = true;
+                }
+                int vertex1 = getVertex(tokenizer, sink), vertex2 = getVertex(tokenizer, sink);
+                if (vertex1 != vertex2) {
+                    sink.addEdge(vertex1, vertex2);
+                }
+            }
+            if (!begun) {
+                sink.begin(0);
+            }
+        } finally {
+            tokenizer.close();
+        }
+    }
+
+    /**
+     * Reads bounds of the coordinates, then reads them again reporting vertices scaled to the bounds.
+     */
+    private void parseCoordinates(Sink sink) throws IOException {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        int vertexCount = 0;
+        Tokenizer tokenizer = new Tokenizer(mCoordinatesFile);
+        try {
+            while (tokenizer.nextLine()) {
+                if (tokenizer.skipSpaces() == 'v') {
+                    tokenizer.skipToken();
+                    tokenizer.nextLong();
+                    double x = tokenizer.nextDouble(), y = tokenizer.nextDouble();
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
+                    vertexCount++;
+                }
+            }
+        } finally {
+            tokenizer.close();
+        }
+        double area = Math.max(maxX - minX, 1) * Math.max(maxY - minY, 1);
+        double scale = mSpacing * Math.sqrt(vertexCount / area);
+        double centerX = (minX + maxX) / 2, centerY = (minY + maxY) / 2;
+        sink.begin(vertexCount);
+        tokenizer = new Tokenizer(mCoordinatesFile);
+        try {
+            while (tokenizer.nextLine()) {
+                if (tokenizer.skipSpaces() == 'v') {
+                    tokenizer.skipToken();
+                    long id = tokenizer.nextLong();
+                    double x = tokenizer.nextDouble(), y = tokenizer.nextDouble();
+                    if (mVertices.get(id) >= 0) {
+                        throw tokenizer.error("Duplicate vertex " + id);
+                    }
+                    int vertex = mVertices.size();
+                    mVertices.put(id, vertex);
+                    // North is up.
+                    sink.addVertex(vertex, VertexModel.TYPE_INTERMEDIATE, (float) ((x - centerX) * scale),
+                            (float) ((centerY - y) * scale));
+                }
+            }
+        } finally {
+            tokenizer.close();
+        }
+    }
+
+    private int getVertex(Tokenizer tokenizer, Sink sink) throws IOException {
+        long id = tokenizer.nextLong();
+        int vertex = mVertices.get(id);
+        if (vertex < 0) {
+            if (mCoordinatesFile != null) {
+                throw tokenizer.error("Vertex " + id + " has no coordinates");
+            }
+            vertex = mVertices.size();
+            mVertices.put(id, vertex);
+            double radius = mSpacing * Math.sqrt(vertex / Math.PI), angle = vertex * GOLDEN_ANGLE;
+            sink.addVertex(vertex, VertexModel.TYPE_INTERMEDIATE, (float) (radius * Math.cos(angle)),
+                    (float) (radius * Math.sin(angle)));
+        }
+        return vertex;
+    }
+
+    /**
+     * Splits lines into whitespace separated tokens without creating objects per line or token.
+     */
+    private final class Tokenizer {
+        private final String mName;
+        private final InputStream mInput;
+        private final byte[] mBuffer = new byte[BUFFER_SIZE];
+        private int mPosition;
+        private int mLimit;
+        private int mLine;
+
+        Tokenizer(Input input) throws IOException {
+            mName = input.getName();
+            mInput = input.open();
+        }
+
+        /**
+         * Skips the rest of the current line.
+         *
+         * @return false if there are no more lines.
+         */
+        boolean nextLine() throws IOException {
+            if (mLine > 0) {
+                int c;
+                while ((c = read()) >= 0 && c != '\n') {
+                    // Skip.
+                }
+            }
+            mLine++;
+            return peek() >= 0;
+        }
+
+        /**
+         * Skips spaces up to the next token.
+         *
+         * @return first character of the token or -1 at the end of the line.
+         */
+        int skipSpaces() throws IOException {
+            int c;
+            while ((c = peek()) == ' ' || c == '\t' || c == '\r') {
+                mPosition++;
+            }
+            return c == '\n' ? -1 : c;
+        }
+
+        void skipToken() throws IOException {
+            skipSpaces();
+            while (!isSeparator(peek())) {
+                mPosition++;
+            }
+        }
+
+        long nextLong() throws IOException {
+            boolean negative = startNumber();
+            long value = 0;
+            int digits = 0;
+            for (int c = peek(); c >= '0' && c <= '9'; c = peek()) {
+                value = value * 10 + (c - '0');
+                digits++;
+                mPosition++;
+            }
+            endNumber(digits);
+            return negative ? -value : value;
+        }
+
+        double nextDouble() throws IOException {
+            boolean negative = startNumber();
+            long mantissa = 0;
+            int exponent = 0, digits = 0;
+            boolean fraction = false;
+            for (int c = peek(); (c >= '0' && c <= '9') || (c == '.' && !fraction); c = peek()) {
+                if (c == '.') {
+                    fraction = true;
+                } else {
+                    // Digits beyond long precision only scale the value.
+                    if (mantissa < Long.MAX_VALUE / 10) {
+                        mantissa = mantissa * 10 + (c - '0');
+                        if (fraction) {
+                            exponent--;
+                        }
+                    } else if (!fraction) {
+                        exponent++;
+                    }
+                    digits++;
+                }
+                mPosition++;
+            }
+            if (digits > 0 && (peek() == 'e' || peek() == 'E')) {
+                mPosition++;
+                exponent += (int) nextLong();
+            } else {
+                endNumber(digits);
+            }
+            double value = exponent != 0 ? mantissa * Math.pow(10, exponent) : mantissa;
+            return negative ? -value : value;
+        }
+
+        IOException error(String message) {
+            return new IOException(message + " at " + mName + ":" + mLine);
+        }
+
+        void close() throws IOException {
+            mInput.close();
+        }
+
+        private boolean startNumber() throws IOException {
+            int c = skipSpaces();
+            if (c < 0) {
+                throw error("Missing number");
+            }
+            if (c == '-' || c == '+') {
+                mPosition++;
+                return c == '-';
+            }
+            return false;
+        }
+
+        private void endNumber(int digits) throws IOException {
+            if (digits == 0 || !isSeparator(peek())) {
+                throw error("Malformed number");
+            }
+        }
+
+        private int read() throws IOException {
+            int c = peek();
+            if (c >= 0) {
+                mPosition++;
+            }
+            return c;
+        }
+
+        private int peek() throws IOException {
+            if (mPosition == mLimit) {
+                mBytesRead += mLimit;
+                mPosition = 0;
+                mLimit = Math.max(mInput.read(mBuffer), 0);
+            }
+            return mPosition < mLimit ? mBuffer[mPosition] & 0xff : -1;
+        }
+
+        private boolean isSeparator(int c) {
+            return c < 0 || c == ' ' || c == '\t' || c == '\r' || c == '\n';
+        }
+    }
+}
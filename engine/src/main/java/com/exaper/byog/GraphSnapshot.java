@@ -0,0 +1,110 @@
+package com.exaper.byog;
+
+/**
+ * Copy of the graph handed over to the path solver. Vertices are indices [0, getVertexCount()). Edges are shared
+ * between snapshots until graph structure changes, only coordinates are copied for each snapshot. Snapshots obtained
+ * from the path solver are recycled by it, a snapshot must not be changed once submitted.
+ */
+public final class GraphSnapshot {
+    private int mStructureVersion;
+    // Pairs of vertex indices.
+    private int[] mEdges;
+    // Pairs of x, y coordinates of vertices, might have room for more vertices.
+    private float[] mCoordinates;
+    private int mVertexCount;
+    private int mStart;
+    private int mEnd;
+    // Set while the snapshot is pending or being read by the solver.
+    private volatile boolean mInUse;
+
+    public GraphSnapshot(int structureVersion, int[] edges, float[] coordinates, int start, int end) {
+        mStructureVersion = structureVersion;
+        mEdges = edges;
+        mCoordinates = coordinates;
+        mVertexCount = coordinates.length >> 1;
+        mStart = start;
+        mEnd = end;
+    }
+
+    /**
+     * Reuses the snapshot for another graph, positions of vertices have to be set afterwards.
+     */
+    public void reset(int structureVersion, int[] edges, int vertexCount, int start, int end) {
+        if (mCoordinates.length < vertexCount << 1) {
+            mCoordinates = new float[vertexCount << 2];
+        }
+        mStructureVersion = structureVersion;
+        mEdges = edges;
+        mVertexCount = vertexCount;
+        mStart = start;
+        mEnd = end;
+    }
+
+    public void setPosition(int vertex, float x, float y) {
+        mCoordinates[vertex << 1] = x;
+        mCoordinates[(vertex << 1) + 1] = y;
+    }
+
+    public int getStructureVersion() {
+        return mStructureVersion;
+    }
+
+    public int getVertexCount() {
+        return mVertexCount;
+    }
+
+    public float getX(int vertex) {
+        return mCoordinates[vertex << 1];
+    }
+
+    public float getY(int vertex) {
+        return mCoordinates[(vertex << 1) + 1];
+    }
+
+    /**
+     * @return pairs of vertex indices, shared with other snapshots of the same structure and not to be changed.
+     */
+    public int[] getEdges() {
+        return mEdges;
+    }
+
+    public int getEdgeCount() {
+        return mEdges.length >> 1;
+    }
+
+    public int getEdgeSource(int edge) {
+        return mEdges[edge << 1];
+    }
+
+    public int getEdgeTarget(int edge) {
+        return mEdges[(edge << 1) + 1];
+    }
+
+    /**
+     * @return index of the start vertex or -1 if it is not connected to anything.
+     */
+    public int getStart() {
+        return mStart;
+    }
+
+    /**
+     * @return index of the end vertex or -1 if it is not connected to anything.
+     */
+    public int getEnd() {
+        return mEnd;
+    }
+
+    /**
+     * @return whether the snapshot is pending or being read by the solver, a pool must not reuse it then.
+     */
+    public boolean isInUse() {
+        return mInUse;
+    }
+
+    /**
+     * Marks the snapshot as handed over to the solver or released by it, from any thread.
+     */
+    public void setInUse(boolean inUse) {
+        mInUse = inUse;
+    }
+}
@@ -0,0 +1,16 @@
+package com.exaper.byog;
+
+import java.io.IOException;
+
+/**
+ * Graph read vertex by vertex and edge by edge, meant to run on a background thread: external files parsed by
+ * {@link GraphParser} and saved graphs read by {@link JournalReader}.
+ */
+public interface GraphSource {
+    void parse(GraphParser.Sink sink) throws IOException;
+
+    /**
+     * @return fraction of the graph read so far, called on the thread parsing it.
+     */
+    float getProgress();
+}
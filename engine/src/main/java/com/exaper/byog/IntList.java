@@ -0,0 +1,69 @@
+package com.exaper.byog;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints. Capacity is kept on {@link #clear()} so that refilling the list does not
+ * allocate.
+ */
+public class IntList {
+    private int[] mValues;
+    private int mSize;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int capacity) {
+        mValues = new int[capacity];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public int get(int index) {
+        if (index >= mSize) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + mSize);
+        }
+        return mValues[index];
+    }
+
+    public void set(int index, int value) {
+        if (index >= mSize) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + mSize);
+        }
+        mValues[index] = value;
+    }
+
+    public void add(int value) {
+        if (mSize == mValues.length) {
+            mValues = Arrays.copyOf(mValues, Math.max(16, mSize << 1));
+        }
+        mValues[mSize++] = value;
+    }
+
+    public int removeLast() {
+        return mValues[--mSize];
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    public void reverse() {
+        for (int i = 0, j = mSize - 1; i < j; i++, j--) {
+            int value = mValues[i];
+            mValues[i] = mValues[j];
+            mValues[j] = value;
+        }
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(mValues, mSize);
+    }
+}
@@ -0,0 +1,136 @@
+package com.exaper.byog;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min heap of ints in range [0, capacity) keyed by doubles. Unlike {@link java.util.PriorityQueue}
+ * it supports changing key of an element in place, so searches do not need to skip stale entries, and it does not
+ * allocate once capacity is reached.
+ */
+public class IntMinHeap {
+    private int[] mHeap = new int[0];
+    // Position of element in mHeap or -1 if it is not in the heap.
+    private int[] mPositions = new int[0];
+    private double[] mKeys = new double[0];
+    private int mSize;
+    private long mPollCount;
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > mPositions.length) {
+            int oldCapacity = mPositions.length;
+            mHeap = Arrays.copyOf(mHeap, capacity);
+            mKeys = Arrays.copyOf(mKeys, capacity);
+            mPositions = Arrays.copyOf(mPositions, capacity);
+            Arrays.fill(mPositions, oldCapacity, capacity, -1);
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * @return number of elements polled since the heap was created.
+     */
+    public long getPollCount() {
+        return mPollCount;
+    }
+
+    public boolean contains(int element) {
+        return mPositions[element] >= 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mPositions[mHeap[i]] = -1;
+        }
+        mSize = 0;
+    }
+
+    public int peek() {
+        return mHeap[0];
+    }
+
+    public double peekKey() {
+        return mKeys[mHeap[0]];
+    }
+
+    public int poll() {
+        int element = mHeap[0];
+        mPositions[element] = -1;
+        mPollCount++;
+        if (--mSize > 0) {
+            int last = mHeap[mSize];
+            mHeap[0] = last;
+            mPositions[last] = 0;
+            siftDown(0);
+        }
+        return element;
+    }
+
+    /**
+     * Inserts element or changes its key if it is already in the heap.
+     */
+    public void push(int element, double key) {
+        int position = mPositions[element];
+        if (position < 0) {
+            position = mSize++;
+            mHeap[position] = element;
+            mPositions[element] = position;
+            mKeys[element] = key;
+            siftUp(position);
+        } else {
+            double oldKey = mKeys[element];
+            mKeys[element] = key;
+            if (key < oldKey) {
+                siftUp(position);
+            } else {
+                siftDown(position);
+            }
+        }
+    }
+
+    private void siftUp(int position) {
+        int element = mHeap[position];
+        double key = mKeys[element];
+        while (position > 0) {
+            int parentPosition = (position - 1) >> 1;
+            int parent = mHeap[parentPosition];
+            if (mKeys[parent] <= key) {
+                break;
+            }
+            mHeap[position] = parent;
+            mPositions[parent] = position;
+            position = parentPosition;
+        }
+        mHeap[position] = element;
+        mPositions[element] = position;
+    }
+
+    private void siftDown(int position) {
+        int element = mHeap[position];
+        double key = mKeys[element];
+        int half = mSize >> 1;
+        while (position < half) {
+            int childPosition = (position << 1) + 1;
+            int child = mHeap[childPosition];
+            int rightPosition = childPosition + 1;
+            if (rightPosition < mSize && mKeys[mHeap[rightPosition]] < mKeys[child]) {
+                childPosition = rightPosition;
+                child = mHeap[childPosition];
+            }
+            if (key <= mKeys[child]) {
+                break;
+            }
+            mHeap[position] = child;
+            mPositions[child] = position;
+            position = childPosition;
+        }
+        mHeap[position] = element;
+        mPositions[element] = position;
+    }
+}
@@ -0,0 +1,45 @@
+package com.exaper.byog;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.alg.DijkstraShortestPath;
+import org.jgrapht.graph.SimpleWeightedGraph;
+
+import java.util.List;
+
+/**
+ * Builds jgrapht object graph and runs its Dijkstra on every search. Much slower than {@link DijkstraPathSearch},
+ * kept as a reference implementation.
+ */
+public class JGraphTPathSearch implements PathSearch {
+    @Override
+    public boolean findPath(CompactGraph graph, int start, int end, IntList path) {
+        SimpleWeightedGraph<Vertex, Edge> objectGraph = new SimpleWeightedGraph<>(Edge.class);
+        Vertex[] vertices = new Vertex[graph.getVertexCount()];
+        for (int v = 0; v < vertices.length; v++) {
+            vertices[v] = new Vertex(v);
+            objectGraph.addVertex(vertices[v]);
+        }
+        for (int e = 0, edgeCount = graph.getEdgeCount(); e < edgeCount; e++) {
+            Edge edge = objectGraph.addEdge(vertices[graph.getEdgeSource(e)], vertices[graph.getEdgeTarget(e)]);
+            objectGraph.setEdgeWeight(edge, graph.getWeight(e));
+        }
+        List<Edge> edges = DijkstraShortestPath.findPathBetween(objectGraph, vertices[start], vertices[end]);
+        if (edges == null) {
+            return false;
+        }
+        path.clear();
+        Vertex vertex = vertices[start];
+        path.add(start);
+        for (Edge edge : edges) {
+            vertex = Graphs.getOppositeVertex(objectGraph, edge, vertex);
+            path.add(vertex.getIndex());
+        }
+        return true;
+    }
+
+    @Override
+    public long getSettledVertexCount() {
+        // Dijkstra of jgrapht does not tell.
+        return 0;
+    }
+}
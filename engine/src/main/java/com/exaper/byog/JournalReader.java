@@ -0,0 +1,130 @@
+package com.exaper.byog;
+
+import java.io.IOException;
+
+/**
+ * Reads the graph saved by a {@link GraphJournal}: loads the snapshot, replays records made after it and reports
+ * vertices in order of their ids, then edges. Vertices keep ids of the journal, so once the graph is built with them
+ * the journal can {@link GraphJournal#resume} recording instead of being compacted. The journal files are only read.
+ */
+public final class JournalReader implements GraphSource {
+    private final GraphJournal mJournal;
+    private final VertexModel mVertices = new VertexModel();
+    private final EdgeStore mEdges = new EdgeStore();
+    private float mProgress;
+
+    public JournalReader(GraphJournal journal) {
+        mJournal = journal;
+    }
+
+    @Override
+    public float getProgress() {
+        return mProgress;
+    }
+
+    /**
+     * @throws IOException if the snapshot or journal can not be read or the snapshot is not a valid graph, no vertex
+     *                     is reported then.
+     */
+    @Override
+    public void parse(GraphParser.Sink sink) throws IOException {
+        mVertices.clear();
+        mEdges.clear();
+        mProgress = 0;
+        GraphFile snapshot = mJournal.openSnapshot();
+        if (snapshot != null) {
+            load(snapshot);
+        }
+        mJournal.replay(snapshot, new Replay());
+        int vertexCount = mVertices.size(), total = vertexCount + mEdges.getEdgeCount(), reported = 0;
+        sink.begin(vertexCount);
+        for (int vertex = 0, idCount = mVertices.getIdCount(); vertex < idCount; vertex++) {
+            if (mVertices.contains(vertex)) {
+                sink.addVertex(vertex, mVertices.getType(vertex), mVertices.getX(vertex), mVertices.getY(vertex));
+                mProgress = (float) ++reported / total;
+            }
+        }
+        for (int edge = 0, edgeIdCount = mEdges.getEdgeIdCount(); edge < edgeIdCount; edge++) {
+            if (mEdges.isEdge(edge)) {
+                sink.addEdge(mEdges.getSource(edge), mEdges.getTarget(edge));
+                mProgress = (float) ++reported / total;
+            }
+        }
+        mProgress = 1;
+    }
+
+    private void load(GraphFile snapshot) throws IOException {
+        for (int row = 0, vertexCount = snapshot.getVertexCount(); row < vertexCount; row++) {
+            int id = snapshot.getId(row), type = snapshot.getType(row);
+            if (id < 0 || mVertices.contains(id)) {
+                throw new IOException("Vertex " + row + " has invalid or duplicate id " + id);
+            }
+            if (!isValidType(type)) {
+                throw new IOException("Vertex " + id + " has unknown type " + type);
+            }
+            mVertices.add(id, type, snapshot.getX(row), snapshot.getY(row));
+        }
+        for (int edge = 0, edgeCount = snapshot.getEdgeCount(); edge < edgeCount; edge++) {
+            int source = snapshot.getEdgeSource(edge), target = snapshot.getEdgeTarget(edge);
+            if (!mVertices.contains(source) || !mVertices.contains(target)) {
+                throw new IOException("Edge " + edge + " refers to unknown vertex");
+            }
+            mEdges.addEdge(source, target);
+        }
+    }
+
+    private static boolean isValidType(int type) {
+        return type >= VertexModel.TYPE_INTERMEDIATE && type <= VertexModel.TYPE_END;
+    }
+
+    /**
+     * Applies journal records to the graph as they are, records referring to unknown vertices are skipped.
+     */
+    private final class Replay implements GraphJournal.Operations {
+        @Override
+        public void addVertex(int vertex, int type, float x, float y) {
+            if (vertex >= 0 && !mVertices.contains(vertex) && isValidType(type)) {
+                mVertices.add(vertex, type, x, y);
+            }
+        }
+
+        @Override
+        public void moveVertex(int vertex, float x, float y) {
+            if (mVertices.contains(vertex)) {
+                mVertices.setPosition(vertex, x, y);
+            }
+        }
+
+        @Override
+        public void removeVertex(int vertex) {
+            if (mVertices.contains(vertex)) {
+                mEdges.removeVertex(vertex);
+                mVertices.remove(vertex);
+            }
+        }
+
+        @Override
+        public void mergeVertices(int absorber, int victim) {
+            if (absorber != victim && mVertices.contains(absorber) && mVertices.contains(victim)) {
+                mEdges.mergeVertices(absorber, victim);
+                removeVertex(victim);
+            }
+        }
+
+        @Override
+        public void addEdge(int vertex1, int vertex2) {
+            if (mVertices.contains(vertex1) && mVertices.contains(vertex2)) {
+                mEdges.addEdge(vertex1, vertex2);
+            }
+        }
+
+        @Override
+        public void removeEdge(int vertex1, int vertex2) {
+            int edge = mVertices.contains(vertex1) && mVertices.contains(vertex2) ? mEdges.findEdge(vertex1, vertex2)
+                    : -1;
+            if (edge >= 0) {
+                mEdges.removeEdge(edge);
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.exaper.byog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Yen's k shortest loopless paths. Every accepted path yields candidates by deviating from it at each of its vertices:
+ * a spur search from the deviation vertex avoids the root part of the path before it and the edges accepted paths with
+ * the same root continue with. Spur searches of a path are independent, they are split between tasks running in
+ * parallel, each with its own search state.
+ * <p>
+ * Paths are kept until the graph version, the shortest path or the number of paths asked for changes, so repeated
+ * queries on an unchanged graph are answered without searching. Not thread safe.
+ */
+public class KShortestPaths {
+    private final List<SpurSearch> mSearches = new ArrayList<>();
+    private final List<int[]> mPaths = new ArrayList<>();
+    // Candidates ordered by cost. Every path ever queued stays in mSeenPaths, so none is queued twice.
+    private final PriorityQueue<Candidate> mCandidates = new PriorityQueue<>();
+    private final Set<Candidate> mSeenPaths = new HashSet<>();
+    // Cost of the path being deviated from up to each of its vertices.
+    private double[] mRootCosts = new double[0];
+    // Graph searched by the current call.
+    private CompactGraph mGraph;
+    private int mVersion = -1;
+    private int mCount;
+
+    /**
+     * @param parallelism number of spur search tasks run at once.
+     */
+    public KShortestPaths(int parallelism) {
+        for (int i = 0; i < parallelism; i++) {
+            mSearches.add(new SpurSearch(i, parallelism));
+        }
+    }
+
+    /**
+     * @param version      version of the graph, paths found for the same version are reused.
+     * @param shortestPath vertices of the shortest path between its first and last vertex, the first path returned.
+     * @param count        number of paths to find.
+     * @return up to count loopless paths from the shortest one on, in order of length. Contents are valid until the
+     * next call.
+     */
+    public List<int[]> findPaths(CompactGraph graph, int version, IntList shortestPath, int count,
+                                 ExecutorService executor) throws InterruptedException {
+        if (version == mVersion && count == mCount && !mPaths.isEmpty() && isPath(mPaths.get(0), shortestPath)) {
+            return mPaths;
+        }
+        // Anything left from an interrupted search is discarded with the version.
+        mVersion = -1;
+        mPaths.clear();
+        mCandidates.clear();
+        mSeenPaths.clear();
+        mGraph = graph;
+        mPaths.add(shortestPath.toArray());
+        while (mPaths.size() < count) {
+            int[] path = mPaths.get(mPaths.size() - 1);
+            prepareRootCosts(graph, path);
+            List<Future<Void>> futures = executor.invokeAll(mSearches);
+            try {
+                for (int i = 0, size = futures.size(); i < size; i++) {
+                    futures.get(i).get();
+                }
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            for (int i = 0, size = mSearches.size(); i < size; i++) {
+                List<Candidate> found = mSearches.get(i).mFound;
+                for (int j = 0, foundCount = found.size(); j < foundCount; j++) {
+                    Candidate candidate = found.get(j);
+                    if (mSeenPaths.add(candidate)) {
+                        mCandidates.add(candidate);
+                    }
+                }
+                found.clear();
+            }
+            Candidate next = mCandidates.poll();
+            if (next == null) {
+                break;
+            }
+            mPaths.add(next.mVertices);
+        }
+        mCandidates.clear();
+        mSeenPaths.clear();
+        mGraph = null;
+        mVersion = version;
+        mCount = count;
+        return mPaths;
+    }
+
+    private void prepareRootCosts(CompactGraph graph, int[] path) {
+        if (mRootCosts.length < path.length) {
+            mRootCosts = new double[path.length << 1];
+        }
+        mRootCosts[0] = 0;
+        for (int i = 1; i < path.length; i++) {
+            mRootCosts[i] = mRootCosts[i - 1] + graph.distance(path[i - 1], path[i]);
+        }
+    }
+
+    private static boolean isPath(int[] vertices, IntList path) {
+        if (vertices.length != path.size()) {
+            return false;
+        }
+        for (int i = 0; i < vertices.length; i++) {
+            if (vertices[i] != path.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasRoot(int[] path, int[] root, int spurIndex) {
+        for (int i = 0; i <= spurIndex; i++) {
+            if (path[i] != root[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+        private final int[] mVertices;
+        private final double mCost;
+
+        Candidate(int[] vertices, double cost) {
+            mVertices = vertices;
+            mCost = cost;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Double.compare(mCost, other.mCost);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(mVertices);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return this == obj || (obj instanceof Candidate && Arrays.equals(((Candidate) obj).mVertices, mVertices));
+        }
+    }
+
+    /**
+     * Runs spur searches from every stride-th vertex of the last accepted path, strided so that tasks get a fair
+     * share of both short and long root parts.
+     */
+    private final class SpurSearch implements Callable<Void> {
+        private final int mFirst;
+        private final int mStride;
+        private final SearchState mState = new SearchState();
+        private final IntList mPath = new IntList();
+        private final List<Candidate> mFound = new ArrayList<>();
+        // Vertices of the root part and neighbors the spur vertex must not continue with, flagged by the mark.
+        private int[] mBannedVertices = new int[0];
+        private int[] mBannedNext = new int[0];
+        private int mMark;
+
+        SpurSearch(int first, int stride) {
+            mFirst = first;
+            mStride = stride;
+        }
+
+        @Override
+        public Void call() {
+            int[] path = mPaths.get(mPaths.size() - 1);
+            mFound.clear();
+            for (int i = mFirst; i < path.length - 1; i += mStride) {
+                search(path, i);
+            }
+            return null;
+        }
+
+        private void search(int[] path, int spurIndex) {
+            CompactGraph graph = mGraph;
+            int vertexCount = graph.getVertexCount();
+            nextMark(vertexCount);
+            int mark = mMark;
+            for (int i = 0; i < spurIndex; i++) {
+                mBannedVertices[path[i]] = mark;
+            }
+            for (int p = 0, size = mPaths.size(); p < size; p++) {
+                int[] accepted = mPaths.get(p);
+                if (accepted.length > spurIndex + 1 && hasRoot(accepted, path, spurIndex)) {
+                    mBannedNext[accepted[spurIndex + 1]] = mark;
+                }
+            }
+            int spur = path[spurIndex], end = path[path.length - 1];
+            SearchState state = mState;
+            IntMinHeap queue = state.queue;
+            state.reset(vertexCount);
+            state.setDistance(spur, 0, -1);
+            queue.push(spur, 0);
+            while (!queue.isEmpty()) {
+                int vertex = queue.poll();
+                if (vertex == end) {
+                    mPath.clear();
+                    for (int i = 0; i <= spurIndex; i++) {
+                        mPath.add(path[i]);
+                    }
+                    state.appendPath(graph, spur, end, mPath);
+                    mFound.add(new Candidate(mPath.toArray(), mRootCosts[spurIndex] + state.getDistance(end)));
+                    return;
+                }
+                double distance = state.getDistance(vertex);
+                for (int arc = graph.getFirstArc(vertex), last = graph.getFirstArc(vertex + 1); arc < last; arc++) {
+                    int other = graph.getArcVertex(arc);
+                    if (mBannedVertices[other] == mark || (vertex == spur && mBannedNext[other] == mark)) {
+                        continue;
+                    }
+                    double otherDistance = distance + graph.getWeight(graph.getArcEdge(arc));
+                    if (otherDistance < state.getDistance(other)) {
+                        state.setDistance(other, otherDistance, graph.getArcEdge(arc));
+                        queue.push(other, otherDistance);
+                    }
+                }
+            }
+        }
+
+        private void nextMark(int vertexCount) {
+            if (mBannedVertices.length < vertexCount) {
+                mBannedVertices = new int[vertexCount];
+                mBannedNext = new int[vertexCount];
+                mMark = 0;
+            }
+            if (++mMark == Integer.MAX_VALUE) {
+                Arrays.fill(mBannedVertices, 0);
+                Arrays.fill(mBannedNext, 0);
+                mMark = 1;
+            }
+        }
+    }
+}
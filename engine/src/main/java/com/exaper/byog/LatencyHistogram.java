@@ -0,0 +1,108 @@
+package com.exaper.byog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds with HDR-style log-linear buckets: values below 64 get a bucket each, above
+ * that every power of two range is split into 32 buckets, so any value is kept to within about 3%.
+ * <p>
+ * Recording is lock free and allocates nothing, so it can run on any thread while another one reads the histogram.
+ * Readers see every recorded value either counted or not yet counted, counts, total and max are not read atomically
+ * together.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // Shift of the largest long leaves SUB_BUCKET_BITS + 1 significant bits, buckets up to it are counted.
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotal = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * @param nanos duration, negative ones are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        // Bucket is counted before the total count, so that percentiles of the count read always find their bucket.
+        mCounts.incrementAndGet(getBucket(value));
+        mCount.incrementAndGet();
+        mTotal.addAndGet(value);
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * @return mean of recorded durations in nanoseconds or 0 if nothing is recorded.
+     */
+    public double getMean() {
+        long count = mCount.get();
+        return count == 0 ? 0 : (double) mTotal.get() / count;
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * @param percentile percentile in range [0, 100].
+     * @return the largest value equivalent to the one at the percentile, in nanoseconds, or 0 if nothing is recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long max = mMax.get();
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += mCounts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(getHighestValue(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Forgets recorded values. Values recorded concurrently might be partially forgotten.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            mCounts.set(bucket, 0);
+        }
+        mCount.set(0);
+        mTotal.set(0);
+        mMax.set(0);
+    }
+
+    private static int getBucket(long value) {
+        int shift = Math.max(0, Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    private static long getHighestValue(int bucket) {
+        if (bucket == BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        return getLowestValue(bucket + 1) - 1;
+    }
+
+    private static long getLowestValue(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT << 1) {
+            return bucket;
+        }
+        int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+        return (long) (bucket - (shift << SUB_BUCKET_BITS)) << shift;
+    }
+}
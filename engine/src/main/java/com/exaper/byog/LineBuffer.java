@@ -0,0 +1,66 @@
+package com.exaper.byog;
+
+/**
+ * Edges packed in screen coordinates of a {@link Viewport} as x1, y1, x2, y2 quadruples, the way
+ * {@code Canvas.drawLines} takes them. Edges with bounds outside of the screen are skipped. The array is reused, so
+ * packing does not allocate once it has room for all of the lines.
+ */
+public final class LineBuffer {
+    private final Viewport mViewport;
+    private float[] mLines = new float[64];
+    private int mLineCount;
+    // Screen bounds lines are culled to, grown by line width.
+    private float mLeft;
+    private float mTop;
+    private float mRight;
+    private float mBottom;
+
+    public LineBuffer(Viewport viewport) {
+        mViewport = viewport;
+    }
+
+    /**
+     * Empties the buffer.
+     *
+     * @param capacity number of lines to make room for.
+     * @param pad      width of lines, lines that close to the screen are kept.
+     */
+    public void clear(int capacity, float width, float height, float pad) {
+        if (mLines.length < capacity << 2) {
+            mLines = new float[capacity << 3];
+        }
+        mLineCount = 0;
+        mLeft = -pad;
+        mTop = -pad;
+        mRight = width + pad;
+        mBottom = height + pad;
+    }
+
+    /**
+     * Appends line between vertices unless it is off the screen.
+     */
+    public void add(VertexModel vertices, int vertex1, int vertex2) {
+        Viewport viewport = mViewport;
+        float x1 = viewport.toScreenX(vertices.getX(vertex1)), y1 = viewport.toScreenY(vertices.getY(vertex1));
+        float x2 = viewport.toScreenX(vertices.getX(vertex2)), y2 = viewport.toScreenY(vertices.getY(vertex2));
+        if (Math.max(x1, x2) < mLeft || Math.min(x1, x2) > mRight || Math.max(y1, y2) < mTop
+                || Math.min(y1, y2) > mBottom) {
+            return;
+        }
+        int offset = mLineCount << 2;
+        float[] lines = mLines;
+        lines[offset] = x1;
+        lines[offset + 1] = y1;
+        lines[offset + 2] = x2;
+        lines[offset + 3] = y2;
+        mLineCount++;
+    }
+
+    public float[] getLines() {
+        return mLines;
+    }
+
+    public int getLineCount() {
+        return mLineCount;
+    }
+}
@@ -0,0 +1,112 @@
+package com.exaper.byog;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long keys to non-negative int values. Uses linear probing with backward shift
+ * deletion, so removals leave no tombstones behind and lookups stay short.
+ */
+public class LongIntHashMap {
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+    private long[] mKeys;
+    private int[] mValues;
+    // Fibonacci hashing takes the top bits of the product, as many as needed to address the table.
+    private int mShift;
+    private int mSize;
+
+    public LongIntHashMap() {
+        allocate(16);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return value of the key or -1 if there is no such key.
+     */
+    public int get(long key) {
+        int slot = findSlot(key);
+        return mKeys[slot] == key ? mValues[slot] : -1;
+    }
+
+    public void put(long key, int value) {
+        if (key == EMPTY_KEY) {
+            throw new IllegalArgumentException("Key " + key + " is reserved");
+        }
+        int slot = findSlot(key);
+        if (mKeys[slot] != key) {
+            if ((mSize + 1) << 1 > mKeys.length) {
+                rehash(mKeys.length << 1);
+                slot = findSlot(key);
+            }
+            mKeys[slot] = key;
+            mSize++;
+        }
+        mValues[slot] = value;
+    }
+
+    /**
+     * @return value the key had or -1 if there was no such key.
+     */
+    public int remove(long key) {
+        int slot = findSlot(key);
+        if (mKeys[slot] != key) {
+            return -1;
+        }
+        int value = mValues[slot];
+        int mask = mKeys.length - 1;
+        // Shift back entries of the probe sequence which would become unreachable through the emptied slot.
+        int hole = slot;
+        for (int next = (hole + 1) & mask; mKeys[next] != EMPTY_KEY; next = (next + 1) & mask) {
+            int home = home(mKeys[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                mKeys[hole] = mKeys[next];
+                mValues[hole] = mValues[next];
+                hole = next;
+            }
+        }
+        mKeys[hole] = EMPTY_KEY;
+        mSize--;
+        return value;
+    }
+
+    public void clear() {
+        Arrays.fill(mKeys, EMPTY_KEY);
+        mSize = 0;
+    }
+
+    private int findSlot(long key) {
+        int mask = mKeys.length - 1;
+        int slot = home(key);
+        while (mKeys[slot] != EMPTY_KEY && mKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int home(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> mShift);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = mKeys;
+        int[] oldValues = mValues;
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY_KEY) {
+                int newSlot = findSlot(oldKeys[slot]);
+                mKeys[newSlot] = oldKeys[slot];
+                mValues[newSlot] = oldValues[slot];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        Arrays.fill(mKeys, EMPTY_KEY);
+        mValues = new int[capacity];
+        mShift = Long.numberOfLeadingZeros(capacity) + 1;
+    }
+}
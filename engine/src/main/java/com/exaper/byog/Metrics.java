@@ -0,0 +1,129 @@
+package com.exaper.byog;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named {@link LatencyHistogram}s and counters, reported in the order they were registered. Histograms and counters
+ * are looked up once and then updated without locking from any thread.
+ */
+public class Metrics {
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    private final Map<String, LatencyHistogram> mHistograms = new LinkedHashMap<>();
+    private final Map<String, AtomicLong> mCounters = new LinkedHashMap<>();
+
+    /**
+     * @return histogram registered under the name, it is registered on the first call.
+     */
+    public synchronized LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = mHistograms.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            mHistograms.put(name, histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * @return counter registered under the name, it is registered on the first call.
+     */
+    public synchronized AtomicLong counter(String name) {
+        AtomicLong counter = mCounters.get(name);
+        if (counter == null) {
+            counter = new AtomicLong();
+            mCounters.put(name, counter);
+        }
+        return counter;
+    }
+
+    /**
+     * Zeroes all histograms and counters, they stay registered.
+     */
+    public synchronized void reset() {
+        for (LatencyHistogram histogram : mHistograms.values()) {
+            histogram.reset();
+        }
+        for (AtomicLong counter : mCounters.values()) {
+            counter.set(0);
+        }
+    }
+
+    /**
+     * @return a line per histogram with durations in milliseconds, followed by a line per counter.
+     */
+    public synchronized String toText() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> entry : mHistograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            text.append(entry.getKey()).append(": count=").append(histogram.getCount());
+            appendMillis(text, " mean=", histogram.getMean());
+            for (double percentile : PERCENTILES) {
+                appendMillis(text, " p" + (int) percentile + "=", histogram.getValueAtPercentile(percentile));
+            }
+            appendMillis(text, " max=", histogram.getMax());
+            text.append('\n');
+        }
+        for (Map.Entry<String, AtomicLong> entry : mCounters.entrySet()) {
+            text.append(entry.getKey()).append(": ").append(entry.getValue().get()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return {"histograms": {name: {"count", "mean_ns", "p50_ns", "p90_ns", "p99_ns", "max_ns"}},
+     * "counters": {name: value}}.
+     */
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{\"histograms\":{");
+        boolean first = true;
+        for (Map.Entry<String, LatencyHistogram> entry : mHistograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendString(json, entry.getKey());
+            json.append(":{\"count\":").append(histogram.getCount());
+            json.append(",\"mean_ns\":").append(Math.round(histogram.getMean()));
+            for (double percentile : PERCENTILES) {
+                json.append(",\"p").append((int) percentile).append("_ns\":")
+                        .append(histogram.getValueAtPercentile(percentile));
+            }
+            json.append(",\"max_ns\":").append(histogram.getMax()).append('}');
+        }
+        json.append("},\"counters\":{");
+        first = true;
+        for (Map.Entry<String, AtomicLong> entry : mCounters.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendString(json, entry.getKey());
+            json.append(':').append(entry.getValue().get());
+        }
+        return json.append("}}").toString();
+    }
+
+    private static void appendMillis(StringBuilder text, String label, double nanos) {
+        text.append(label).append(String.format(Locale.US, "%.2fms", nanos / NANOS_PER_MILLI));
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
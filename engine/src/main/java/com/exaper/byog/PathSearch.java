@@ -0,0 +1,18 @@
+package com.exaper.byog;
+
+/**
+ * Point to point shortest path search strategy. Implementations keep their scratch state between searches and are
+ * not thread safe.
+ */
+public interface PathSearch {
+    /**
+     * @param path receives vertices of the shortest path from start to end, both inclusive.
+     * @return false if there is no path between start and end.
+     */
+    boolean findPath(CompactGraph graph, int start, int end, IntList path);
+
+    /**
+     * @return number of vertices settled by searches so far or 0 if the search does not count them.
+     */
+    long getSettledVertexCount();
+}
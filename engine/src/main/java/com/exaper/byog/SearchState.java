@@ -0,0 +1,69 @@
+package com.exaper.byog;
+
+import java.util.Arrays;
+
+/**
+ * Per-vertex labels of a single search plus its queue. Labels are invalidated in O(1) between searches by bumping
+ * the search mark instead of clearing arrays.
+ */
+final class SearchState {
+    final IntMinHeap queue = new IntMinHeap();
+    private double[] mDistances = new double[0];
+    private int[] mParentEdges = new int[0];
+    private int[] mMarks = new int[0];
+    private int mMark;
+
+    void reset(int vertexCount) {
+        if (mMarks.length < vertexCount) {
+            mDistances = new double[vertexCount];
+            mParentEdges = new int[vertexCount];
+            mMarks = new int[vertexCount];
+            mMark = 0;
+        }
+        queue.ensureCapacity(vertexCount);
+        queue.clear();
+        if (++mMark == Integer.MAX_VALUE) {
+            Arrays.fill(mMarks, 0);
+            mMark = 1;
+        }
+    }
+
+    boolean isReached(int vertex) {
+        return mMarks[vertex] == mMark;
+    }
+
+    double getDistance(int vertex) {
+        return mMarks[vertex] == mMark ? mDistances[vertex] : Double.POSITIVE_INFINITY;
+    }
+
+    void setDistance(int vertex, double distance, int parentEdge) {
+        mMarks[vertex] = mMark;
+        mDistances[vertex] = distance;
+        mParentEdges[vertex] = parentEdge;
+    }
+
+    /**
+     * Appends vertices of the tree path from root to vertex, excluding root.
+     */
+    void appendPath(CompactGraph graph, int root, int vertex, IntList path) {
+        int from = path.size();
+        for (int v = vertex; v != root; v = graph.getOppositeVertex(mParentEdges[v], v)) {
+            path.add(v);
+        }
+        for (int i = from, j = path.size() - 1; i < j; i++, j--) {
+            int value = path.get(i);
+            path.set(i, path.get(j));
+            path.set(j, value);
+        }
+    }
+
+    /**
+     * Appends vertices of the tree path from vertex to root, excluding vertex.
+     */
+    void appendReversedPath(CompactGraph graph, int root, int vertex, IntList path) {
+        for (int v = vertex; v != root; ) {
+            v = graph.getOppositeVertex(mParentEdges[v], v);
+            path.add(v);
+        }
+    }
+}
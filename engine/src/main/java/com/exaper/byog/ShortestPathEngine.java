@@ -0,0 +1,271 @@
+package com.exaper.byog;
+
+import java.util.Arrays;
+
+/**
+ * Keeps weighted graph and shortest path tree rooted at start vertex between queries. Moving a vertex only updates
+ * weights of its incident edges and repairs affected part of the tree instead of running Dijkstra from scratch.
+ * Alternatively point to point {@link PathSearch} can be used on the same graph. Not thread safe.
+ */
+public class ShortestPathEngine {
+    private final CompactGraph mGraph = new CompactGraph();
+    private final IntMinHeap mQueue = new IntMinHeap();
+    private final IntList mShortestPath = new IntList();
+    // Edges changed since the tree was last valid, mOldWeights keeps weights they had at that time.
+    private final IntList mChangedEdges = new IntList();
+    private final IntList mAffectedVertices = new IntList();
+    private final IntList mStack = new IntList();
+    private boolean[] mEdgeChanged = new boolean[0];
+    private double[] mOldWeights = new double[0];
+    private boolean[] mVertexAffected = new boolean[0];
+    private double[] mDistances = new double[0];
+    private int[] mParentEdges = new int[0];
+    private int mStructureVersion;
+    // Bumped whenever the graph is rebuilt or a vertex moves.
+    private int mGraphVersion;
+    // Vertices settled by queries so far.
+    private long mSettledVertexCount;
+    private boolean mHasGraph;
+    private int mStart = -1;
+    private int mEnd = -1;
+    private boolean mTreeValid;
+    private boolean mShortestPathValid;
+    private boolean mHasShortestPath;
+    private PathSearch mPathSearch;
+
+    public CompactGraph getGraph() {
+        return mGraph;
+    }
+
+    /**
+     * @return version of the graph, it changes whenever weights or structure of the graph do.
+     */
+    public int getGraphVersion() {
+        return mGraphVersion;
+    }
+
+    /**
+     * @return number of vertices settled by shortest path queries so far, tree repairs included.
+     */
+    public long getSettledVertexCount() {
+        return mSettledVertexCount;
+    }
+
+    public PathSearch getPathSearch() {
+        return mPathSearch;
+    }
+
+    /**
+     * @param pathSearch search to run on every query or null to maintain shortest path tree incrementally.
+     */
+    public void setPathSearch(PathSearch pathSearch) {
+        if (mPathSearch != pathSearch) {
+            mPathSearch = pathSearch;
+            invalidateTree();
+        }
+    }
+
+    /**
+     * Brings the graph in line with the snapshot. Graph is rebuilt only when snapshot structure differs from the one
+     * applied previously, otherwise just vertex positions are updated.
+     */
+    public void update(GraphSnapshot snapshot) {
+        int vertexCount = snapshot.getVertexCount();
+        if (!mHasGraph || snapshot.getStructureVersion() != mStructureVersion) {
+            mGraph.build(snapshot);
+            mHasGraph = true;
+            mStructureVersion = snapshot.getStructureVersion();
+            mGraphVersion++;
+            ensureCapacity(vertexCount, snapshot.getEdgeCount());
+            invalidateTree();
+        } else {
+            for (int v = 0; v < vertexCount; v++) {
+                moveVertex(v, snapshot.getX(v), snapshot.getY(v));
+            }
+        }
+        setEndpoints(snapshot.getStart(), snapshot.getEnd());
+    }
+
+    /**
+     * @return vertices of the shortest path from start to end vertex or null if there is no such path. Contents are
+     * valid until the next update.
+     */
+    public IntList getShortestPath() {
+        if (!mShortestPathValid) {
+            if (mStart < 0 || mEnd < 0) {
+                mHasShortestPath = false;
+            } else if (mPathSearch != null) {
+                long settledVertexCount = mPathSearch.getSettledVertexCount();
+                mHasShortestPath = mPathSearch.findPath(mGraph, mStart, mEnd, mShortestPath);
+                mSettledVertexCount += mPathSearch.getSettledVertexCount() - settledVertexCount;
+            } else {
+                long settledVertexCount = mQueue.getPollCount();
+                updateTree();
+                mHasShortestPath = buildPath();
+                mSettledVertexCount += mQueue.getPollCount() - settledVertexCount;
+            }
+            mShortestPathValid = true;
+        }
+        return mHasShortestPath ? mShortestPath : null;
+    }
+
+    private void setEndpoints(int start, int end) {
+        if (mStart != start) {
+            mStart = start;
+            invalidateTree();
+        }
+        if (mEnd != end) {
+            mEnd = end;
+            mShortestPathValid = false;
+        }
+    }
+
+    private void moveVertex(int vertex, float x, float y) {
+        CompactGraph graph = mGraph;
+        if (graph.getX(vertex) == x && graph.getY(vertex) == y) {
+            return;
+        }
+        if (mTreeValid) {
+            for (int arc = graph.getFirstArc(vertex), last = graph.getFirstArc(vertex + 1); arc < last; arc++) {
+                int edge = graph.getArcEdge(arc);
+                if (!mEdgeChanged[edge]) {
+                    mEdgeChanged[edge] = true;
+                    mOldWeights[edge] = graph.getWeight(edge);
+                    mChangedEdges.add(edge);
+                }
+            }
+        }
+        graph.setPosition(vertex, x, y);
+        mGraphVersion++;
+        mShortestPathValid = false;
+    }
+
+    private void ensureCapacity(int vertexCount, int edgeCount) {
+        if (mDistances.length < vertexCount) {
+            mDistances = new double[vertexCount];
+            mParentEdges = new int[vertexCount];
+            mVertexAffected = new boolean[vertexCount];
+        }
+        if (mEdgeChanged.length < edgeCount) {
+            mEdgeChanged = new boolean[edgeCount];
+            mOldWeights = new double[edgeCount];
+        }
+        mQueue.ensureCapacity(vertexCount);
+    }
+
+    private void invalidateTree() {
+        mTreeValid = false;
+        mShortestPathValid = false;
+        clearChangedEdges();
+    }
+
+    private void clearChangedEdges() {
+        for (int i = 0, size = mChangedEdges.size(); i < size; i++) {
+            mEdgeChanged[mChangedEdges.get(i)] = false;
+        }
+        mChangedEdges.clear();
+    }
+
+    private void updateTree() {
+        if (!mTreeValid) {
+            Arrays.fill(mDistances, 0, mGraph.getVertexCount(), Double.POSITIVE_INFINITY);
+            Arrays.fill(mParentEdges, 0, mGraph.getVertexCount(), -1);
+            mDistances[mStart] = 0;
+            mQueue.push(mStart, 0);
+            mTreeValid = true;
+        } else if (!mChangedEdges.isEmpty()) {
+            seedRepair();
+        }
+        clearChangedEdges();
+
+        CompactGraph graph = mGraph;
+        while (!mQueue.isEmpty()) {
+            int vertex = mQueue.poll();
+            for (int arc = graph.getFirstArc(vertex), last = graph.getFirstArc(vertex + 1); arc < last; arc++) {
+                relax(vertex, graph.getArcEdge(arc), graph.getArcVertex(arc));
+            }
+        }
+    }
+
+    /**
+     * Dynamic SSSP repair: vertices hanging off tree edges that got longer lose their distances and are re-attached
+     * to the rest of the tree, edges that got shorter are relaxed. Then label-correcting Dijkstra propagates changes.
+     */
+    private void seedRepair() {
+        CompactGraph graph = mGraph;
+        for (int i = 0, size = mChangedEdges.size(); i < size; i++) {
+            int edge = mChangedEdges.get(i);
+            if (graph.getWeight(edge) > mOldWeights[edge]) {
+                int source = graph.getEdgeSource(edge), target = graph.getEdgeTarget(edge);
+                if (mParentEdges[target] == edge) {
+                    markAffected(target);
+                } else if (mParentEdges[source] == edge) {
+                    markAffected(source);
+                }
+            }
+        }
+        while (!mStack.isEmpty()) {
+            int vertex = mStack.removeLast();
+            for (int arc = graph.getFirstArc(vertex), last = graph.getFirstArc(vertex + 1); arc < last; arc++) {
+                int other = graph.getArcVertex(arc);
+                if (mParentEdges[other] == graph.getArcEdge(arc)) {
+                    markAffected(other);
+                }
+            }
+        }
+        for (int i = 0, size = mAffectedVertices.size(); i < size; i++) {
+            int vertex = mAffectedVertices.get(i);
+            mDistances[vertex] = Double.POSITIVE_INFINITY;
+            mParentEdges[vertex] = -1;
+        }
+        for (int i = 0, size = mAffectedVertices.size(); i < size; i++) {
+            int vertex = mAffectedVertices.get(i);
+            for (int arc = graph.getFirstArc(vertex), last = graph.getFirstArc(vertex + 1); arc < last; arc++) {
+                int other = graph.getArcVertex(arc);
+                if (!mVertexAffected[other]) {
+                    relax(other, graph.getArcEdge(arc), vertex);
+                }
+            }
+        }
+        for (int i = 0, size = mAffectedVertices.size(); i < size; i++) {
+            mVertexAffected[mAffectedVertices.get(i)] = false;
+        }
+        mAffectedVertices.clear();
+        for (int i = 0, size = mChangedEdges.size(); i < size; i++) {
+            int edge = mChangedEdges.get(i);
+            int source = graph.getEdgeSource(edge), target = graph.getEdgeTarget(edge);
+            relax(source, edge, target);
+            relax(target, edge, source);
+        }
+    }
+
+    private void markAffected(int vertex) {
+        if (!mVertexAffected[vertex]) {
+            mVertexAffected[vertex] = true;
+            mAffectedVertices.add(vertex);
+            mStack.add(vertex);
+        }
+    }
+
+    private void relax(int from, int edge, int to) {
+        double distance = mDistances[from] + mGraph.getWeight(edge);
+        if (distance < mDistances[to]) {
+            mDistances[to] = distance;
+            mParentEdges[to] = edge;
+            mQueue.push(to, distance);
+        }
+    }
+
+    private boolean buildPath() {
+        mShortestPath.clear();
+        if (mDistances[mEnd] == Double.POSITIVE_INFINITY) {
+            return false;
+        }
+        for (int vertex = mEnd; vertex != mStart; vertex = mGraph.getOppositeVertex(mParentEdges[vertex], vertex)) {
+            mShortestPath.add(vertex);
+        }
+        mShortestPath.add(mStart);
+        mShortestPath.reverse();
+        return true;
+    }
+}
@@ -0,0 +1,184 @@
+package com.exaper.byog;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid of points identified by non-negative ints. Grid cells are kept in a hash table, so the grid is
+ * unbounded and only occupied cells take memory. With cell size comparable to the query size, point and rectangle
+ * queries visit a constant number of cells regardless of the number of points.
+ */
+public class SpatialIndex {
+    // Cell key of points not in the index, no cell has it as coordinates are clamped.
+    private static final long NO_CELL = Long.MIN_VALUE;
+
+    private final float mCellSize;
+    private float[] mX = new float[0];
+    private float[] mY = new float[0];
+    // Doubly linked lists of points sharing a cell.
+    private int[] mNext = new int[0];
+    private int[] mPrevious = new int[0];
+    // Key of the cell the point is in or NO_CELL if point is not in the index.
+    private long[] mCellKeys = new long[0];
+    // Head of the point list of each occupied cell.
+    private final LongIntHashMap mCells = new LongIntHashMap();
+    private int mSize;
+
+    public SpatialIndex(float cellSize) {
+        mCellSize = cellSize;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean contains(int point) {
+        return point < mCellKeys.length && mCellKeys[point] != NO_CELL;
+    }
+
+    public float getX(int point) {
+        return mX[point];
+    }
+
+    public float getY(int point) {
+        return mY[point];
+    }
+
+    /**
+     * Adds point or moves it if it is in the index already.
+     */
+    public void put(int point, float x, float y) {
+        ensureCapacity(point + 1);
+        long cellKey = cellKey(x, y);
+        long oldCellKey = mCellKeys[point];
+        if (oldCellKey != NO_CELL) {
+            if (oldCellKey == cellKey) {
+                mX[point] = x;
+                mY[point] = y;
+                return;
+            }
+            unlink(point);
+        } else {
+            mSize++;
+        }
+        mX[point] = x;
+        mY[point] = y;
+        link(point, cellKey);
+    }
+
+    public void remove(int point) {
+        if (contains(point)) {
+            unlink(point);
+            mSize--;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(mCellKeys, NO_CELL);
+        mCells.clear();
+        mSize = 0;
+    }
+
+    /**
+     * Collects points within the rectangle, edges inclusive.
+     */
+    public void query(float left, float top, float right, float bottom, IntList result) {
+        int minColumn = cell(left), maxColumn = cell(right);
+        int minRow = cell(top), maxRow = cell(bottom);
+        long cellCount = ((long) maxColumn - minColumn + 1) * ((long) maxRow - minRow + 1);
+        if (cellCount > mCells.size()) {
+            // Rectangle spans more cells than there are occupied ones, walking the points is cheaper.
+            for (int point = 0; point < mCellKeys.length; point++) {
+                if (mCellKeys[point] != NO_CELL && isInside(point, left, top, right, bottom)) {
+                    result.add(point);
+                }
+            }
+            return;
+        }
+        for (int column = minColumn; column <= maxColumn; column++) {
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int point = mCells.get(cellKey(column, row)); point >= 0; point = mNext[point]) {
+                    if (isInside(point, left, top, right, bottom)) {
+                        result.add(point);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return point closest to (x, y) within maxDistance along both axes or -1 if there is none.
+     */
+    public int findNearest(float x, float y, float maxDistance, IntList scratch) {
+        scratch.clear();
+        query(x - maxDistance, y - maxDistance, x + maxDistance, y + maxDistance, scratch);
+        int nearest = -1;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0, size = scratch.size(); i < size; i++) {
+            int point = scratch.get(i);
+            double distance = Math.hypot(mX[point] - x, mY[point] - y);
+            if (distance < nearestDistance) {
+                nearestDistance = distance;
+                nearest = point;
+            }
+        }
+        return nearest;
+    }
+
+    private boolean isInside(int point, float left, float top, float right, float bottom) {
+        float x = mX[point], y = mY[point];
+        return x >= left && x <= right && y >= top && y <= bottom;
+    }
+
+    private void link(int point, long cellKey) {
+        int head = mCells.get(cellKey);
+        mNext[point] = head;
+        mPrevious[point] = -1;
+        if (head >= 0) {
+            mPrevious[head] = point;
+        }
+        mCells.put(cellKey, point);
+        mCellKeys[point] = cellKey;
+    }
+
+    private void unlink(int point) {
+        int next = mNext[point], previous = mPrevious[point];
+        if (previous >= 0) {
+            mNext[previous] = next;
+        } else if (next >= 0) {
+            mCells.put(mCellKeys[point], next);
+        } else {
+            // Emptied cells are dropped, so that the table does not fill up with cells points have left.
+            mCells.remove(mCellKeys[point]);
+        }
+        if (next >= 0) {
+            mPrevious[next] = previous;
+        }
+        mCellKeys[point] = NO_CELL;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > mCellKeys.length) {
+            int oldCapacity = mCellKeys.length;
+            int newCapacity = Math.max(capacity, Math.max(16, oldCapacity << 1));
+            mX = Arrays.copyOf(mX, newCapacity);
+            mY = Arrays.copyOf(mY, newCapacity);
+            mNext = Arrays.copyOf(mNext, newCapacity);
+            mPrevious = Arrays.copyOf(mPrevious, newCapacity);
+            mCellKeys = Arrays.copyOf(mCellKeys, newCapacity);
+            Arrays.fill(mCellKeys, oldCapacity, newCapacity, NO_CELL);
+        }
+    }
+
+    private int cell(float coordinate) {
+        // Leftmost column is left out, its key with row 0 would be NO_CELL.
+        return Math.max(Integer.MIN_VALUE + 1, (int) Math.floor(coordinate / mCellSize));
+    }
+
+    private long cellKey(float x, float y) {
+        return cellKey(cell(x), cell(y));
+    }
+
+    private static long cellKey(int column, int row) {
+        return ((long) column << 32) | (row & 0xffffffffL);
+    }
+}
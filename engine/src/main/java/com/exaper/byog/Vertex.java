@@ -0,0 +1,26 @@
+package com.exaper.byog;
+
+/**
+ * Vertex of the object graph used by {@link JGraphTPathSearch}, identified by its {@link CompactGraph} index.
+ */
+public class Vertex {
+    private final int mIndex;
+
+    public Vertex(int index) {
+        this.mIndex = index;
+    }
+
+    public int getIndex() {
+        return mIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return mIndex;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || (obj instanceof Vertex && ((Vertex) obj).mIndex == mIndex);
+    }
+}
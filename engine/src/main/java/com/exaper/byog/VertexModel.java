@@ -0,0 +1,156 @@
+package com.exaper.byog;
+
+import java.util.Arrays;
+
+/**
+ * Flat model of graph vertices: position, type and temporary flag of every vertex kept in parallel arrays. Vertices
+ * get dense recycled int ids, so ids can index other per-vertex arrays and serve as snapshot indices. Positions are
+ * kept interleaved, so that {@link #swapCoordinates} can move all vertices at once.
+ */
+public class VertexModel {
+    // Same values as vertexType attribute and VertexView.VertexType ordinals.
+    public static final int TYPE_INTERMEDIATE = 0;
+    public static final int TYPE_START = 1;
+    public static final int TYPE_END = 2;
+
+    private final IntList mFreeIds = new IntList();
+    // Pairs of x, y coordinates, might have room for fewer vertices than the other arrays.
+    private float[] mCoordinates = new float[32];
+    // Type of the vertex or -1 if id is not in use.
+    private int[] mTypes = new int[16];
+    private boolean[] mTemporary = new boolean[16];
+    private int mIdCount;
+    private int mSize;
+
+    public VertexModel() {
+        Arrays.fill(mTypes, -1);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return upper bound of vertex ids, ids of removed vertices in [0, getIdCount()) are not valid vertices.
+     */
+    public int getIdCount() {
+        return mIdCount;
+    }
+
+    public boolean contains(int vertex) {
+        return vertex >= 0 && vertex < mIdCount && mTypes[vertex] >= 0;
+    }
+
+    public float getX(int vertex) {
+        return mCoordinates[vertex << 1];
+    }
+
+    public float getY(int vertex) {
+        return mCoordinates[(vertex << 1) + 1];
+    }
+
+    public int getType(int vertex) {
+        return mTypes[vertex];
+    }
+
+    public boolean isTemporary(int vertex) {
+        return mTemporary[vertex];
+    }
+
+    /**
+     * @return id of the new vertex.
+     */
+    public int add(int type, float x, float y) {
+        int vertex = mFreeIds.isEmpty() ? mIdCount++ : mFreeIds.removeLast();
+        ensureCapacity(vertex + 1);
+        mCoordinates[vertex << 1] = x;
+        mCoordinates[(vertex << 1) + 1] = y;
+        mTypes[vertex] = type;
+        mTemporary[vertex] = false;
+        mSize++;
+        return vertex;
+    }
+
+    /**
+     * Adds the vertex with an id of a saved graph. Ids skipped over are free ids afterwards. Reusing an id freed
+     * before takes O(number of free ids).
+     *
+     * @throws IllegalArgumentException if the id is negative or in use.
+     */
+    public void add(int vertex, int type, float x, float y) {
+        if (vertex < 0 || contains(vertex)) {
+            throw new IllegalArgumentException("Vertex " + vertex + " is in use or invalid");
+        }
+        if (vertex >= mIdCount) {
+            for (int id = mIdCount; id < vertex; id++) {
+                mFreeIds.add(id);
+            }
+            mIdCount = vertex + 1;
+        } else {
+            // Ids are freed and taken last in, first out, the id is likely to be near the end.
+            int i = mFreeIds.size() - 1;
+            while (mFreeIds.get(i) != vertex) {
+                i--;
+            }
+            mFreeIds.set(i, mFreeIds.get(mFreeIds.size() - 1));
+            mFreeIds.removeLast();
+        }
+        ensureCapacity(vertex + 1);
+        mCoordinates[vertex << 1] = x;
+        mCoordinates[(vertex << 1) + 1] = y;
+        mTypes[vertex] = type;
+        mTemporary[vertex] = false;
+        mSize++;
+    }
+
+    public void remove(int vertex) {
+        mTypes[vertex] = -1;
+        mFreeIds.add(vertex);
+        mSize--;
+    }
+
+    public void setPosition(int vertex, float x, float y) {
+        mCoordinates[vertex << 1] = x;
+        mCoordinates[(vertex << 1) + 1] = y;
+    }
+
+    /**
+     * Moves all vertices at once, the model keeps the array instead of copying it.
+     *
+     * @param coordinates x and y of every vertex, interleaved and indexed by vertex id, at least
+     *                    {@link #getIdCount()} pairs. Pairs of ids not in use are ignored.
+     * @return array holding positions so far, it is not used by the model anymore.
+     */
+    public float[] swapCoordinates(float[] coordinates) {
+        if (coordinates.length < mIdCount << 1) {
+            throw new IllegalArgumentException("No room for " + mIdCount + " vertices");
+        }
+        float[] previous = mCoordinates;
+        mCoordinates = coordinates;
+        return previous;
+    }
+
+    public void setTemporary(int vertex, boolean temporary) {
+        mTemporary[vertex] = temporary;
+    }
+
+    public void clear() {
+        Arrays.fill(mTypes, -1);
+        mFreeIds.clear();
+        mIdCount = 0;
+        mSize = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > mTypes.length) {
+            int oldCapacity = mTypes.length;
+            int newCapacity = Math.max(capacity, oldCapacity << 1);
+            mTypes = Arrays.copyOf(mTypes, newCapacity);
+            Arrays.fill(mTypes, oldCapacity, newCapacity, -1);
+            mTemporary = Arrays.copyOf(mTemporary, newCapacity);
+        }
+        if (capacity << 1 > mCoordinates.length) {
+            mCoordinates = Arrays.copyOf(mCoordinates, mTypes.length << 1);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.exaper.byog;
+
+/**
+ * Maps world coordinates of the graph to screen coordinates of the graph view: screen = world * scale + offset.
+ */
+public final class Viewport {
+    public static final float MIN_SCALE = 0.05f;
+    public static final float MAX_SCALE = 4f;
+
+    private float mScale = 1;
+    private float mOffsetX;
+    private float mOffsetY;
+    private int mVersion;
+
+    public float getScale() {
+        return mScale;
+    }
+
+    /**
+     * @return counter incremented on every change.
+     */
+    public int getVersion() {
+        return mVersion;
+    }
+
+    public float toScreenX(float worldX) {
+        return worldX * mScale + mOffsetX;
+    }
+
+    public float toScreenY(float worldY) {
+        return worldY * mScale + mOffsetY;
+    }
+
+    public float toWorldX(float screenX) {
+        return (screenX - mOffsetX) / mScale;
+    }
+
+    public float toWorldY(float screenY) {
+        return (screenY - mOffsetY) / mScale;
+    }
+
+    public void pan(float dX, float dY) {
+        mOffsetX += dX;
+        mOffsetY += dY;
+        mVersion++;
+    }
+
+    /**
+     * Scales by the factor keeping the world point under the screen focus point in place.
+     */
+    public void zoom(float factor, float focusX, float focusY) {
+        float scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, mScale * factor));
+        mOffsetX = focusX - (focusX - mOffsetX) * scale / mScale;
+        mOffsetY = focusY - (focusY - mOffsetY) * scale / mScale;
+        mScale = scale;
+        mVersion++;
+    }
+}
@@ -0,0 +1,146 @@
+package com.exaper.byog;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchRouterTest {
+    private static final double EPSILON = 1e-6;
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() throws InterruptedException {
+        mExecutor.shutdownNow();
+        assertTrue(mExecutor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void rowsMatchDijkstra() throws InterruptedException {
+        Random random = new Random(29);
+        for (int trial = 0; trial < 200; trial++) {
+            int vertexCount = 2 + random.nextInt(40);
+            GraphSnapshot snapshot = TestGraphs.randomGraph(random, vertexCount, vertexCount * 2, -1, -1);
+            final CompactGraph graph = TestGraphs.build(snapshot);
+            BatchRouter router = new BatchRouter(snapshot, 1 + random.nextInt(4));
+            // Sources and targets might repeat.
+            final int[] sources = randomVertices(random, random.nextInt(vertexCount), vertexCount);
+            int[] targets = randomVertices(random, random.nextInt(vertexCount + 1), vertexCount);
+            final int[] rowCounts = new int[sources.length];
+            router.route(sources, targets, new BatchRouter.Listener() {
+                private final DijkstraPathSearch mSearch = new DijkstraPathSearch();
+                private final IntList mExpected = new IntList();
+                private final IntList mActual = new IntList();
+
+                @Override
+                public synchronized void onRow(BatchRouter.Row row) {
+                    rowCounts[row.getSourceIndex()]++;
+                    assertEquals(sources[row.getSourceIndex()], row.getSource());
+                    for (int i = 0; i < row.getTargetCount(); i++) {
+                        boolean reachable = mSearch.findPath(graph, row.getSource(), row.getTarget(i), mExpected);
+                        assertEquals(reachable, row.getPath(i, mActual));
+                        if (reachable) {
+                            double length = TestGraphs.length(graph, mExpected);
+                            assertEquals(length, row.getDistance(i), EPSILON);
+                            TestGraphs.assertPath(graph, mActual, row.getSource(), row.getTarget(i));
+                            assertEquals(length, TestGraphs.length(graph, mActual), EPSILON);
+                        } else {
+                            assertEquals(Double.POSITIVE_INFINITY, row.getDistance(i), 0);
+                        }
+                    }
+                }
+            }, mExecutor);
+            for (int rowCount : rowCounts) {
+                assertEquals(1, rowCount);
+            }
+        }
+    }
+
+    @Test
+    public void interruptionStopsQuery() throws InterruptedException {
+        BatchRouter router = new BatchRouter(TestGraphs.randomGraph(new Random(31), 5000, 15000, -1, -1), 4);
+        final AtomicInteger rowCount = new AtomicInteger();
+        Thread.currentThread().interrupt();
+        try {
+            router.routeAllPairs(new BatchRouter.Listener() {
+                @Override
+                public void onRow(BatchRouter.Row row) {
+                    rowCount.incrementAndGet();
+                }
+            }, mExecutor);
+            fail();
+        } catch (InterruptedException expected) {
+        }
+        mExecutor.shutdown();
+        assertTrue(mExecutor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(rowCount.get() < router.getVertexCount());
+    }
+
+    @Test
+    public void listenerFailureIsRethrownAsItIs() throws InterruptedException {
+        BatchRouter router = new BatchRouter(TestGraphs.randomGraph(new Random(37), 100, 300, -1, -1), 4);
+        final IllegalStateException exception = new IllegalStateException();
+        final AtomicInteger rowCount = new AtomicInteger();
+        try {
+            router.routeAllPairs(new BatchRouter.Listener() {
+                @Override
+                public void onRow(BatchRouter.Row row) {
+                    rowCount.incrementAndGet();
+                    throw exception;
+                }
+            }, mExecutor);
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(exception, e);
+        }
+        // Every task fails on its first row and the others stop claiming sources.
+        assertTrue(rowCount.get() <= 4);
+
+        final AssertionError error = new AssertionError();
+        try {
+            router.route(new int[]{0}, new int[]{1}, new BatchRouter.Listener() {
+                @Override
+                public void onRow(BatchRouter.Row row) {
+                    throw error;
+                }
+            }, mExecutor);
+            fail();
+        } catch (AssertionError e) {
+            assertSame(error, e);
+        }
+    }
+
+    @Test
+    public void queryWithoutTargetsDeliversEmptyRows() throws InterruptedException {
+        BatchRouter router = new BatchRouter(TestGraphs.randomGraph(new Random(41), 10, 20, -1, -1), 2);
+        final AtomicInteger rowCount = new AtomicInteger();
+        router.route(new int[]{0, 1, 2}, new int[0], new BatchRouter.Listener() {
+            @Override
+            public void onRow(BatchRouter.Row row) {
+                assertEquals(0, row.getTargetCount());
+                rowCount.incrementAndGet();
+            }
+        }, mExecutor);
+        assertEquals(3, rowCount.get());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    private static int[] randomVertices(Random random, int count, int vertexCount) {
+        int[] vertices = new int[count];
+        for (int i = 0; i < count; i++) {
+            vertices[i] = random.nextInt(vertexCount);
+        }
+        return vertices;
+    }
+}
@@ -0,0 +1,127 @@
+package com.exaper.byog;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectivityTest {
+    @Test
+    public void tracksComponentsOfEdits() {
+        VertexModel vertices = new VertexModel();
+        EdgeStore edges = new EdgeStore();
+        Connectivity connectivity = new Connectivity(vertices, edges);
+        int v1 = addVertex(vertices, connectivity), v2 = addVertex(vertices, connectivity);
+        int v3 = addVertex(vertices, connectivity);
+        assertEquals(3, connectivity.getComponentCount());
+        assertFalse(connectivity.isConnected(v1, v2));
+        addEdge(edges, connectivity, v1, v2);
+        addEdge(edges, connectivity, v2, v3);
+        assertTrue(connectivity.isConnected(v1, v3));
+        assertEquals(1, connectivity.getComponentCount());
+        assertEquals(3, connectivity.getComponentSize(v3));
+        // Removal splits the component.
+        connectivity.removeEdge(v2, v3);
+        edges.removeEdge(edges.findEdge(v2, v3));
+        assertFalse(connectivity.isConnected(v1, v3));
+        assertEquals(2, connectivity.getComponentCount());
+        removeVertex(vertices, edges, connectivity, v2);
+        assertFalse(connectivity.isConnected(v1, v3));
+        assertEquals(1, connectivity.getComponentSize(v1));
+        assertEquals(2, connectivity.getComponentCount());
+    }
+
+    @Test
+    public void matchesBreadthFirstSearch() {
+        Random random = new Random(1);
+        VertexModel vertices = new VertexModel();
+        EdgeStore edges = new EdgeStore();
+        Connectivity connectivity = new Connectivity(vertices, edges);
+        List<Integer> live = new ArrayList<>();
+        for (int step = 0; step < 20000; step++) {
+            int operation = random.nextInt(10);
+            if (operation < 3 || live.size() < 2) {
+                live.add(addVertex(vertices, connectivity));
+            } else if (operation < 6) {
+                int v1 = live.get(random.nextInt(live.size())), v2 = live.get(random.nextInt(live.size()));
+                addEdge(edges, connectivity, v1, v2);
+            } else if (operation < 7) {
+                removeVertex(vertices, edges, connectivity, live.remove(random.nextInt(live.size())));
+            } else if (operation < 8) {
+                int i = random.nextInt(live.size()), j = random.nextInt(live.size());
+                if (i != j) {
+                    int absorber = live.get(i), victim = live.get(j);
+                    edges.mergeVertices(absorber, victim);
+                    connectivity.mergeVertices(absorber, victim);
+                    removeVertex(vertices, edges, connectivity, victim);
+                    live.remove(j);
+                }
+            } else if (operation < 9) {
+                if (edges.getEdgeCount() > 0 && random.nextInt(20) == 0) {
+                    int edge = 0;
+                    while (!edges.isEdge(edge)) {
+                        edge++;
+                    }
+                    connectivity.removeEdge(edges.getSource(edge), edges.getTarget(edge));
+                    edges.removeEdge(edge);
+                }
+            } else {
+                int v1 = live.get(random.nextInt(live.size())), v2 = live.get(random.nextInt(live.size()));
+                Set<Integer> component = component(edges, v1);
+                assertEquals("Step " + step, component.contains(v2), connectivity.isConnected(v1, v2));
+                assertEquals("Step " + step, component.size(), connectivity.getComponentSize(v1));
+            }
+        }
+        Set<Integer> unvisited = new HashSet<>(live);
+        int componentCount = 0;
+        while (!unvisited.isEmpty()) {
+            unvisited.removeAll(component(edges, unvisited.iterator().next()));
+            componentCount++;
+        }
+        assertEquals(componentCount, connectivity.getComponentCount());
+    }
+
+    private static int addVertex(VertexModel vertices, Connectivity connectivity) {
+        int vertex = vertices.add(VertexModel.TYPE_INTERMEDIATE, 0, 0);
+        connectivity.addVertex(vertex);
+        return vertex;
+    }
+
+    private static void addEdge(EdgeStore edges, Connectivity connectivity, int vertex1, int vertex2) {
+        if (edges.addEdge(vertex1, vertex2) >= 0) {
+            connectivity.addEdge(vertex1, vertex2);
+        }
+    }
+
+    private static void removeVertex(VertexModel vertices, EdgeStore edges, Connectivity connectivity, int vertex) {
+        connectivity.removeVertex(vertex);
+        edges.removeVertex(vertex);
+        vertices.remove(vertex);
+    }
+
+    private static Set<Integer> component(EdgeStore edges, int vertex) {
+        Set<Integer> visited = new HashSet<>();
+        Queue<Integer> queue = new ArrayDeque<>();
+        visited.add(vertex);
+        queue.add(vertex);
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            for (int i = 0, degree = edges.getDegree(u); i < degree; i++) {
+                int w = edges.getOppositeVertex(edges.getIncidentEdge(u, i), u);
+                if (visited.add(w)) {
+                    queue.add(w);
+                }
+            }
+        }
+        return visited;
+    }
+}
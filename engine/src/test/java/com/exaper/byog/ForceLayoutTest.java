@@ -0,0 +1,82 @@
+package com.exaper.byog;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ForceLayoutTest {
+    private static final float EDGE_LENGTH = 160;
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdown();
+    }
+
+    @Test
+    public void gridConvergesToEvenEdges() throws InterruptedException {
+        int side = 30, vertexCount = side * side;
+        // Vertices start along a line, far from a grid.
+        float[] coordinates = new float[vertexCount << 1];
+        for (int v = 0; v < vertexCount; v++) {
+            coordinates[v << 1] = v;
+        }
+        IntList edges = new IntList();
+        for (int v = 0; v < vertexCount; v++) {
+            if (v % side + 1 < side) {
+                edges.add(v);
+                edges.add(v + 1);
+            }
+            if (v + side < vertexCount) {
+                edges.add(v);
+                edges.add(v + side);
+            }
+        }
+        ForceLayout layout = new ForceLayout(coordinates, edges.toArray(), EDGE_LENGTH);
+        assertEquals(vertexCount, layout.getVertexCount());
+        int iterations = 0;
+        while (!layout.isConverged()) {
+            layout.step(mExecutor);
+            iterations++;
+        }
+        assertTrue(iterations > 1);
+        layout.getCoordinates(coordinates);
+        double sum = 0;
+        for (int i = 0; i < edges.size(); i += 2) {
+            double length = distance(coordinates, edges.get(i), edges.get(i + 1));
+            assertFalse(Double.isNaN(length));
+            sum += length;
+        }
+        double meanLength = sum / (edges.size() >> 1);
+        assertTrue("Mean edge length " + meanLength, meanLength > EDGE_LENGTH / 4 && meanLength < EDGE_LENGTH * 4);
+    }
+
+    @Test
+    public void singleVertexIsConverged() {
+        assertTrue(new ForceLayout(new float[]{5, 5}, new int[0], EDGE_LENGTH).isConverged());
+    }
+
+    @Test
+    public void coordinatesAreCopiedToPairsOfIds() {
+        ForceLayout layout = new ForceLayout(new float[]{1, 2, 3, 4}, new int[]{0, 1}, EDGE_LENGTH);
+        float[] coordinates = new float[8];
+        layout.getCoordinates(coordinates, new int[]{3, 1});
+        assertEquals(1, coordinates[6], 0);
+        assertEquals(2, coordinates[7], 0);
+        assertEquals(3, coordinates[2], 0);
+        assertEquals(4, coordinates[3], 0);
+        assertEquals(0, coordinates[0], 0);
+    }
+
+    private static double distance(float[] coordinates, int v1, int v2) {
+        return Math.hypot(coordinates[v1 << 1] - coordinates[v2 << 1],
+                coordinates[(v1 << 1) + 1] - coordinates[(v2 << 1) + 1]);
+    }
+}
@@ -0,0 +1,379 @@
+package com.exaper.byog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GraphJournalTest {
+    private final Random mRandom = new Random(11);
+    private final VertexModel mVertices = new VertexModel();
+    private final EdgeStore mEdges = new EdgeStore();
+    private File mDirectory;
+    private File mSnapshotFile;
+    private File mJournalFile;
+    private GraphJournal mJournal;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("journal", "");
+        assertTrue(mDirectory.delete() && mDirectory.mkdir());
+        mSnapshotFile = new File(mDirectory, "graph.byog");
+        mJournalFile = new File(mDirectory, "graph.journal");
+        mJournal = new GraphJournal(mSnapshotFile, mJournalFile);
+        mJournal.replay(null, null);
+        mVertices.add(VertexModel.TYPE_START, 0, 0);
+        mVertices.add(VertexModel.TYPE_END, 100, 0);
+        mJournal.compact(mVertices, mEdges);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mJournal.delete();
+        assertTrue(mDirectory.delete());
+    }
+
+    @Test
+    public void recoversEditsOnTopOfSnapshot() throws IOException {
+        edit(3000);
+        mJournal.flush();
+        assertRecovers();
+        mJournal.compact(mVertices, mEdges);
+        edit(10);
+        mJournal.close();
+        assertRecovers();
+    }
+
+    @Test
+    public void backgroundCompactionKeepsEditsMadeMeanwhile() throws IOException {
+        edit(2000);
+        GraphJournal.Compaction compaction = mJournal.beginCompaction(mVertices, mEdges);
+        assertTrue(mJournal.isCompacting());
+        assertFalse(mJournal.needsCompaction(0));
+        int records = edit(100);
+        compaction.write();
+        records += edit(100);
+        mJournal.flush();
+        // Crash before the journal is started over.
+        assertRecovers();
+        mJournal.finishCompaction(compaction);
+        assertFalse(mJournal.isCompacting());
+        mJournal.flush();
+        assertEquals(16 + records * 20, mJournalFile.length());
+        assertRecovers();
+        edit(100);
+        mJournal.flush();
+        assertRecovers();
+    }
+
+    @Test
+    public void failedBackgroundCompactionKeepsJournal() throws IOException {
+        edit(100);
+        GraphJournal.Compaction compaction = mJournal.beginCompaction(mVertices, mEdges);
+        edit(100);
+        mJournal.finishCompaction(compaction);
+        assertFalse(mJournal.isCompacting());
+        mJournal.flush();
+        assertRecovers();
+    }
+
+    @Test
+    public void compactionCancelsBackgroundOne() throws IOException {
+        GraphJournal.Compaction compaction = mJournal.beginCompaction(mVertices, mEdges);
+        edit(100);
+        mJournal.compact(mVertices, mEdges);
+        compaction.write();
+        mJournal.finishCompaction(compaction);
+        assertEquals(16, mJournalFile.length());
+        edit(100);
+        mJournal.flush();
+        assertRecovers();
+    }
+
+    @Test
+    public void closeFinishesBackgroundCompaction() throws IOException {
+        edit(2000);
+        GraphJournal.Compaction compaction = mJournal.beginCompaction(mVertices, mEdges);
+        int records = edit(100);
+        mJournal.close();
+        assertFalse(mJournal.isCompacting());
+        assertEquals(16 + records * 20, mJournalFile.length());
+        assertRecovers();
+        // Journal reopened over the same files is not overwritten by the late write.
+        mJournal = new GraphJournal(mSnapshotFile, mJournalFile);
+        GraphFile snapshot = mJournal.openSnapshot();
+        mJournal.replay(snapshot, new RecoveredGraph(snapshot));
+        mVertices.add(VertexModel.TYPE_INTERMEDIATE, 5, 5);
+        mJournal.compact(mVertices, mEdges);
+        compaction.write();
+        mJournal.finishCompaction(compaction);
+        assertRecovers();
+    }
+
+    @Test
+    public void resumedJournalCutsTornRecord() throws IOException {
+        edit(100);
+        mJournal.close();
+        RandomAccessFile file = new RandomAccessFile(mJournalFile, "rw");
+        file.setLength(file.length() + 7);
+        file.close();
+        mJournal = resume();
+        edit(100);
+        mJournal.flush();
+        assertEquals(0, (mJournalFile.length() - 16) % 20);
+        assertRecovers();
+    }
+
+    @Test
+    public void resumedJournalBehindSnapshotStartsOver() throws IOException {
+        edit(100);
+        mJournal.flush();
+        byte[] journal = Files.readAllBytes(mJournalFile.toPath());
+        // Records still buffered at the compaction are only in the snapshot, the old journal ends before it.
+        assertTrue(edit(50) > 0);
+        mJournal.compact(mVertices, mEdges);
+        mJournal.close();
+        Files.write(mJournalFile.toPath(), journal);
+        mJournal = resume();
+        assertEquals(16, mJournalFile.length());
+        edit(100);
+        mJournal.flush();
+        assertRecovers();
+    }
+
+    @Test
+    public void writeFailureStopsRecordingUntilCompacted() throws Exception {
+        int records = edit(100);
+        mJournal.flush();
+        FileChannel channel = failWrites();
+        edit(1000);
+        try {
+            mJournal.flush();
+            fail();
+        } catch (IOException expected) {
+        }
+        assertTrue(mJournal.needsCompaction(Integer.MAX_VALUE));
+        edit(100);
+        setChannel(channel);
+        mJournal.flush();
+        // Records made after the failure are not written.
+        assertEquals(16 + records * 20, mJournalFile.length());
+
+        GraphJournal.Compaction compaction = mJournal.beginCompaction(mVertices, mEdges);
+        compaction.write();
+        assertTrue(edit(10) > 0);
+        mJournal.finishCompaction(compaction);
+        // Edits made during the compaction were dropped, graph needs to be saved again.
+        assertTrue(mJournal.needsCompaction(Integer.MAX_VALUE));
+        compaction = mJournal.beginCompaction(mVertices, mEdges);
+        compaction.write();
+        mJournal.finishCompaction(compaction);
+        assertFalse(mJournal.needsCompaction(Integer.MAX_VALUE));
+        edit(10);
+        mJournal.flush();
+        assertRecovers();
+    }
+
+    @Test
+    public void writeFailureIsFixedByCompact() throws Exception {
+        FileChannel channel = failWrites();
+        edit(1000);
+        setChannel(channel);
+        assertTrue(mJournal.needsCompaction(Integer.MAX_VALUE));
+        mJournal.compact(mVertices, mEdges);
+        assertFalse(mJournal.needsCompaction(Integer.MAX_VALUE));
+        edit(10);
+        mJournal.flush();
+        assertRecovers();
+    }
+
+    /**
+     * Makes random edits of the graph and records them.
+     *
+     * @return number of records made, some edits are no-ops.
+     */
+    private int edit(int count) {
+        int records = 0;
+        for (int i = 0; i < count; i++) {
+            int vertex = randomVertex();
+            float x = mRandom.nextInt(1000), y = mRandom.nextInt(1000);
+            switch (mRandom.nextInt(5)) {
+                case 0:
+                    int added = mVertices.add(VertexModel.TYPE_INTERMEDIATE, x, y);
+                    mJournal.addVertex(added, VertexModel.TYPE_INTERMEDIATE, x, y);
+                    records++;
+                    break;
+                case 1:
+                    mVertices.setPosition(vertex, x, y);
+                    mJournal.moveVertex(vertex, x, y);
+                    records++;
+                    break;
+                case 2:
+                    if (mVertices.getType(vertex) == VertexModel.TYPE_INTERMEDIATE) {
+                        mEdges.removeVertex(vertex);
+                        mVertices.remove(vertex);
+                        mJournal.removeVertex(vertex);
+                        records++;
+                    }
+                    break;
+                default:
+                    int other = randomVertex();
+                    int edge = mEdges.findEdge(vertex, other);
+                    if (edge >= 0) {
+                        mEdges.removeEdge(edge);
+                        mJournal.removeEdge(vertex, other);
+                        records++;
+                    } else if (vertex != other) {
+                        mEdges.addEdge(vertex, other);
+                        mJournal.addEdge(vertex, other);
+                        records++;
+                    }
+                    break;
+            }
+        }
+        return records;
+    }
+
+    private int randomVertex() {
+        while (true) {
+            int vertex = mRandom.nextInt(mVertices.getIdCount());
+            if (mVertices.contains(vertex)) {
+                return vertex;
+            }
+        }
+    }
+
+    /**
+     * Replays the journal onto the graph as it is and resumes recording.
+     */
+    private GraphJournal resume() throws IOException {
+        GraphJournal journal = new GraphJournal(mSnapshotFile, mJournalFile);
+        GraphFile snapshot = journal.openSnapshot();
+        journal.replay(snapshot, new RecoveredGraph(snapshot));
+        journal.resume();
+        return journal;
+    }
+
+    /**
+     * Asserts that snapshot and journal files hold the graph as it is now.
+     */
+    private void assertRecovers() throws IOException {
+        GraphJournal journal = new GraphJournal(mSnapshotFile, mJournalFile);
+        GraphFile snapshot = journal.openSnapshot();
+        RecoveredGraph recovered = new RecoveredGraph(snapshot);
+        journal.replay(snapshot, recovered);
+        TreeMap<Integer, String> vertices = new TreeMap<>();
+        for (int vertex = 0; vertex < mVertices.getIdCount(); vertex++) {
+            if (mVertices.contains(vertex)) {
+                vertices.put(vertex, RecoveredGraph.describe(mVertices.getType(vertex), mVertices.getX(vertex),
+                        mVertices.getY(vertex)));
+            }
+        }
+        TreeSet<String> edges = new TreeSet<>();
+        for (int edge = 0; edge < mEdges.getEdgeIdCount(); edge++) {
+            if (mEdges.isEdge(edge)) {
+                edges.add(RecoveredGraph.describe(mEdges.getSource(edge), mEdges.getTarget(edge)));
+            }
+        }
+        assertEquals(vertices, recovered.mVertices);
+        assertEquals(edges, recovered.mEdges);
+    }
+
+    /**
+     * Makes writes of the journal fail, until the returned channel is set back.
+     */
+    private FileChannel failWrites() throws Exception {
+        FileChannel channel = (FileChannel) getChannelField().get(mJournal);
+        RandomAccessFile file = new RandomAccessFile(new File(mDirectory, "closed"), "rw");
+        file.close();
+        assertTrue(new File(mDirectory, "closed").delete());
+        setChannel(file.getChannel());
+        return channel;
+    }
+
+    private void setChannel(FileChannel channel) throws Exception {
+        getChannelField().set(mJournal, channel);
+    }
+
+    private static Field getChannelField() throws NoSuchFieldException {
+        Field field = GraphJournal.class.getDeclaredField("mChannel");
+        field.setAccessible(true);
+        return field;
+    }
+
+    private static final class RecoveredGraph implements GraphJournal.Operations {
+        final Map<Integer, String> mVertices = new TreeMap<>();
+        final TreeSet<String> mEdges = new TreeSet<>();
+        private final Map<Integer, Integer> mTypes = new TreeMap<>();
+
+        RecoveredGraph(GraphFile snapshot) {
+            for (int row = 0; row < snapshot.getVertexCount(); row++) {
+                addVertex(snapshot.getId(row), snapshot.getType(row), snapshot.getX(row), snapshot.getY(row));
+            }
+            for (int edge = 0; edge < snapshot.getEdgeCount(); edge++) {
+                addEdge(snapshot.getEdgeSource(edge), snapshot.getEdgeTarget(edge));
+            }
+        }
+
+        static String describe(int type, float x, float y) {
+            return type + " " + x + " " + y;
+        }
+
+        static String describe(int vertex1, int vertex2) {
+            return Math.min(vertex1, vertex2) + "-" + Math.max(vertex1, vertex2);
+        }
+
+        @Override
+        public void addVertex(int vertex, int type, float x, float y) {
+            mTypes.put(vertex, type);
+            mVertices.put(vertex, describe(type, x, y));
+        }
+
+        @Override
+        public void moveVertex(int vertex, float x, float y) {
+            mVertices.put(vertex, describe(mTypes.get(vertex), x, y));
+        }
+
+        @Override
+        public void removeVertex(int vertex) {
+            mVertices.remove(vertex);
+            mTypes.remove(vertex);
+            for (String edge : new TreeSet<>(mEdges)) {
+                String[] ends = edge.split("-");
+                if (Integer.parseInt(ends[0]) == vertex || Integer.parseInt(ends[1]) == vertex) {
+                    mEdges.remove(edge);
+                }
+            }
+        }
+
+        @Override
+        public void mergeVertices(int absorber, int victim) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addEdge(int vertex1, int vertex2) {
+            mEdges.add(describe(vertex1, vertex2));
+        }
+
+        @Override
+        public void removeEdge(int vertex1, int vertex2) {
+            mEdges.remove(describe(vertex1, vertex2));
+        }
+    }
+}
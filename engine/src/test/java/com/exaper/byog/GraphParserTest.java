@@ -0,0 +1,199 @@
+package com.exaper.byog;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GraphParserTest {
+    private static final float SPACING = 80;
+    private static final float EPSILON = 1e-3f;
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void parsesDimacsWithCoordinates() throws IOException {
+        File graph = write("graph.gr", "c test\np sp 3 4\na 1 2 10\na 2 1 10\na 2 3 5\na 3 3 1\n");
+        File coordinates = write("graph.co",
+                "c coordinates\np aux sp co 3\nv 1 -73500000 40700000\nv 2 -73400000 40800000\nv 3 -73.3e6 40.75e6\n");
+        GraphParser parser = GraphParser.dimacs(graph, coordinates, SPACING);
+        Recorder recorder = parse(parser);
+        assertTrue(parser.hasCoordinates());
+        assertEquals(3, recorder.mDeclaredVertexCount);
+        // Loops are left out.
+        assertEquals(Arrays.asList("0-1", "1-0", "1-2"), recorder.mEdges);
+        // Y axis points south on the screen, vertex 2 lies north of vertex 1.
+        assertTrue(recorder.getY(1) < recorder.getY(0));
+        assertTrue(recorder.getX(0) < recorder.getX(1) && recorder.getX(1) < recorder.getX(2));
+        // Centered at (0, 0) and scaled to about SPACING x SPACING per vertex.
+        float left = Math.min(recorder.getX(0), recorder.getX(2)), right = Math.max(recorder.getX(0), recorder.getX(2));
+        float top = recorder.getY(1), bottom = recorder.getY(0);
+        assertEquals(0, left + right, EPSILON);
+        assertEquals(0, top + bottom, EPSILON);
+        assertEquals(3 * SPACING * SPACING, (right - left) * (bottom - top), 1);
+        assertEquals(1, parser.getProgress(), 0);
+    }
+
+    @Test
+    public void laysOutDimacsWithoutCoordinatesAlongSpiral() throws IOException {
+        File graph = write("graph.gr", "p sp 3 2\na 1 2 10\na 2 3 5\n");
+        GraphParser parser = GraphParser.dimacs(graph, null, SPACING);
+        Recorder recorder = parse(parser);
+        assertFalse(parser.hasCoordinates());
+        assertEquals(3, recorder.mDeclaredVertexCount);
+        assertEquals(Arrays.asList("0-1", "1-2"), recorder.mEdges);
+        assertDistinctPositions(recorder);
+    }
+
+    @Test
+    public void parsesEdgeList() throws IOException {
+        File list = write("graph.edges", "# comment\n10 20\n20 30 1.5\n\n% another comment\n  10\t30\n");
+        Recorder recorder = parse(GraphParser.edgeList(list, SPACING));
+        assertEquals(-1, recorder.mDeclaredVertexCount);
+        assertEquals(3, recorder.mX.size());
+        assertEquals(Arrays.asList("0-1", "1-2", "0-2"), recorder.mEdges);
+        assertDistinctPositions(recorder);
+    }
+
+    @Test
+    public void reportsMalformedLine() throws IOException {
+        File graph = write("graph.gr", "p sp 2 1\na 1 2 1\nb 1 2\n");
+        try {
+            parse(GraphParser.dimacs(graph, null, SPACING));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("graph.gr:3"));
+        }
+        File list = write("graph.edges", "1 2\n1 x\n");
+        try {
+            parse(GraphParser.edgeList(list, SPACING));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("graph.edges:2"));
+        }
+    }
+
+    @Test
+    public void parsesStreamOfUnknownLength() throws IOException {
+        final byte[] contents = "1 2\n2 3\n3 x\n".getBytes("US-ASCII");
+        GraphParser parser = GraphParser.edgeList(new GraphParser.Input() {
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(contents);
+            }
+
+            @Override
+            public String getName() {
+                return "shared";
+            }
+
+            @Override
+            public long getLength() {
+                return -1;
+            }
+        }, SPACING);
+        Recorder recorder = new Recorder();
+        try {
+            parser.parse(recorder);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("shared:3"));
+        }
+        assertEquals(Arrays.asList("0-1", "1-2"), recorder.mEdges);
+        assertEquals(0, parser.getProgress(), 0);
+    }
+
+    @Test
+    public void parsesLinesAcrossBufferBoundaries() throws IOException {
+        StringBuilder text = new StringBuilder();
+        int edgeCount = 20000;
+        for (int i = 0; i < edgeCount; i++) {
+            text.append(i).append(' ').append(i + 1).append(" 1234.5\n");
+        }
+        Recorder recorder = parse(GraphParser.edgeList(write("path.edges", text.toString()), SPACING));
+        assertEquals(edgeCount + 1, recorder.mX.size());
+        assertEquals(edgeCount, recorder.mEdges.size());
+        for (int i = 0; i < edgeCount; i++) {
+            assertEquals(i + "-" + (i + 1), recorder.mEdges.get(i));
+        }
+    }
+
+    private File write(String name, String contents) throws IOException {
+        File file = new File(mFolder.getRoot(), name);
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static Recorder parse(GraphParser parser) throws IOException {
+        Recorder recorder = new Recorder();
+        parser.parse(recorder);
+        return recorder;
+    }
+
+    private static void assertDistinctPositions(Recorder recorder) {
+        for (int i = 0; i < recorder.mX.size(); i++) {
+            for (int j = 0; j < i; j++) {
+                assertTrue(recorder.getX(i) != recorder.getX(j) || recorder.getY(i) != recorder.getY(j));
+            }
+        }
+    }
+
+    /**
+     * Records what the parser reports, checking that vertices come with dense ids before edges refer to them.
+     */
+    private static final class Recorder implements GraphParser.Sink {
+        final List<Float> mX = new ArrayList<>();
+        final List<Float> mY = new ArrayList<>();
+        final List<String> mEdges = new ArrayList<>();
+        int mDeclaredVertexCount = -2;
+
+        float getX(int vertex) {
+            return mX.get(vertex);
+        }
+
+        float getY(int vertex) {
+            return mY.get(vertex);
+        }
+
+        @Override
+        public void begin(int vertexCount) {
+            assertEquals(-2, mDeclaredVertexCount);
+            mDeclaredVertexCount = vertexCount;
+        }
+
+        @Override
+        public void addVertex(int vertex, int type, float x, float y) {
+            assertTrue(mDeclaredVertexCount != -2);
+            assertEquals(VertexModel.TYPE_INTERMEDIATE, type);
+            assertEquals(mX.size(), vertex);
+            mX.add(x);
+            mY.add(y);
+        }
+
+        @Override
+        public void addEdge(int vertex1, int vertex2) {
+            assertTrue(vertex1 < mX.size() && vertex2 < mX.size());
+            mEdges.add(vertex1 + "-" + vertex2);
+        }
+    }
+}
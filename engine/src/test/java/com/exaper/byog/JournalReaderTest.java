@@ -0,0 +1,143 @@
+package com.exaper.byog;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JournalReaderTest {
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void restoresGraphWithIdsOfJournal() throws IOException {
+        GraphJournal journal = newJournal();
+        journal.replay(null, null);
+        VertexModel vertices = new VertexModel();
+        EdgeStore edges = new EdgeStore();
+        vertices.add(VertexModel.TYPE_START, 0, 0);
+        vertices.add(VertexModel.TYPE_END, 100, 0);
+        Random random = new Random(3);
+        for (int i = 0; i < 50; i++) {
+            vertices.add(VertexModel.TYPE_INTERMEDIATE, random.nextInt(100), random.nextInt(100));
+        }
+        for (int i = 0; i < 100; i++) {
+            edges.addEdge(random.nextInt(52), random.nextInt(52));
+        }
+        journal.compact(vertices, edges);
+        for (int vertex = 10; vertex < 20; vertex++) {
+            edges.removeVertex(vertex);
+            vertices.remove(vertex);
+            journal.removeVertex(vertex);
+        }
+        int added = vertices.add(VertexModel.TYPE_INTERMEDIATE, 7, 8);
+        journal.addVertex(added, VertexModel.TYPE_INTERMEDIATE, 7, 8);
+        edges.addEdge(added, 0);
+        journal.addEdge(added, 0);
+        edges.mergeVertices(1, 30);
+        edges.removeVertex(30);
+        vertices.remove(30);
+        journal.mergeVertices(1, 30);
+        journal.close();
+
+        GraphJournal restoredJournal = newJournal();
+        JournalReader reader = new JournalReader(restoredJournal);
+        Restored restored = new Restored();
+        reader.parse(restored);
+        assertEquals(1, reader.getProgress(), 0);
+        assertEquals(vertices.size(), restored.mDeclaredVertexCount);
+        assertSameGraph(vertices, edges, restored.mVertices, restored.mEdges);
+
+        // Journal resumes recording with the restored ids.
+        restoredJournal.resume();
+        added = restored.mVertices.add(VertexModel.TYPE_INTERMEDIATE, 1, 1);
+        restoredJournal.addVertex(added, VertexModel.TYPE_INTERMEDIATE, 1, 1);
+        restored.mEdges.addEdge(added, 1);
+        restoredJournal.addEdge(added, 1);
+        restoredJournal.close();
+        Restored again = new Restored();
+        new JournalReader(newJournal()).parse(again);
+        assertSameGraph(restored.mVertices, restored.mEdges, again.mVertices, again.mEdges);
+    }
+
+    @Test
+    public void emptyJournalRestoresEmptyGraph() throws IOException {
+        Restored restored = new Restored();
+        new JournalReader(newJournal()).parse(restored);
+        assertEquals(0, restored.mDeclaredVertexCount);
+        assertEquals(0, restored.mVertices.size());
+    }
+
+    @Test
+    public void invalidSnapshotIsRejected() throws IOException {
+        VertexModel vertices = new VertexModel();
+        vertices.add(VertexModel.TYPE_START, 0, 0);
+        // Type out of range.
+        vertices.add(7, 0, 0);
+        GraphFile.write(new File(mFolder.getRoot(), "graph.byog"), vertices, new EdgeStore());
+        Restored restored = new Restored();
+        try {
+            new JournalReader(newJournal()).parse(restored);
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(-2, restored.mDeclaredVertexCount);
+    }
+
+    private GraphJournal newJournal() {
+        return new GraphJournal(new File(mFolder.getRoot(), "graph.byog"),
+                new File(mFolder.getRoot(), "graph.journal"));
+    }
+
+    private static void assertSameGraph(VertexModel expectedVertices, EdgeStore expectedEdges, VertexModel vertices,
+                                        EdgeStore edges) {
+        assertEquals(expectedVertices.size(), vertices.size());
+        for (int vertex = 0; vertex < expectedVertices.getIdCount(); vertex++) {
+            if (expectedVertices.contains(vertex)) {
+                assertTrue(vertices.contains(vertex));
+                assertEquals(expectedVertices.getType(vertex), vertices.getType(vertex));
+                assertEquals(expectedVertices.getX(vertex), vertices.getX(vertex), 0);
+                assertEquals(expectedVertices.getY(vertex), vertices.getY(vertex), 0);
+            }
+        }
+        assertEquals(expectedEdges.getEdgeCount(), edges.getEdgeCount());
+        for (int edge = 0; edge < expectedEdges.getEdgeIdCount(); edge++) {
+            if (expectedEdges.isEdge(edge)) {
+                assertTrue(edges.findEdge(expectedEdges.getSource(edge), expectedEdges.getTarget(edge)) >= 0);
+            }
+        }
+    }
+
+    /**
+     * Builds the reported graph the way GraphLayout does.
+     */
+    private static final class Restored implements GraphParser.Sink {
+        final VertexModel mVertices = new VertexModel();
+        final EdgeStore mEdges = new EdgeStore();
+        int mDeclaredVertexCount = -2;
+
+        @Override
+        public void begin(int vertexCount) {
+            mDeclaredVertexCount = vertexCount;
+        }
+
+        @Override
+        public void addVertex(int vertex, int type, float x, float y) {
+            assertTrue(vertex >= mVertices.getIdCount());
+            mVertices.add(vertex, type, x, y);
+        }
+
+        @Override
+        public void addEdge(int vertex1, int vertex2) {
+            assertTrue(mVertices.contains(vertex1) && mVertices.contains(vertex2));
+            mEdges.addEdge(vertex1, vertex2);
+        }
+    }
+}
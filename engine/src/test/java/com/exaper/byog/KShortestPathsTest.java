@@ -0,0 +1,97 @@
+package com.exaper.byog;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class KShortestPathsTest {
+    private static final int COUNT = 8;
+    private static final double EPSILON = 1e-3;
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdown();
+    }
+
+    @Test
+    public void matchesAllLooplessPaths() throws InterruptedException {
+        Random random = new Random(5);
+        KShortestPaths paths = new KShortestPaths(2);
+        PathSearch search = new DijkstraPathSearch();
+        IntList shortestPath = new IntList();
+        for (int graphIndex = 0; graphIndex < 50; graphIndex++) {
+            int vertexCount = 6 + random.nextInt(6);
+            CompactGraph graph = TestGraphs.build(TestGraphs.randomGraph(random, vertexCount, vertexCount * 2, 0, 1));
+            if (!search.findPath(graph, 0, 1, shortestPath)) {
+                continue;
+            }
+            List<Double> expected = new ArrayList<>();
+            collectLengths(graph, 0, 1, new IntList(), new boolean[vertexCount], expected);
+            Collections.sort(expected);
+            List<int[]> actual = paths.findPaths(graph, graphIndex, shortestPath, COUNT, mExecutor);
+            assertEquals(Math.min(COUNT, expected.size()), actual.size());
+            Set<String> distinct = new HashSet<>();
+            for (int i = 0; i < actual.size(); i++) {
+                IntList path = toList(actual.get(i));
+                TestGraphs.assertPath(graph, path, 0, 1);
+                assertTrue("Path returned twice", distinct.add(Arrays.toString(actual.get(i))));
+                assertEquals("Graph " + graphIndex + " path " + i, expected.get(i), TestGraphs.length(graph, path),
+                        EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void reusesPathsOfSameVersion() throws InterruptedException {
+        CompactGraph graph = TestGraphs.build(TestGraphs.randomGraph(new Random(7), 30, 90, 0, 1));
+        IntList shortestPath = new IntList();
+        assertTrue(new DijkstraPathSearch().findPath(graph, 0, 1, shortestPath));
+        KShortestPaths paths = new KShortestPaths(2);
+        int[] second = paths.findPaths(graph, 1, shortestPath, 3, mExecutor).get(1);
+        assertSame(second, paths.findPaths(graph, 1, shortestPath, 3, mExecutor).get(1));
+        assertNotSame(second, paths.findPaths(graph, 2, shortestPath, 3, mExecutor).get(1));
+        assertNotSame(second, paths.findPaths(graph, 2, shortestPath, 4, mExecutor).get(1));
+    }
+
+    private static void collectLengths(CompactGraph graph, int vertex, int end, IntList path, boolean[] visited,
+                                       List<Double> lengths) {
+        path.add(vertex);
+        visited[vertex] = true;
+        if (vertex == end) {
+            lengths.add(TestGraphs.length(graph, path));
+        } else {
+            for (int arc = graph.getFirstArc(vertex), last = graph.getFirstArc(vertex + 1); arc < last; arc++) {
+                int next = graph.getArcVertex(arc);
+                if (!visited[next]) {
+                    collectLengths(graph, next, end, path, visited, lengths);
+                }
+            }
+        }
+        visited[vertex] = false;
+        path.removeLast();
+    }
+
+    private static IntList toList(int[] vertices) {
+        IntList list = new IntList();
+        for (int vertex : vertices) {
+            list.add(vertex);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,78 @@
+package com.exaper.byog;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+    // Every power of two range is split into 32 buckets.
+    private static final double PRECISION = 1 / 32.0;
+
+    @Test
+    public void percentilesAreWithinPrecision() {
+        Random random = new Random(43);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            // Mostly around a millisecond with a slow tail.
+            values[i] = (long) Math.abs(random.nextGaussian() * 1e6 + (i % 100 == 0 ? 5e7 : 0));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[]{0, 50, 90, 99, 99.9, 100}) {
+            long exact = values[(int) Math.max(0, Math.ceil(percentile / 100 * values.length) - 1)];
+            long actual = histogram.getValueAtPercentile(percentile);
+            assertTrue("p" + percentile, actual >= exact && actual <= exact + exact * PRECISION);
+        }
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        for (long value = 0; value < 64; value++) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            assertEquals(value, histogram.getValueAtPercentile(50));
+        }
+    }
+
+    @Test
+    public void extremeValuesAreRecorded() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+        assertEquals(0, histogram.getValueAtPercentile(1));
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void concurrentRecordsAreCounted() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int value = 0; value < 100000; value++) {
+                        histogram.record(value);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(threads.length * 100000, histogram.getCount());
+        assertEquals(99999, histogram.getMax());
+        assertEquals(49999.5, histogram.getMean(), 0.01);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+}
@@ -0,0 +1,70 @@
+package com.exaper.byog;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class LineBufferTest {
+    private static final float WIDTH = 100;
+    private static final float HEIGHT = 50;
+    private static final float PAD = 2;
+
+    @Test
+    public void packsLinesInScreenCoordinates() {
+        Viewport viewport = new Viewport();
+        viewport.zoom(2, 0, 0);
+        viewport.pan(10, 5);
+        VertexModel vertices = new VertexModel();
+        int v1 = vertices.add(VertexModel.TYPE_START, 0, 0);
+        int v2 = vertices.add(VertexModel.TYPE_END, 20, 10);
+        LineBuffer buffer = new LineBuffer(viewport);
+        buffer.clear(1, WIDTH, HEIGHT, PAD);
+        buffer.add(vertices, v1, v2);
+        buffer.add(vertices, v2, v1);
+        assertEquals(2, buffer.getLineCount());
+        float[] lines = new float[8];
+        System.arraycopy(buffer.getLines(), 0, lines, 0, lines.length);
+        assertArrayEquals(new float[]{10, 5, 50, 25, 50, 25, 10, 5}, lines, 0);
+    }
+
+    @Test
+    public void skipsLinesOffTheScreen() {
+        VertexModel vertices = new VertexModel();
+        int center = vertices.add(VertexModel.TYPE_INTERMEDIATE, WIDTH / 2, HEIGHT / 2);
+        int left = vertices.add(VertexModel.TYPE_INTERMEDIATE, -10, HEIGHT / 2);
+        int farLeft = vertices.add(VertexModel.TYPE_INTERMEDIATE, -20, HEIGHT / 2);
+        int below = vertices.add(VertexModel.TYPE_INTERMEDIATE, WIDTH / 2, HEIGHT + PAD - 1);
+        int farBelow = vertices.add(VertexModel.TYPE_INTERMEDIATE, WIDTH / 2, HEIGHT + 20);
+        int right = vertices.add(VertexModel.TYPE_INTERMEDIATE, WIDTH + 10, -10);
+        LineBuffer buffer = new LineBuffer(new Viewport());
+        buffer.clear(8, WIDTH, HEIGHT, PAD);
+        // Lines crossing the screen and within the pad are kept.
+        buffer.add(vertices, center, left);
+        buffer.add(vertices, left, right);
+        buffer.add(vertices, below, farBelow);
+        assertEquals(3, buffer.getLineCount());
+        buffer.add(vertices, left, farLeft);
+        buffer.add(vertices, farBelow, farBelow);
+        buffer.add(vertices, right, right);
+        assertEquals(3, buffer.getLineCount());
+    }
+
+    @Test
+    public void reusesArray() {
+        VertexModel vertices = new VertexModel();
+        int v1 = vertices.add(VertexModel.TYPE_START, 1, 1);
+        int v2 = vertices.add(VertexModel.TYPE_END, 2, 2);
+        LineBuffer buffer = new LineBuffer(new Viewport());
+        buffer.clear(1000, WIDTH, HEIGHT, PAD);
+        float[] lines = buffer.getLines();
+        for (int i = 0; i < 1000; i++) {
+            buffer.add(vertices, v1, v2);
+        }
+        buffer.clear(10, WIDTH, HEIGHT, PAD);
+        assertEquals(0, buffer.getLineCount());
+        buffer.clear(1000, WIDTH, HEIGHT, PAD);
+        assertSame(lines, buffer.getLines());
+    }
+}
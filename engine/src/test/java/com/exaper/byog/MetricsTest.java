@@ -0,0 +1,41 @@
+package com.exaper.byog;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class MetricsTest {
+    @Test
+    public void metricsAreCreatedOnce() {
+        Metrics metrics = new Metrics();
+        assertSame(metrics.histogram("draw"), metrics.histogram("draw"));
+        assertSame(metrics.counter("edges"), metrics.counter("edges"));
+    }
+
+    @Test
+    public void reportsMetrics() {
+        Metrics metrics = new Metrics();
+        metrics.histogram("draw").record(1234567);
+        metrics.histogram("layout");
+        metrics.counter("ver\"tices").set(3);
+        assertEquals("draw: count=1 mean=1.23ms p50=1.23ms p90=1.23ms p99=1.23ms max=1.23ms\n"
+                + "layout: count=0 mean=0.00ms p50=0.00ms p90=0.00ms p99=0.00ms max=0.00ms\n"
+                + "ver\"tices: 3\n", metrics.toText());
+        assertEquals("{\"histograms\":{"
+                + "\"draw\":{\"count\":1,\"mean_ns\":1234567,\"p50_ns\":1234567,\"p90_ns\":1234567,"
+                + "\"p99_ns\":1234567,\"max_ns\":1234567},"
+                + "\"layout\":{\"count\":0,\"mean_ns\":0,\"p50_ns\":0,\"p90_ns\":0,\"p99_ns\":0,\"max_ns\":0}},"
+                + "\"counters\":{\"ver\\\"tices\":3}}", metrics.toJson());
+    }
+
+    @Test
+    public void resetKeepsMetrics() {
+        Metrics metrics = new Metrics();
+        metrics.histogram("draw").record(10);
+        metrics.counter("edges").set(5);
+        metrics.reset();
+        assertEquals(0, metrics.histogram("draw").getCount());
+        assertEquals(0, metrics.counter("edges").get());
+    }
+}
@@ -0,0 +1,127 @@
+package com.exaper.byog;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PathSearchTest {
+    private static final double EPSILON = 1e-6;
+
+    private final PathSearch mReference = new DijkstraPathSearch();
+    private final PathSearch[] mSearches = {
+            new AStarPathSearch(), new BidirectionalAStarPathSearch(), new JGraphTPathSearch()
+    };
+
+    @Test
+    public void searchesFindPathsAsShortAsDijkstra() {
+        Random random = new Random(3);
+        IntList expected = new IntList(), actual = new IntList();
+        int reachable = 0, unreachable = 0;
+        for (int trial = 0; trial < 500; trial++) {
+            int vertexCount = 2 + random.nextInt(100);
+            // Sparse graphs leave some pairs unreachable.
+            int edgeCount = random.nextInt(vertexCount * 3);
+            CompactGraph graph = TestGraphs.build(TestGraphs.randomGraph(random, vertexCount, edgeCount, -1, -1));
+            int start = random.nextInt(vertexCount), end = random.nextInt(vertexCount);
+            boolean found = mReference.findPath(graph, start, end, expected);
+            for (PathSearch search : mSearches) {
+                String name = search.getClass().getSimpleName() + " in trial " + trial;
+                assertEquals(name, found, search.findPath(graph, start, end, actual));
+                if (found) {
+                    TestGraphs.assertPath(graph, actual, start, end);
+                    assertEquals(name, TestGraphs.length(graph, expected), TestGraphs.length(graph, actual), EPSILON);
+                }
+            }
+            if (found) {
+                reachable++;
+            } else {
+                unreachable++;
+            }
+        }
+        assertTrue(reachable > 0 && unreachable > 0);
+    }
+
+    @Test
+    public void pathFromVertexToItselfIsTheVertex() {
+        CompactGraph graph = TestGraphs.build(TestGraphs.randomGraph(new Random(5), 20, 40, -1, -1));
+        IntList path = new IntList();
+        for (PathSearch search : all()) {
+            assertTrue(search.findPath(graph, 7, 7, path));
+            assertEquals(1, path.size());
+            assertEquals(7, path.get(0));
+        }
+    }
+
+    @Test
+    public void isolatedVertexIsUnreachable() {
+        // Vertex 2 has no edges.
+        int[] edges = {0, 1, 1, 3};
+        float[] coordinates = {0, 0, 1, 0, 2, 0, 3, 0};
+        CompactGraph graph = TestGraphs.build(new GraphSnapshot(0, edges, coordinates, -1, -1));
+        IntList path = new IntList();
+        for (PathSearch search : all()) {
+            assertFalse(search.findPath(graph, 0, 2, path));
+            assertFalse(search.findPath(graph, 2, 3, path));
+            assertTrue(search.findPath(graph, 0, 3, path));
+        }
+    }
+
+    @Test
+    public void engineAgreesWithSearchesWhileVerticesMove() {
+        Random random = new Random(7);
+        ShortestPathEngine incremental = new ShortestPathEngine();
+        ShortestPathEngine[] engines = new ShortestPathEngine[mSearches.length + 1];
+        for (int i = 0; i < engines.length; i++) {
+            engines[i] = new ShortestPathEngine();
+            engines[i].setPathSearch(i < mSearches.length ? mSearches[i] : mReference);
+        }
+        for (int trial = 0; trial < 100; trial++) {
+            int vertexCount = 2 + random.nextInt(60);
+            int edgeCount = random.nextInt(vertexCount * 3);
+            int start = random.nextInt(vertexCount), end = random.nextInt(vertexCount);
+            GraphSnapshot base = TestGraphs.randomGraph(random, vertexCount, edgeCount, start, end);
+            float[] coordinates = new float[vertexCount << 1];
+            for (int v = 0; v < vertexCount; v++) {
+                coordinates[v << 1] = base.getX(v);
+                coordinates[(v << 1) + 1] = base.getY(v);
+            }
+            int[] edges = new int[base.getEdgeCount() << 1];
+            for (int e = 0; e < base.getEdgeCount(); e++) {
+                edges[e << 1] = base.getEdgeSource(e);
+                edges[(e << 1) + 1] = base.getEdgeTarget(e);
+            }
+            for (int step = 0; step < 20; step++) {
+                coordinates = coordinates.clone();
+                int vertex = random.nextInt(vertexCount);
+                coordinates[vertex << 1] = random.nextInt((int) TestGraphs.SIDE);
+                coordinates[(vertex << 1) + 1] = random.nextInt((int) TestGraphs.SIDE);
+                GraphSnapshot snapshot = new GraphSnapshot(trial, edges, coordinates, start, end);
+                incremental.update(snapshot);
+                IntList expected = incremental.getShortestPath();
+                for (ShortestPathEngine engine : engines) {
+                    engine.update(snapshot);
+                    IntList actual = engine.getShortestPath();
+                    if (expected == null) {
+                        assertNull(actual);
+                    } else {
+                        TestGraphs.assertPath(engine.getGraph(), actual, start, end);
+                        assertEquals(TestGraphs.length(incremental.getGraph(), expected),
+                                TestGraphs.length(engine.getGraph(), actual), EPSILON);
+                    }
+                }
+            }
+        }
+    }
+
+    private PathSearch[] all() {
+        PathSearch[] searches = new PathSearch[mSearches.length + 1];
+        System.arraycopy(mSearches, 0, searches, 0, mSearches.length);
+        searches[mSearches.length] = mReference;
+        return searches;
+    }
+}
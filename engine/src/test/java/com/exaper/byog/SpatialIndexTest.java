@@ -0,0 +1,69 @@
+package com.exaper.byog;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpatialIndexTest {
+    private static final int POINT_COUNT = 300;
+
+    @Test
+    public void queriesMatchBruteForceWhilePointsMove() {
+        Random random = new Random(19);
+        SpatialIndex index = new SpatialIndex(10);
+        float[] x = new float[POINT_COUNT], y = new float[POINT_COUNT];
+        boolean[] present = new boolean[POINT_COUNT];
+        int size = 0;
+        IntList result = new IntList();
+        for (int step = 0; step < 20000; step++) {
+            int point = random.nextInt(POINT_COUNT);
+            if (random.nextInt(10) == 0) {
+                index.remove(point);
+                size -= present[point] ? 1 : 0;
+                present[point] = false;
+            } else {
+                // Mostly short moves to neighbouring cells, some jumps far away, negative coordinates included.
+                boolean jump = !present[point] || random.nextInt(20) == 0;
+                x[point] = jump ? random.nextInt(2000) - 1000 : x[point] + random.nextInt(41) - 20;
+                y[point] = jump ? random.nextInt(2000) - 1000 : y[point] + random.nextInt(41) - 20;
+                index.put(point, x[point], y[point]);
+                size += present[point] ? 0 : 1;
+                present[point] = true;
+            }
+            assertEquals(size, index.size());
+            float left = random.nextInt(2000) - 1000, top = random.nextInt(2000) - 1000;
+            float right = left + random.nextInt(step % 100 == 0 ? 2000 : 60);
+            float bottom = top + random.nextInt(step % 100 == 0 ? 2000 : 60);
+            result.clear();
+            index.query(left, top, right, bottom, result);
+            int[] actual = result.toArray();
+            Arrays.sort(actual);
+            IntList expected = new IntList();
+            for (int p = 0; p < POINT_COUNT; p++) {
+                if (present[p] && x[p] >= left && x[p] <= right && y[p] >= top && y[p] <= bottom) {
+                    expected.add(p);
+                }
+            }
+            assertArrayEquals("Step " + step, expected.toArray(), actual);
+        }
+    }
+
+    @Test
+    public void removedPointIsNotFound() {
+        SpatialIndex index = new SpatialIndex(10);
+        index.put(3, 5, 5);
+        index.put(4, 6, 6);
+        index.remove(3);
+        assertFalse(index.contains(3));
+        assertTrue(index.contains(4));
+        assertEquals(4, index.findNearest(5, 5, 10, new IntList()));
+        index.remove(4);
+        assertEquals(-1, index.findNearest(5, 5, 10, new IntList()));
+    }
+}
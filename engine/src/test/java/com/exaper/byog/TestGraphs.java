@@ -0,0 +1,78 @@
+package com.exaper.byog;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Random graphs and path checks shared by tests.
+ */
+final class TestGraphs {
+    static final float SIDE = 1000;
+
+    private TestGraphs() {
+    }
+
+    /**
+     * @return graph with up to edgeCount distinct edges between random vertices at integer positions in a square of
+     * {@link #SIDE}, self loops are left out. Sparse graphs usually fall apart into several components.
+     */
+    static GraphSnapshot randomGraph(Random random, int vertexCount, int edgeCount, int start, int end) {
+        IntList edges = new IntList();
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < edgeCount; i++) {
+            int v1 = random.nextInt(vertexCount), v2 = random.nextInt(vertexCount);
+            if (v1 != v2 && seen.add((long) Math.min(v1, v2) * vertexCount + Math.max(v1, v2))) {
+                edges.add(v1);
+                edges.add(v2);
+            }
+        }
+        float[] coordinates = new float[vertexCount << 1];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = random.nextInt((int) SIDE);
+        }
+        return new GraphSnapshot(0, edges.toArray(), coordinates, start, end);
+    }
+
+    static CompactGraph build(GraphSnapshot snapshot) {
+        CompactGraph graph = new CompactGraph();
+        graph.build(snapshot);
+        return graph;
+    }
+
+    static double length(CompactGraph graph, IntList path) {
+        double length = 0;
+        for (int i = 1; i < path.size(); i++) {
+            length += graph.distance(path.get(i - 1), path.get(i));
+        }
+        return length;
+    }
+
+    /**
+     * Asserts that path runs from start to end along edges of the graph without visiting a vertex twice.
+     */
+    static void assertPath(CompactGraph graph, IntList path, int start, int end) {
+        assertEquals(start, path.get(0));
+        assertEquals(end, path.get(path.size() - 1));
+        Set<Integer> visited = new HashSet<>();
+        for (int i = 0; i < path.size(); i++) {
+            assertTrue("Vertex " + path.get(i) + " visited twice", visited.add(path.get(i)));
+            if (i > 0) {
+                int previous = path.get(i - 1);
+                assertTrue("No edge " + previous + "-" + path.get(i), isAdjacent(graph, previous, path.get(i)));
+            }
+        }
+    }
+
+    private static boolean isAdjacent(CompactGraph graph, int v1, int v2) {
+        for (int arc = graph.getFirstArc(v1), last = graph.getFirstArc(v1 + 1); arc < last; arc++) {
+            if (graph.getArcVertex(arc) == v2) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,118 @@
+package com.exaper.byog;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class VertexModelTest {
+    @Test
+    public void idsOfRemovedVerticesAreRecycled() {
+        VertexModel model = new VertexModel();
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i, model.add(VertexModel.TYPE_INTERMEDIATE, i, 2 * i));
+        }
+        model.setTemporary(7, true);
+        model.remove(7);
+        model.remove(30);
+        assertEquals(38, model.size());
+        assertEquals(40, model.getIdCount());
+        assertFalse(model.contains(7));
+        assertFalse(model.contains(40));
+        assertFalse(model.contains(-1));
+        assertEquals(30, model.add(VertexModel.TYPE_END, 1, 2));
+        assertEquals(7, model.add(VertexModel.TYPE_START, 3, 4));
+        assertEquals(40, model.add(VertexModel.TYPE_INTERMEDIATE, 5, 6));
+        assertTrue(model.contains(7));
+        assertEquals(VertexModel.TYPE_START, model.getType(7));
+        assertFalse(model.isTemporary(7));
+        assertEquals(3, model.getX(7), 0);
+        assertEquals(4, model.getY(7), 0);
+        assertEquals(39, model.getX(39), 0);
+        assertEquals(78, model.getY(39), 0);
+    }
+
+    @Test
+    public void clearStartsIdsOver() {
+        VertexModel model = new VertexModel();
+        for (int i = 0; i < 20; i++) {
+            model.add(VertexModel.TYPE_INTERMEDIATE, i, i);
+        }
+        model.remove(3);
+        model.clear();
+        assertEquals(0, model.size());
+        assertEquals(0, model.getIdCount());
+        assertFalse(model.contains(0));
+        assertEquals(0, model.add(VertexModel.TYPE_INTERMEDIATE, 0, 0));
+        assertEquals(1, model.add(VertexModel.TYPE_INTERMEDIATE, 0, 0));
+    }
+
+    @Test
+    public void verticesAreAddedWithSavedIds() {
+        VertexModel model = new VertexModel();
+        model.add(3, VertexModel.TYPE_START, 1, 2);
+        model.add(5, VertexModel.TYPE_INTERMEDIATE, 3, 4);
+        assertEquals(2, model.size());
+        assertEquals(6, model.getIdCount());
+        assertFalse(model.contains(4));
+        assertEquals(VertexModel.TYPE_START, model.getType(3));
+        model.add(1, VertexModel.TYPE_END, 5, 6);
+        assertEquals(6, model.getY(1), 0);
+        // Ids skipped over are taken by new vertices.
+        int[] ids = {model.add(VertexModel.TYPE_INTERMEDIATE, 0, 0), model.add(VertexModel.TYPE_INTERMEDIATE, 0, 0),
+                model.add(VertexModel.TYPE_INTERMEDIATE, 0, 0)};
+        Arrays.sort(ids);
+        assertArrayEquals(new int[]{0, 2, 4}, ids);
+        assertEquals(6, model.add(VertexModel.TYPE_INTERMEDIATE, 0, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void savedIdMustBeFree() {
+        VertexModel model = new VertexModel();
+        model.add(VertexModel.TYPE_INTERMEDIATE, 1, 2);
+        model.add(0, VertexModel.TYPE_INTERMEDIATE, 3, 4);
+    }
+
+    @Test
+    public void swappedCoordinatesMoveAllVertices() {
+        VertexModel model = new VertexModel();
+        model.add(VertexModel.TYPE_START, 1, 2);
+        model.add(VertexModel.TYPE_END, 3, 4);
+        float[] frame = {10, 20, 30, 40};
+        float[] previous = model.swapCoordinates(frame);
+        assertNotSame(frame, previous);
+        assertEquals(1, previous[0], 0);
+        assertEquals(4, previous[3], 0);
+        assertEquals(30, model.getX(1), 0);
+        assertEquals(40, model.getY(1), 0);
+        assertSame(frame, model.swapCoordinates(previous));
+        assertEquals(3, model.getX(1), 0);
+    }
+
+    @Test
+    public void verticesAreAddedAfterSwapToShorterArray() {
+        VertexModel model = new VertexModel();
+        model.add(VertexModel.TYPE_INTERMEDIATE, 1, 2);
+        model.swapCoordinates(new float[]{5, 6});
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i + 1, model.add(VertexModel.TYPE_INTERMEDIATE, i, -i));
+        }
+        assertEquals(5, model.getX(0), 0);
+        assertEquals(99, model.getX(100), 0);
+        assertEquals(-99, model.getY(100), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void swapRequiresRoomForAllVertices() {
+        VertexModel model = new VertexModel();
+        model.add(VertexModel.TYPE_INTERMEDIATE, 1, 2);
+        model.add(VertexModel.TYPE_INTERMEDIATE, 3, 4);
+        model.swapCoordinates(new float[2]);
+    }
+}
@@ -0,0 +1,147 @@
+package com.exaper.byog;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import android.view.MotionEvent;
+import android.view.View;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drags a vertex of a large graph through {@link GraphLayout}: every move goes through the touch handling, moves the
+ * vertex, submits the graph to the path solver and draws the layout. The allocation counter of the layout must stay
+ * at zero past the warm up of a gesture, once a first gesture has grown the buffers.
+ */
+public class DragAllocationTest extends InstrumentationTestCase {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int VERTEX_COUNT = 2000;
+    private static final int MOVES = 400;
+
+    private GraphLayout mLayout;
+    private Canvas mCanvas;
+    private File mGraphFile;
+    private long mDownTime;
+    // Where the dragged START vertex is on the screen, viewport of a new layout maps world coordinates as they are.
+    private float mX;
+    private float mY;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final Context context = getInstrumentation().getTargetContext();
+        assertTrue("Allocations are counted in debuggable builds only",
+                (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0);
+        mGraphFile = new File(context.getCacheDir(), "drag.byog");
+        writeGraph(mGraphFile, new Random(23));
+        mX = WIDTH / 2;
+        mY = HEIGHT / 2;
+        mCanvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mLayout = new GraphLayout(context);
+                mLayout.setAlternativePathCount(2);
+                // Starts the path solver as attaching to a window would.
+                mLayout.onAttachedToWindow();
+                try {
+                    mLayout.loadGraph(mGraphFile);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                mLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+                mLayout.layout(0, 0, WIDTH, HEIGHT);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mLayout.onDetachedFromWindow();
+            }
+        });
+        mGraphFile.delete();
+        super.tearDown();
+    }
+
+    public void testDragDoesNotAllocateAfterWarmUp() {
+        AtomicLong allocations = mLayout.getMetrics().counter(GraphLayout.METRIC_ALLOCATIONS);
+        // First gesture spirals over the whole view, growing buffers to what the graph needs.
+        touch(MotionEvent.ACTION_DOWN);
+        for (int move = 0; move < MOVES; move++) {
+            double angle = move * 0.1, radius = (double) move / MOVES * WIDTH / 2;
+            moveTo((float) (WIDTH / 2 + radius * Math.cos(angle)), (float) (HEIGHT / 2 + radius * Math.sin(angle)));
+        }
+        touch(MotionEvent.ACTION_UP);
+        long warmUpAllocations = allocations.get();
+
+        // Second gesture mixes moves within a cell of the spatial index with long jumps and pauses.
+        Random random = new Random(7);
+        touch(MotionEvent.ACTION_DOWN);
+        for (int move = 0; move < MOVES; move++) {
+            float step = random.nextInt(4) == 0 ? 300 : random.nextInt(2) == 0 ? 20 : 1;
+            float x = mX + (random.nextFloat() * 2 - 1) * step, y = mY + (random.nextFloat() * 2 - 1) * step;
+            moveTo(Math.max(0, Math.min(WIDTH, x)), Math.max(0, Math.min(HEIGHT, y)));
+        }
+        touch(MotionEvent.ACTION_UP);
+        assertEquals(warmUpAllocations, allocations.get());
+    }
+
+    /**
+     * Moves the vertex and lets the path solver deliver its result before the next move.
+     */
+    private void moveTo(float x, float y) {
+        mX = x;
+        mY = y;
+        touch(MotionEvent.ACTION_MOVE);
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private void touch(int action) {
+        long time = SystemClock.uptimeMillis();
+        if (action == MotionEvent.ACTION_DOWN) {
+            mDownTime = time;
+        }
+        final MotionEvent event = MotionEvent.obtain(mDownTime, time, action, mX, mY, 0);
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mLayout.onTouchEvent(event);
+                mLayout.flushMove();
+                mLayout.draw(mCanvas);
+            }
+        });
+        event.recycle();
+    }
+
+    /**
+     * Writes a random graph spread over the view, with START in its center and END in a corner.
+     */
+    private static void writeGraph(File file, Random random) throws IOException {
+        VertexModel vertices = new VertexModel();
+        EdgeStore edges = new EdgeStore();
+        vertices.add(VertexModel.TYPE_START, WIDTH / 2, HEIGHT / 2);
+        vertices.add(VertexModel.TYPE_END, 0, 0);
+        for (int v = 2; v < VERTEX_COUNT; v++) {
+            vertices.add(VertexModel.TYPE_INTERMEDIATE, random.nextInt(WIDTH), random.nextInt(HEIGHT));
+        }
+        for (int i = 0; i < VERTEX_COUNT * 3; i++) {
+            int v1 = random.nextInt(VERTEX_COUNT), v2 = random.nextInt(VERTEX_COUNT);
+            if (v1 != v2 && edges.findEdge(v1, v2) < 0) {
+                edges.addEdge(v1, v2);
+            }
+        }
+        GraphFile.write(file, vertices, edges);
+    }
+}
@@ -0,0 +1,106 @@
+package com.exaper.byog;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.test.InstrumentationTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class EdgeRendererTest extends InstrumentationTestCase {
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 100;
+
+    private final Paint mPaint = new Paint();
+    private final Paint mHighlightPaint = new Paint();
+    private final Paint mAlternativePaint = new Paint();
+    private final RecordingCanvas mCanvas = new RecordingCanvas();
+    private final EdgeStore mEdges = new EdgeStore();
+    private final VertexModel mVertices = new VertexModel();
+    private EdgeRenderer mRenderer;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mVertices.add(VertexModel.TYPE_START, 0, 0);
+        mVertices.add(VertexModel.TYPE_INTERMEDIATE, 20, 10);
+        mVertices.add(VertexModel.TYPE_END, 40, 0);
+        mRenderer = new EdgeRenderer(mPaint, new Paint[]{mHighlightPaint, mAlternativePaint}, new Viewport());
+    }
+
+    public void testDrawsRegularAndHighlightedEdgesInOneCallEach() {
+        mEdges.addEdge(0, 1);
+        mEdges.addEdge(1, 2);
+        int highlighted = mEdges.addEdge(2, 0);
+        mRenderer.highlightEdge(highlighted, 0);
+        draw();
+        assertEquals(2, mCanvas.mCalls.size());
+        mCanvas.assertCall(0, mPaint, 0, 0, 20, 10, 20, 10, 40, 0);
+        mCanvas.assertCall(1, mHighlightPaint, 40, 0, 0, 0);
+    }
+
+    public void testClearedEdgesAreDrawnAsRegularOnes() {
+        int edge = mEdges.addEdge(0, 1);
+        mRenderer.highlightEdge(edge, 0);
+        mRenderer.highlightEdge(edge, 0);
+        mRenderer.clearHighlightedEdges();
+        draw();
+        assertEquals(1, mCanvas.mCalls.size());
+        mCanvas.assertCall(0, mPaint, 0, 0, 20, 10);
+    }
+
+    public void testLowerLevelsAreDrawnOnTop() {
+        int shortest = mEdges.addEdge(0, 1);
+        int alternative = mEdges.addEdge(1, 2);
+        mRenderer.highlightEdge(shortest, 1);
+        mRenderer.highlightEdge(alternative, 1);
+        mRenderer.highlightEdge(shortest, 0);
+        draw();
+        assertEquals(2, mCanvas.mCalls.size());
+        mCanvas.assertCall(0, mAlternativePaint, 20, 10, 40, 0);
+        mCanvas.assertCall(1, mHighlightPaint, 0, 0, 20, 10);
+    }
+
+    public void testReusesBuffersBetweenFrames() {
+        mEdges.addEdge(0, 1);
+        draw();
+        draw();
+        assertEquals(2, mCanvas.mCalls.size());
+        assertSame(mCanvas.mCalls.get(0).mBuffer, mCanvas.mCalls.get(1).mBuffer);
+    }
+
+    private void draw() {
+        mRenderer.draw(mCanvas, mEdges, mVertices, WIDTH, HEIGHT);
+    }
+
+    private static final class Call {
+        final float[] mBuffer;
+        final float[] mLines;
+        final Paint mPaint;
+
+        Call(float[] buffer, float[] lines, Paint paint) {
+            mBuffer = buffer;
+            mLines = lines;
+            mPaint = paint;
+        }
+    }
+
+    /**
+     * Records lines instead of drawing them, buffers are copied since the renderer reuses them.
+     */
+    private static final class RecordingCanvas extends Canvas {
+        final List<Call> mCalls = new ArrayList<>();
+
+        @Override
+        public void drawLines(float[] pts, int offset, int count, Paint paint) {
+            mCalls.add(new Call(pts, Arrays.copyOfRange(pts, offset, offset + count), paint));
+        }
+
+        void assertCall(int index, Paint paint, float... lines) {
+            Call call = mCalls.get(index);
+            assertSame(paint, call.mPaint);
+            assertTrue(Arrays.toString(call.mLines), Arrays.equals(lines, call.mLines));
+        }
+    }
+}
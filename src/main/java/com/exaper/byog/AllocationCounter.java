@@ -0,0 +1,75 @@
+package com.exaper.byog;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.Debug;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts objects the main thread allocates while handling a gesture in debuggable builds. Moves and frames are
+ * expected to allocate nothing once the first few of a gesture have grown the buffers they reuse, since GC pauses show
+ * up as drag stutter. Allocations past the warm up are reported when the gesture ends and added to a counter.
+ * <p>
+ * Sections may nest, only the outermost one is counted. Thread allocation counting is deprecated as of Marshmallow
+ * without a replacement, the runtime statistics that remain are process wide and would pick up the path solver.
+ */
+@SuppressWarnings("deprecation")
+final class AllocationCounter {
+    private static final String TAG = "AllocationCounter";
+    // Sections which might still grow buffers.
+    private static final int WARM_UP_SECTIONS = 8;
+
+    private final boolean mEnabled;
+    private final AtomicLong mCounter;
+    private boolean mCounting;
+    private int mSectionStart;
+    private int mDepth;
+    private int mSections;
+    private int mAllocations;
+
+    AllocationCounter(Context context, AtomicLong counter) {
+        mCounter = counter;
+        mEnabled = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    void startGesture() {
+        if (mEnabled && !mCounting) {
+            mCounting = true;
+            mSections = 0;
+            mDepth = 0;
+            mAllocations = 0;
+            Debug.startAllocCounting();
+        }
+    }
+
+    void beginSection() {
+        if (mCounting && mDepth++ == 0) {
+            mSectionStart = Debug.getThreadAllocCount();
+        }
+    }
+
+    void endSection() {
+        // Sections begun before the gesture started are not counted.
+        if (!mCounting || mDepth == 0 || --mDepth > 0) {
+            return;
+        }
+        if (++mSections > WARM_UP_SECTIONS) {
+            mAllocations += Debug.getThreadAllocCount() - mSectionStart;
+        }
+    }
+
+    void finishGesture() {
+        if (!mCounting) {
+            return;
+        }
+        mCounting = false;
+        Debug.stopAllocCounting();
+        if (mAllocations > 0) {
+            mCounter.addAndGet(mAllocations);
+            Log.w(TAG, "Gesture allocated " + mAllocations + " objects in " + (mSections - WARM_UP_SECTIONS)
+                    + " steady state moves and frames");
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.exaper.byog;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs {@link ForceLayout} iterations on background threads and delivers coordinates to the main thread at most once
+ * per frame, the layout keeps iterating while a frame waits to be shown. Forces are computed on a thread per core.
+ * <p>
+ * Frames are indexed by vertex id, so that {@link VertexModel#swapCoordinates} can take them as they are. The array a
+ * frame replaces comes back for a later frame, so frames are passed around without copying.
+ */
+public class AutoLayout {
+    public interface Callback {
+        /**
+         * @param coordinates x and y of every vertex, interleaved and indexed by vertex id.
+         * @param converged   true for the final coordinates.
+         * @return array to reuse for a later frame, either coordinates or one with at least as many pairs.
+         */
+        float[] onLayoutFrame(float[] coordinates, boolean converged);
+    }
+
+    private final Callback mCallback;
+    private final Handler mMainHandler;
+    private final FrameScheduler mFrameScheduler;
+    private Worker mWorker;
+    // Latest coordinates waiting for the next frame.
+    private float[] mPendingFrame;
+    private boolean mPendingConverged;
+
+    public AutoLayout(Callback callback) {
+        mCallback = callback;
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mFrameScheduler = FrameScheduler.create(new Runnable() {
+            @Override
+            public void run() {
+                deliverFrame();
+            }
+        });
+    }
+
+    public boolean isRunning() {
+        return mWorker != null;
+    }
+
+    /**
+     * Stops the layout in progress, if any, and starts the new one.
+     *
+     * @param vertices id of every vertex of the layout.
+     * @param idCount  upper bound of vertex ids.
+     */
+    public void start(ForceLayout layout, int[] vertices, int idCount) {
+        stop();
+        mWorker = new Worker(layout, vertices, idCount);
+        mWorker.start();
+    }
+
+    /**
+     * Stops the layout in progress. No frames are delivered for it afterwards.
+     */
+    public void stop() {
+        if (mWorker != null) {
+            mWorker.quit();
+            mWorker = null;
+            mFrameScheduler.unschedule();
+            mPendingFrame = null;
+        }
+    }
+
+    private void publish(final Worker worker, final float[] coordinates, final boolean converged) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Drop frames of the worker which was stopped meanwhile.
+                if (mWorker != worker) {
+                    return;
+                }
+                if (mPendingFrame != null) {
+                    worker.recycle(mPendingFrame);
+                }
+                mPendingFrame = coordinates;
+                mPendingConverged = converged;
+                mFrameScheduler.schedule();
+            }
+        });
+    }
+
+    private void deliverFrame() {
+        Worker worker = mWorker;
+        float[] coordinates = mPendingFrame;
+        mPendingFrame = null;
+        if (mPendingConverged) {
+            mWorker = null;
+            worker.quit();
+        }
+        worker.recycle(mCallback.onLayoutFrame(coordinates, mPendingConverged));
+    }
+
+    private final class Worker extends Thread {
+        private static final int FRAME_COUNT = 2;
+
+        private final ForceLayout mLayout;
+        private final int[] mVertices;
+        private final ExecutorService mExecutor;
+        private final BlockingQueue<float[]> mFreeFrames = new ArrayBlockingQueue<>(FRAME_COUNT);
+
+        Worker(ForceLayout layout, int[] vertices, int idCount) {
+            super("AutoLayout");
+            mLayout = layout;
+            mVertices = vertices;
+            mExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "AutoLayoutForces");
+                }
+            });
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                mFreeFrames.add(new float[idCount << 1]);
+            }
+        }
+
+        void recycle(float[] coordinates) {
+            mFreeFrames.offer(coordinates);
+        }
+
+        void quit() {
+            // Interrupt first, so that the worker does not wait for tasks which shutdown drops.
+            interrupt();
+            mExecutor.shutdownNow();
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                while (!mLayout.isConverged()) {
+                    mLayout.step(mExecutor);
+                    // Both frames wait for the main thread, this iteration is not shown.
+                    float[] coordinates = mFreeFrames.poll();
+                    if (coordinates != null) {
+                        mLayout.getCoordinates(coordinates, mVertices);
+                        publish(this, coordinates, false);
+                    }
+                }
+                float[] coordinates = mFreeFrames.take();
+                mLayout.getCoordinates(coordinates, mVertices);
+                publish(this, coordinates, true);
+            } catch (InterruptedException | RejectedExecutionException e) {
+                // Stopped.
+            } finally {
+                mExecutor.shutdown();
+            }
+        }
+    }
+}
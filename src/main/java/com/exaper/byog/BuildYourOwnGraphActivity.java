@@ -1,19 +1,333 @@
 package com.exaper.byog;
 
 import android.app.Activity;
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
+import android.provider.OpenableColumns;
+import android.util.Log;
 import android.view.View;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
 
 public class BuildYourOwnGraphActivity extends Activity {
+    private static final String TAG = "BuildYourOwnGraph";
+    private static final String SNAPSHOT_FILE_NAME = "graph.byog";
+    private static final String JOURNAL_FILE_NAME = "graph.journal";
+    private static final String DIMACS_GRAPH_SUFFIX = ".gr";
+    private static final String DIMACS_COORDINATES_SUFFIX = ".co";
+    private static final String DUMP_JSON_ARGUMENT = "--json";
+    private static final String STATE_IMPORT_PENDING = "import_pending";
+    private static final long METRICS_OVERLAY_INTERVAL_MS = 500;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private GraphLayout mGraphLayout;
+    private ProgressBar mImportProgress;
+    private TextView mMetricsOverlay;
+    private final Runnable mUpdateMetricsOverlay = new Runnable() {
+        @Override
+        public void run() {
+            updateMetricsOverlay();
+            mMetricsOverlay.postDelayed(this, METRICS_OVERLAY_INTERVAL_MS);
+        }
+    };
+    private GraphJournal mJournal;
+    private boolean mRestarting;
+    // Whether the graph of the intent is yet to be imported, an import cut off by a configuration change is started
+    // over by the recreated activity.
+    private boolean mImportPending;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_build_your_own_graph);
-        findViewById(R.id.restart).setOnClickListener(new View.OnClickListener() {
+        mGraphLayout = (GraphLayout) findViewById(R.id.graph);
+        mImportProgress = (ProgressBar) findViewById(R.id.import_progress);
+        mMetricsOverlay = (TextView) findViewById(R.id.metrics_overlay);
+        View restart = findViewById(R.id.restart);
+        restart.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
+                mRestarting = true;
                 recreate();
             }
         });
+        restart.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                toggleMetricsOverlay();
+                return true;
+            }
+        });
+        findViewById(R.id.auto_layout).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (mGraphLayout.isAutoLayoutRunning()) {
+                    mGraphLayout.stopAutoLayout();
+                } else if (!mImportProgress.isShown()) {
+                    mGraphLayout.startAutoLayout();
+                }
+            }
+        });
+        mJournal = new GraphJournal(new File(getFilesDir(), SNAPSHOT_FILE_NAME),
+                new File(getFilesDir(), JOURNAL_FILE_NAME));
+        Uri uri = getIntent().getData();
+        mImportPending = uri != null
+                && (savedInstanceState == null || savedInstanceState.getBoolean(STATE_IMPORT_PENDING));
+        restoreGraph(mImportPending ? uri : null, true);
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBoolean(STATE_IMPORT_PENDING, mImportPending && !mRestarting);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (mMetricsOverlay.getVisibility() == View.VISIBLE) {
+            mUpdateMetricsOverlay.run();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mMetricsOverlay.removeCallbacks(mUpdateMetricsOverlay);
+        try {
+            mJournal.flush();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to save graph", e);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Graph imported or laid out so far is saved to the journal, a cut off import is started over once the
+        // recreated activity restores it. Closing waits for the compaction, so that it does not replace the snapshot
+        // restored from.
+        mGraphLayout.cancelImport();
+        mGraphLayout.stopAutoLayout();
+        try {
+            // Restart starts over with an empty graph.
+            if (mRestarting) {
+                mJournal.delete();
+            } else {
+                mJournal.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to close graph journal", e);
+        }
+    }
+
+    /**
+     * Appends metrics of the graph editor to "dumpsys activity" output, as JSON if asked for with --json.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        Metrics metrics = mGraphLayout.getMetrics();
+        writer.print(prefix);
+        writer.println("Metrics:");
+        if (args != null && Arrays.asList(args).contains(DUMP_JSON_ARGUMENT)) {
+            writer.print(prefix);
+            writer.println(metrics.toJson());
+        } else {
+            for (String line : metrics.toText().split("\n")) {
+                writer.print(prefix);
+                writer.print("  ");
+                writer.println(line);
+            }
+        }
+    }
+
+    /**
+     * Shows or hides median and 99th percentile of draw and solve latencies along with graph size.
+     */
+    private void toggleMetricsOverlay() {
+        if (mMetricsOverlay.getVisibility() == View.VISIBLE) {
+            mMetricsOverlay.removeCallbacks(mUpdateMetricsOverlay);
+            mMetricsOverlay.setVisibility(View.GONE);
+        } else {
+            mMetricsOverlay.setVisibility(View.VISIBLE);
+            mUpdateMetricsOverlay.run();
+        }
+    }
+
+    private void updateMetricsOverlay() {
+        Metrics metrics = mGraphLayout.getMetrics();
+        LatencyHistogram draw = metrics.histogram(GraphLayout.METRIC_DRAW);
+        LatencyHistogram solve = metrics.histogram(PathSolver.METRIC_SOLVE);
+        mMetricsOverlay.setText(getString(R.string.metrics_overlay,
+                draw.getValueAtPercentile(50) / NANOS_PER_MILLI, draw.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                solve.getValueAtPercentile(50) / NANOS_PER_MILLI, solve.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                metrics.counter(GraphLayout.METRIC_VERTICES).get(), metrics.counter(GraphLayout.METRIC_EDGES).get()));
+    }
+
+    /**
+     * Restores the graph saved by the previous run in the background, then imports the file, if any, on top of it.
+     *
+     * @param startOver whether to start over with an empty graph if the saved one can not be restored.
+     */
+    private void restoreGraph(final Uri importUri, final boolean startOver) {
+        mGraphLayout.attachJournal(mJournal, new ProgressListener() {
+            @Override
+            void onFinished(IOException error) {
+                if (error instanceof InterruptedIOException) {
+                    return;
+                }
+                if (error != null) {
+                    Log.w(TAG, "Unable to restore graph", error);
+                    if (startOver) {
+                        startOver(importUri);
+                    } else {
+                        mImportPending = false;
+                    }
+                } else if (importUri != null) {
+                    importGraph(importUri);
+                }
+            }
+        });
+    }
+
+    /**
+     * Imports an edge list or a DIMACS graph from a file or a content provider. DIMACS coordinates are picked up from
+     * the ".co" file next to a graph file, content providers give no access to it.
+     */
+    private void importGraph(Uri uri) {
+        float spacing = 2 * getResources().getDimensionPixelSize(R.dimen.vertex_size);
+        boolean file = ContentResolver.SCHEME_FILE.equals(uri.getScheme());
+        GraphParser.Input input = file ? GraphParser.input(new File(uri.getPath())) : new ContentInput(uri);
+        String name = input.getName();
+        final GraphParser parser;
+        if (name.endsWith(DIMACS_GRAPH_SUFFIX)) {
+            File coordinatesFile = file ? new File(new File(uri.getPath()).getParentFile(),
+                    name.substring(0, name.length() - DIMACS_GRAPH_SUFFIX.length()) + DIMACS_COORDINATES_SUFFIX)
+                    : null;
+            parser = GraphParser.dimacs(input, coordinatesFile != null && coordinatesFile.exists()
+                    ? GraphParser.input(coordinatesFile) : null, spacing);
+        } else {
+            parser = GraphParser.edgeList(input, spacing);
+        }
+        mGraphLayout.importGraph(parser, new ProgressListener() {
+            @Override
+            void onFinished(IOException error) {
+                if (!(error instanceof InterruptedIOException)) {
+                    mImportPending = false;
+                }
+                if (error == null && !parser.hasCoordinates()) {
+                    // Spiral the importer lays vertices out along is only a starting point.
+                    mGraphLayout.startAutoLayout();
+                } else if (error != null && !(error instanceof InterruptedIOException)) {
+                    Log.w(TAG, "Unable to import graph", error);
+                    Toast.makeText(BuildYourOwnGraphActivity.this, R.string.import_failed, Toast.LENGTH_LONG).show();
+                }
+            }
+        });
+    }
+
+    private void startOver(Uri importUri) {
+        try {
+            mJournal.delete();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to delete graph", e);
+        }
+        restoreGraph(importUri, false);
+    }
+
+    /**
+     * Graph shared by a content provider, such as a file picker. Name and size are queried up front, the size stays
+     * unknown if the provider does not tell it.
+     */
+    private final class ContentInput implements GraphParser.Input {
+        private final Uri mUri;
+        private String mName;
+        private long mLength = -1;
+
+        ContentInput(Uri uri) {
+            mUri = uri;
+            String name = uri.getLastPathSegment();
+            mName = name != null ? name : "";
+            Cursor cursor = null;
+            try {
+                cursor = getContentResolver().query(uri,
+                        new String[]{OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE}, null, null, null);
+                if (cursor != null && cursor.moveToFirst()) {
+                    if (!cursor.isNull(0)) {
+                        mName = cursor.getString(0);
+                    }
+                    if (!cursor.isNull(1)) {
+                        mLength = cursor.getLong(1);
+                    }
+                }
+            } catch (SecurityException e) {
+                // Reported once the graph is opened.
+                Log.w(TAG, "Unable to query " + uri, e);
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            InputStream input;
+            try {
+                input = getContentResolver().openInputStream(mUri);
+            } catch (SecurityException e) {
+                throw new IOException("Access denied to " + mUri, e);
+            }
+            if (input == null) {
+                throw new FileNotFoundException(mUri.toString());
+            }
+            return input;
+        }
+
+        @Override
+        public String getName() {
+            return mName;
+        }
+
+        @Override
+        public long getLength() {
+            return mLength;
+        }
+    }
+
+    /**
+     * Shows progress of an import or a restore.
+     */
+    private abstract class ProgressListener implements GraphLayout.ImportListener {
+        ProgressListener() {
+            mImportProgress.setProgress(0);
+            mImportProgress.setVisibility(View.VISIBLE);
+        }
+
+        @Override
+        public void onImportProgress(float progress) {
+            mImportProgress.setProgress((int) (progress * mImportProgress.getMax()));
+        }
+
+        @Override
+        public void onImportFinished(IOException error) {
+            mImportProgress.setVisibility(View.GONE);
+            onFinished(error);
+        }
+
+        abstract void onFinished(IOException error);
     }
 }
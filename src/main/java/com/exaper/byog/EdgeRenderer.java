@@ -0,0 +1,199 @@
+package com.exaper.byog;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import java.util.Arrays;
+
+/**
+ * Draws edges of {@link GraphLayout} in batches, regular ones and highlighted ones of every highlight level, with a
+ * single {@link Canvas#drawLines(float[], int, int, Paint)} call each. Endpoint coordinates are packed into buffers
+ * reused between frames and highlighted edges are flagged by id, so drawing a frame takes O(E) and does not allocate.
+ * Lower levels are drawn on top of higher ones.
+ * <p>
+ * While a vertex is dragged, regular edges not incident to it are drawn once into a static layer, which is drawn
+ * again only when highlighting changes. Frames then only draw the layer, incident edges and highlighted edges on top
+ * of it, which takes O(degree + path length). With hardware acceleration the whole view is redrawn each frame anyway,
+ * the dirty rectangle the view invalidates is ignored, so the layer only saves packing the edges.
+ * <p>
+ * Edges are drawn in screen coordinates of the {@link Viewport}, the ones with bounds outside of the view are skipped.
+ */
+final class EdgeRenderer {
+    private final Paint mPaint;
+    private final Viewport mViewport;
+    private final IntList mHighlightedEdges = new IntList();
+    // Paints of highlight levels.
+    private Paint[] mHighlightPaints;
+    // Highlight level plus one of edges, 0 for regular ones.
+    private int[] mHighlightLevels = new int[16];
+    // Incremented whenever an edge is highlighted or cleared.
+    private int mHighlightVersion;
+    private final LineBuffer mLines;
+    private final LineBuffer mHighlightedLines;
+    private int mDraggedVertex = -1;
+    private Bitmap mStaticLayer;
+    private Canvas mStaticLayerCanvas;
+    // Dragged vertex, edges, viewport and highlight versions static layer was drawn for.
+    private int mStaticLayerVertex = -1;
+    private int mStaticLayerVersion = -1;
+    private int mStaticLayerViewportVersion = -1;
+    private int mStaticLayerHighlightVersion = -1;
+    // Size of the screen edges are culled to.
+    private int mWidth;
+    private int mHeight;
+
+    EdgeRenderer(Paint paint, Paint[] highlightPaints, Viewport viewport) {
+        mPaint = paint;
+        mHighlightPaints = highlightPaints;
+        mViewport = viewport;
+        mLines = new LineBuffer(viewport);
+        mHighlightedLines = new LineBuffer(viewport);
+    }
+
+    void setHighlightPaints(Paint[] highlightPaints) {
+        mHighlightPaints = highlightPaints;
+    }
+
+    void clearHighlightedEdges() {
+        for (int i = 0, size = mHighlightedEdges.size(); i < size; i++) {
+            mHighlightLevels[mHighlightedEdges.get(i)] = 0;
+        }
+        mHighlightedEdges.clear();
+        mHighlightVersion++;
+    }
+
+    /**
+     * @param level index of the highlight paint. Edge highlighted at several levels is drawn at the lowest one.
+     */
+    void highlightEdge(int edge, int level) {
+        if (edge >= mHighlightLevels.length) {
+            mHighlightLevels = Arrays.copyOf(mHighlightLevels, Math.max(edge + 1, mHighlightLevels.length << 1));
+        }
+        if (mHighlightLevels[edge] == 0) {
+            mHighlightLevels[edge] = level + 1;
+            mHighlightedEdges.add(edge);
+            mHighlightVersion++;
+        } else if (mHighlightLevels[edge] > level + 1) {
+            mHighlightLevels[edge] = level + 1;
+        }
+    }
+
+    /**
+     * @param vertex vertex being dragged or -1 once dragging is over.
+     */
+    void setDraggedVertex(int vertex) {
+        mDraggedVertex = vertex;
+    }
+
+    /**
+     * Frees static layer, it is allocated again when the next drag starts.
+     */
+    void release() {
+        if (mStaticLayer != null) {
+            mStaticLayer.recycle();
+            mStaticLayer = null;
+            mStaticLayerCanvas = null;
+        }
+        mStaticLayerVertex = mStaticLayerVersion = mStaticLayerViewportVersion = mStaticLayerHighlightVersion = -1;
+    }
+
+    void draw(Canvas canvas, EdgeStore edges, VertexModel vertices, int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        if (mDraggedVertex < 0 || width <= 0 || height <= 0) {
+            drawAll(canvas, edges, vertices);
+            return;
+        }
+        if (mStaticLayer == null || mStaticLayer.getWidth() != width || mStaticLayer.getHeight() != height) {
+            release();
+            mStaticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mStaticLayerCanvas = new Canvas(mStaticLayer);
+        }
+        if (mStaticLayerVertex != mDraggedVertex || mStaticLayerVersion != edges.getVersion()
+                || mStaticLayerViewportVersion != mViewport.getVersion()
+                || mStaticLayerHighlightVersion != mHighlightVersion) {
+            drawStaticLayer(edges, vertices);
+        }
+        canvas.drawBitmap(mStaticLayer, 0, 0, null);
+        drawDynamic(canvas, edges, vertices);
+    }
+
+    private void drawAll(Canvas canvas, EdgeStore edges, VertexModel vertices) {
+        LineBuffer lines = mLines;
+        clear(lines, edges.getEdgeCount());
+        for (int edge = 0, edgeIdCount = edges.getEdgeIdCount(); edge < edgeIdCount; edge++) {
+            if (edges.isEdge(edge) && (edge >= mHighlightLevels.length || mHighlightLevels[edge] == 0)) {
+                lines.add(vertices, edges.getSource(edge), edges.getTarget(edge));
+            }
+        }
+        drawLines(canvas, lines, mPaint);
+        drawHighlighted(canvas, edges, vertices);
+    }
+
+    /**
+     * Draws regular edges not incident to the dragged vertex. Highlighted ones are left out as in
+     * {@link #drawAll}, translucent highlight paints drawn over them would blend with the regular paint.
+     */
+    private void drawStaticLayer(EdgeStore edges, VertexModel vertices) {
+        LineBuffer lines = mLines;
+        clear(lines, edges.getEdgeCount());
+        for (int edge = 0, edgeIdCount = edges.getEdgeIdCount(); edge < edgeIdCount; edge++) {
+            if (edges.isEdge(edge) && edges.getSource(edge) != mDraggedVertex
+                    && edges.getTarget(edge) != mDraggedVertex
+                    && (edge >= mHighlightLevels.length || mHighlightLevels[edge] == 0)) {
+                lines.add(vertices, edges.getSource(edge), edges.getTarget(edge));
+            }
+        }
+        mStaticLayer.eraseColor(Color.TRANSPARENT);
+        drawLines(mStaticLayerCanvas, lines, mPaint);
+        mStaticLayerVertex = mDraggedVertex;
+        mStaticLayerVersion = edges.getVersion();
+        mStaticLayerViewportVersion = mViewport.getVersion();
+        mStaticLayerHighlightVersion = mHighlightVersion;
+    }
+
+    private void drawDynamic(Canvas canvas, EdgeStore edges, VertexModel vertices) {
+        LineBuffer lines = mLines;
+        int vertex = mDraggedVertex;
+        int degree = edges.getDegree(vertex);
+        clear(lines, degree);
+        for (int i = 0; i < degree; i++) {
+            int edge = edges.getIncidentEdge(vertex, i);
+            if (edge >= mHighlightLevels.length || mHighlightLevels[edge] == 0) {
+                lines.add(vertices, edges.getSource(edge), edges.getTarget(edge));
+            }
+        }
+        drawLines(canvas, lines, mPaint);
+        drawHighlighted(canvas, edges, vertices);
+    }
+
+    /**
+     * Draws highlighted edges level by level, from the highest one. Edges of levels without a paint are not drawn.
+     */
+    private void drawHighlighted(Canvas canvas, EdgeStore edges, VertexModel vertices) {
+        LineBuffer highlightedLines = mHighlightedLines;
+        int size = mHighlightedEdges.size();
+        for (int level = mHighlightPaints.length; level > 0; level--) {
+            clear(highlightedLines, size);
+            for (int i = 0; i < size; i++) {
+                int edge = mHighlightedEdges.get(i);
+                if (mHighlightLevels[edge] == level && edges.isEdge(edge)) {
+                    highlightedLines.add(vertices, edges.getSource(edge), edges.getTarget(edge));
+                }
+            }
+            drawLines(canvas, highlightedLines, mHighlightPaints[level - 1]);
+        }
+    }
+
+    private void clear(LineBuffer lines, int capacity) {
+        lines.clear(capacity, mWidth, mHeight, mPaint.getStrokeWidth());
+    }
+
+    private static void drawLines(Canvas canvas, LineBuffer lines, Paint paint) {
+        if (lines.getLineCount() > 0) {
+            canvas.drawLines(lines.getLines(), 0, lines.getLineCount() << 2, paint);
+        }
+    }
+}
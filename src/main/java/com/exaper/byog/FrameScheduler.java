@@ -0,0 +1,108 @@
+package com.exaper.byog;
+
+import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Runs a task on the main thread at the next frame, once no matter how many times it was scheduled meanwhile. Frames
+ * come from {@link Choreographer} vsync on Jelly Bean and later, and from the animation frame delay before.
+ */
+abstract class FrameScheduler {
+    private final Runnable mTask;
+    private boolean mScheduled;
+
+    FrameScheduler(Runnable task) {
+        mTask = task;
+    }
+
+    static FrameScheduler create(Runnable task) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return new ChoreographerFrameScheduler(task);
+        }
+        return new HandlerFrameScheduler(task);
+    }
+
+    void schedule() {
+        if (!mScheduled) {
+            mScheduled = true;
+            post();
+        }
+    }
+
+    void unschedule() {
+        if (mScheduled) {
+            mScheduled = false;
+            remove();
+        }
+    }
+
+    /**
+     * Runs the scheduled task right away instead of at the next frame.
+     */
+    void runNow() {
+        if (mScheduled) {
+            unschedule();
+            mTask.run();
+        }
+    }
+
+    abstract void post();
+
+    abstract void remove();
+
+    void onFrame() {
+        mScheduled = false;
+        mTask.run();
+    }
+
+    // Loaded on Jelly Bean and later only.
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class ChoreographerFrameScheduler extends FrameScheduler
+            implements Choreographer.FrameCallback {
+        ChoreographerFrameScheduler(Runnable task) {
+            super(task);
+        }
+
+        @Override
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        void remove() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onFrame();
+        }
+    }
+
+    private static final class HandlerFrameScheduler extends FrameScheduler implements Runnable {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        HandlerFrameScheduler(Runnable task) {
+            super(task);
+        }
+
+        @Override
+        void post() {
+            mHandler.postDelayed(this, ValueAnimator.getFrameDelay());
+        }
+
+        @Override
+        void remove() {
+            mHandler.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            onFrame();
+        }
+    }
+}
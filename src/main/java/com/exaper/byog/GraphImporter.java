@@ -0,0 +1,237 @@
+package com.exaper.byog;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Runs a {@link GraphSource}, a file parser or a saved graph reader, on a background thread and hands vertices and
+ * edges over to the main thread in batches. Batches are recycled: the source waits while all of them are queued on
+ * the main thread, so a graph of any size takes a fixed amount of memory in flight and never gets ahead of what the
+ * main thread can apply.
+ */
+public class GraphImporter {
+    public interface Callback {
+        /**
+         * @param vertexCount number of vertices the source declares or -1 if it is not known upfront.
+         */
+        void onImportStarted(int vertexCount);
+
+        /**
+         * Batch is recycled once this returns.
+         */
+        void onBatchImported(Batch batch);
+
+        /**
+         * @param error failure which stopped the import or null if all of the graph was imported.
+         */
+        void onImportFinished(IOException error);
+    }
+
+    /**
+     * Vertices and edges parsed since the previous batch. Vertices continue ids of the previous batch, edges refer to
+     * vertices of this or earlier batches by ids.
+     */
+    public static final class Batch {
+        private final int[] mVertices = new int[BATCH_SIZE];
+        private final int[] mTypes = new int[BATCH_SIZE];
+        private final float[] mCoordinates = new float[BATCH_SIZE << 1];
+        private final int[] mEdges = new int[BATCH_SIZE << 1];
+        private int mVertexCount;
+        private int mEdgeCount;
+        private float mProgress;
+
+        public int getVertexCount() {
+            return mVertexCount;
+        }
+
+        public int getVertex(int index) {
+            return mVertices[index];
+        }
+
+        public int getType(int index) {
+            return mTypes[index];
+        }
+
+        public float getX(int index) {
+            return mCoordinates[index << 1];
+        }
+
+        public float getY(int index) {
+            return mCoordinates[(index << 1) + 1];
+        }
+
+        public int getEdgeCount() {
+            return mEdgeCount;
+        }
+
+        public int getEdgeSource(int index) {
+            return mEdges[index << 1];
+        }
+
+        public int getEdgeTarget(int index) {
+            return mEdges[(index << 1) + 1];
+        }
+
+        /**
+         * @return fraction of the graph imported with this batch.
+         */
+        public float getProgress() {
+            return mProgress;
+        }
+
+        private boolean isFull() {
+            return mVertexCount == BATCH_SIZE || mEdgeCount == BATCH_SIZE;
+        }
+    }
+
+    // Large enough to amortize a message per batch, small enough to be applied within a frame.
+    private static final int BATCH_SIZE = 4096;
+    private static final int BATCH_COUNT = 3;
+
+    private final Callback mCallback;
+    private final Handler mMainHandler;
+    private Worker mWorker;
+
+    public GraphImporter(Callback callback) {
+        mCallback = callback;
+        mMainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    public boolean isImporting() {
+        return mWorker != null;
+    }
+
+    /**
+     * Cancels the import in progress, if any, and starts importing from the source.
+     */
+    public void start(GraphSource source) {
+        cancel();
+        mWorker = new Worker(source);
+        mWorker.start();
+    }
+
+    /**
+     * Cancels the import in progress. No callbacks are delivered for it afterwards.
+     */
+    public void cancel() {
+        if (mWorker != null) {
+            mWorker.interrupt();
+            mWorker = null;
+        }
+    }
+
+    private void publish(final Worker worker, final Runnable runnable) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Drop results of the worker which was cancelled meanwhile.
+                if (mWorker == worker) {
+                    runnable.run();
+                }
+            }
+        });
+    }
+
+    private final class Worker extends Thread implements GraphParser.Sink {
+        private final GraphSource mSource;
+        private final BlockingQueue<Batch> mFreeBatches = new ArrayBlockingQueue<>(BATCH_COUNT);
+        private Batch mBatch;
+
+        Worker(GraphSource source) {
+            super("GraphImporter");
+            mSource = source;
+            for (int i = 0; i < BATCH_COUNT; i++) {
+                mFreeBatches.add(new Batch());
+            }
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            IOException error = null;
+            try {
+                mSource.parse(this);
+                if (mBatch == null) {
+                    obtainBatch();
+                }
+                sendBatch();
+            } catch (IOException e) {
+                error = e;
+            }
+            final IOException finalError = error;
+            publish(this, new Runnable() {
+                @Override
+                public void run() {
+                    mWorker = null;
+                    mCallback.onImportFinished(finalError);
+                }
+            });
+        }
+
+        @Override
+        public void begin(final int vertexCount) {
+            publish(this, new Runnable() {
+                @Override
+                public void run() {
+                    mCallback.onImportStarted(vertexCount);
+                }
+            });
+        }
+
+        @Override
+        public void addVertex(int vertex, int type, float x, float y) throws IOException {
+            Batch batch = obtainBatch();
+            batch.mVertices[batch.mVertexCount] = vertex;
+            batch.mTypes[batch.mVertexCount] = type;
+            batch.mCoordinates[batch.mVertexCount << 1] = x;
+            batch.mCoordinates[(batch.mVertexCount << 1) + 1] = y;
+            batch.mVertexCount++;
+        }
+
+        @Override
+        public void addEdge(int vertex1, int vertex2) throws IOException {
+            Batch batch = obtainBatch();
+            batch.mEdges[batch.mEdgeCount << 1] = vertex1;
+            batch.mEdges[(batch.mEdgeCount << 1) + 1] = vertex2;
+            batch.mEdgeCount++;
+        }
+
+        /**
+         * @return batch with room for a vertex and an edge, the full one is sent to the main thread.
+         */
+        private Batch obtainBatch() throws IOException {
+            if (mBatch != null && mBatch.isFull()) {
+                sendBatch();
+            }
+            if (mBatch == null) {
+                try {
+                    mBatch = mFreeBatches.take();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("Import cancelled");
+                }
+                mBatch.mVertexCount = 0;
+                mBatch.mEdgeCount = 0;
+            }
+            return mBatch;
+        }
+
+        private void sendBatch() {
+            final Batch batch = mBatch;
+            mBatch = null;
+            batch.mProgress = mSource.getProgress();
+            publish(this, new Runnable() {
+                @Override
+                public void run() {
+                    mCallback.onBatchImported(batch);
+                    mFreeBatches.add(batch);
+                }
+            });
+        }
+    }
+}
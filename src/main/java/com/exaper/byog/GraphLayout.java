@@ -7,35 +7,158 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.view.HapticFeedbackConstants;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 
-import org.jgrapht.alg.DijkstraShortestPath;
-import org.jgrapht.graph.SimpleWeightedGraph;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Graph editor. Vertices are kept in a flat {@link VertexModel}. By default every vertex is shown by a
+ * {@link VertexView} child; in virtual rendering mode the layout has no children and draws visible vertices itself,
+ * which scales to graphs far larger than the view hierarchy can handle.
+ * <p>
+ * Vertex positions are world coordinates shown through a {@link Viewport}. Dragging empty space pans it and pinching
+ * zooms it, vertices keep their size on screen.
+ * <p>
+ * Large external graphs are imported in the background with {@link #importGraph}, the graph is shown as it grows.
+ * Graphs saved to a {@link GraphJournal} are restored the same way by {@link #attachJournal}.
+ * Graphs are built in code through an {@link Edit}. {@link #startAutoLayout()} arranges vertices with a force-directed
+ * layout.
+ * <p>
+ * Latencies of touch handling, layout, drawing, path updates and merges are recorded in {@link #getMetrics()}.
+ */
 public class GraphLayout extends ViewGroup {
+    public interface ImportListener {
+        void onImportProgress(float progress);
+
+        /**
+         * @param error failure which stopped the import or null if all of the file was imported.
+         */
+        void onImportFinished(IOException error);
+    }
+
+    private static final String TAG = "GraphLayout";
+
+    public static final String METRIC_TOUCH = "touch";
+    public static final String METRIC_LAYOUT = "layout";
+    public static final String METRIC_DRAW = "draw";
+    public static final String METRIC_UPDATE_SHORTEST_PATH = "update_shortest_path";
+    public static final String METRIC_MERGE_VERTICES = "merge_vertices";
+    public static final String METRIC_VERTICES = "vertices";
+    public static final String METRIC_EDGES = "edges";
+    public static final String METRIC_ALLOCATIONS = "allocations";
+    // Values of pathSearch attribute.
+    private static final int PATH_SEARCH_INCREMENTAL = 0;
+    private static final int PATH_SEARCH_DIJKSTRA = 1;
+    private static final int PATH_SEARCH_A_STAR = 2;
+    private static final int PATH_SEARCH_BIDIRECTIONAL_A_STAR = 3;
+    private static final int PATH_SEARCH_JGRAPHT_DIJKSTRA = 4;
+    // Values of vertexRendering attribute.
+    private static final int VERTEX_RENDERING_VIEWS = 0;
+    private static final int VERTEX_RENDERING_VIRTUAL = 1;
+    // Restored and loaded graphs with more vertices are drawn in virtual rendering mode, a view per vertex would take
+    // too much memory and layout time.
+    private static final int MAX_VERTEX_VIEWS = 500;
     private static final long LONG_PRESS_TIMEOUT = ViewConfiguration.getLongPressTimeout();
     private final Rect mTempRect = new Rect();
+    private final Rect mDirtyRect = new Rect();
     private final Paint mConnectorPaint;
     private final Paint mShortestPathConnectorPaint;
+    private final int mAlternativePathColor;
+    private final EdgeRenderer mEdgeRenderer;
+    // Draws vertices in virtual rendering mode, null when vertices are VertexView children. Imports switch to it.
+    private VertexRenderer mVertexRenderer;
+    private final PathSolver mPathSolver;
+    private final Viewport mViewport = new Viewport();
+    private final ScaleGestureDetector mScaleGestureDetector;
+    private final VertexModel mVertexModel = new VertexModel();
+    // Vertex centers, keyed by vertex ids.
+    private final SpatialIndex mVertexIndex;
+    private final IntList mQueryResult = new IntList();
+    // Vertices inflated from layout, they get positions at the first layout pass.
+    private final IntList mUnplacedVertices = new IntList();
+    // Views keyed by vertex ids, unused in virtual rendering mode.
+    private VertexView[] mVertexViews = new VertexView[16];
+    // Views of START and END vertices removed by a restore, keyed by type. They are bound to the vertices taking
+    // their place.
+    private final VertexView[] mSpareViews = new VertexView[VertexModel.TYPE_END + 1];
+    private int mVertexSize;
     // Used to differentiate move from long press. Squared distance user has to move their finger to confirm
     // move vs long press.
     private final int mTouchSlop;
-    private VertexView mTouchDownView;
+    private int mTouchDownVertex = -1;
     private int mTouchDownX;
     private int mTouchDownY;
-    private CheckForLongPress mPendingCheckForLongPress;
-    private List<Connector> mConnectors;
-    private Connector mPendingConnector;
-    private List<Edge> mShortestPath;
+    // Position of the touched vertex at touch down.
+    private float mTouchDownVertexX;
+    private float mTouchDownVertexY;
+    private final CheckForLongPress mCheckForLongPress = new CheckForLongPress();
+    private boolean mWaitingForLongPress;
+    // Moves are coalesced and applied once per frame, at the latest touch position.
+    private final FrameScheduler mMoveScheduler;
+    // Checks that moves and frames of a gesture do not allocate in debuggable builds.
+    private final AllocationCounter mAllocationCounter;
+    private final Metrics mMetrics = new Metrics();
+    private final LatencyHistogram mTouchLatency;
+    private final LatencyHistogram mLayoutLatency;
+    private final LatencyHistogram mDrawLatency;
+    private final LatencyHistogram mUpdateShortestPathLatency;
+    private final LatencyHistogram mMergeVerticesLatency;
+    private final AtomicLong mVertexCounter;
+    private final AtomicLong mEdgeCounter;
+    private float mMoveX;
+    private float mMoveY;
+    // Set while a single finger drags empty space, last touch position is kept to pan by deltas.
+    private boolean mPanning;
+    private float mLastPanX;
+    private float mLastPanY;
+    // Connectors between vertex ids.
+    private final EdgeStore mEdges;
+    // Components of the graph, path is not searched for while START and END are in different ones.
+    private final Connectivity mConnectivity;
+    // Vertex the connector being added starts at. It ends at the touched vertex and becomes an edge once that one is
+    // dropped.
+    private int mPendingConnectorVertex = -1;
+    private int mStartVertex = -1;
+    private int mEndVertex = -1;
+    // Vertex ids along the shortest path found for the structure version, edges are highlighted while it is current.
+    private int[] mShortestPath;
+    // Vertex ids along the next shortest paths found along with it.
+    private int[][] mAlternativePaths;
+    private int mAlternativePathCount;
+    private int mShortestPathStructureVersion = -1;
+    private int mHighlightedEdgesVersion = -1;
+    private int mSnapshotStructureVersion = -1;
+    private int mSnapshotVertexCount;
+    private int[] mSnapshotEdges;
+    private int mSnapshotStart;
+    private int mSnapshotEnd;
+    // Records edits once attached, null otherwise.
+    private GraphJournal mJournal;
+    private final JournalCompactor mJournalCompactor;
+    private final GraphImporter mImporter;
+    private ImportListener mImportListener;
+    private float mImportSpacing;
+    // Journal is detached while importing, imported graph is compacted into it at once.
+    private GraphJournal mSuspendedJournal;
+    // Journal the graph is being restored from, it is attached once the graph is restored.
+    private GraphJournal mRestoringJournal;
+    // Vertex ids keyed by dense ids of the imported file. Restored vertices keep ids of the journal.
+    private final IntList mImportedVertices = new IntList();
+    // Open edit, if any.
+    private Edit mEdit;
+    // While it runs, frames only move vertices in the model. Spatial index and views off the screen are updated once
+    // it finishes or is touched.
+    private final AutoLayout mAutoLayout;
 
     public GraphLayout(Context context) {
         this(context, null);
@@ -54,22 +177,104 @@ public class GraphLayout extends ViewGroup {
         mShortestPathConnectorPaint = new Paint(mConnectorPaint);
         mShortestPathConnectorPaint.setColor(typedArray.getColor(R.styleable.GraphLayout_shortestPathEdgeColor,
                 mShortestPathConnectorPaint.getColor()));
+        mAlternativePathColor = typedArray.getColor(R.styleable.GraphLayout_alternativePathEdgeColor,
+                mShortestPathConnectorPaint.getColor());
+        mEdgeRenderer = new EdgeRenderer(mConnectorPaint, new Paint[]{mShortestPathConnectorPaint}, mViewport);
+        int alternativePathCount = typedArray.getInt(R.styleable.GraphLayout_alternativePathCount, 0);
+        int pathSearch = typedArray.getInt(R.styleable.GraphLayout_pathSearch, PATH_SEARCH_INCREMENTAL);
+        int vertexRendering = typedArray.getInt(R.styleable.GraphLayout_vertexRendering, VERTEX_RENDERING_VIEWS);
         typedArray.recycle();
         setWillNotDraw(false);
-        mConnectors = new ArrayList<>();
+        if (vertexRendering == VERTEX_RENDERING_VIRTUAL) {
+            mVertexRenderer = new VertexRenderer(context, mViewport);
+            mVertexSize = mVertexRenderer.getSize();
+        } else {
+            mVertexRenderer = null;
+        }
+        mEdges = new EdgeStore();
+        mJournalCompactor = new JournalCompactor(mVertexModel, mEdges);
+        mConnectivity = new Connectivity(mVertexModel, mEdges);
+        mVertexIndex = new SpatialIndex(getResources().getDimensionPixelSize(R.dimen.vertex_size));
+        mTouchLatency = mMetrics.histogram(METRIC_TOUCH);
+        mLayoutLatency = mMetrics.histogram(METRIC_LAYOUT);
+        mDrawLatency = mMetrics.histogram(METRIC_DRAW);
+        mUpdateShortestPathLatency = mMetrics.histogram(METRIC_UPDATE_SHORTEST_PATH);
+        mMergeVerticesLatency = mMetrics.histogram(METRIC_MERGE_VERTICES);
+        mVertexCounter = mMetrics.counter(METRIC_VERTICES);
+        mEdgeCounter = mMetrics.counter(METRIC_EDGES);
+        mPathSolver = new PathSolver(new PathSolver.Callback() {
+            @Override
+            public void onShortestPathSolved(int structureVersion, int[] shortestPath, int[][] alternativePaths) {
+                // Result for outdated structure, the one for the current structure is on its way.
+                if (structureVersion != mSnapshotStructureVersion) {
+                    return;
+                }
+                // Solver hands unchanged paths over as the same arrays, highlighting stays as it is.
+                if (shortestPath == mShortestPath && alternativePaths == mAlternativePaths
+                        && structureVersion == mShortestPathStructureVersion) {
+                    return;
+                }
+                mShortestPath = shortestPath;
+                mAlternativePaths = alternativePaths;
+                mShortestPathStructureVersion = structureVersion;
+                mHighlightedEdgesVersion = -1;
+                invalidate();
+            }
+        }, mMetrics);
+        setPathSearch(createPathSearch(pathSearch));
+        setAlternativePathCount(alternativePathCount);
+        mImporter = new GraphImporter(new GraphImporter.Callback() {
+            @Override
+            public void onImportStarted(int vertexCount) {
+                startImportedGraph(vertexCount);
+            }
+
+            @Override
+            public void onBatchImported(GraphImporter.Batch batch) {
+                applyImportedBatch(batch);
+            }
+
+            @Override
+            public void onImportFinished(IOException error) {
+                finishImport(error);
+            }
+        });
         mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+        mScaleGestureDetector = new ScaleGestureDetector(context, new ScaleListener());
+        mAutoLayout = new AutoLayout(new AutoLayout.Callback() {
+            @Override
+            public float[] onLayoutFrame(float[] coordinates, boolean converged) {
+                return applyLayoutFrame(coordinates, converged);
+            }
+        });
+        mAllocationCounter = new AllocationCounter(context, mMetrics.counter(METRIC_ALLOCATIONS));
+        mMoveScheduler = FrameScheduler.create(new Runnable() {
+            @Override
+            public void run() {
+                applyMove();
+            }
+        });
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
+        long startTime = System.nanoTime();
         boolean handled;
+        mScaleGestureDetector.onTouchEvent(event);
         final int actionMasked = event.getActionMasked();
         switch (actionMasked) {
             case MotionEvent.ACTION_DOWN:
                 handled = onTouchDown((int) event.getX(), (int) event.getY());
                 break;
+            case MotionEvent.ACTION_POINTER_DOWN:
+                // Second finger turns any gesture into zooming.
+                onTouchCancel(event);
+                handled = true;
+                break;
             case MotionEvent.ACTION_MOVE:
-                handled = onTouchMove(event);
+                mAllocationCounter.beginSection();
+                handled = mScaleGestureDetector.isInProgress() || onTouchMove(event);
+                mAllocationCounter.endSection();
                 break;
             case MotionEvent.ACTION_UP:
                 handled = onTouchUp(event);
@@ -81,327 +286,1355 @@ public class GraphLayout extends ViewGroup {
                 handled = false;
 
         }
+        mTouchLatency.record(System.nanoTime() - startTime);
         return handled;
     }
 
+    /**
+     * @param pathSearch search used to find shortest path or null to maintain shortest path tree incrementally
+     *                   (default).
+     */
+    public void setPathSearch(PathSearch pathSearch) {
+        mPathSolver.setPathSearch(pathSearch);
+    }
+
+    /**
+     * Highlights up to count next shortest loopless paths between START and END besides the shortest one, each
+     * fainter than the previous. They are found in the background along with the shortest path.
+     */
+    public void setAlternativePathCount(int count) {
+        if (count == mAlternativePathCount) {
+            return;
+        }
+        mAlternativePathCount = count;
+        Paint[] paints = new Paint[count + 1];
+        paints[0] = mShortestPathConnectorPaint;
+        for (int i = 1; i <= count; i++) {
+            paints[i] = new Paint(mShortestPathConnectorPaint);
+            paints[i].setColor(mAlternativePathColor);
+            paints[i].setAlpha(Color.alpha(mAlternativePathColor) * (count + 1 - i) / (count + 1));
+        }
+        mEdgeRenderer.setHighlightPaints(paints);
+        mPathSolver.setAlternativePathCount(count);
+        mHighlightedEdgesVersion = -1;
+        invalidate();
+    }
+
+    /**
+     * @return id of the START vertex or -1 if there is none.
+     */
+    public int getStartVertex() {
+        return mStartVertex;
+    }
+
+    /**
+     * @return id of the END vertex or -1 if there is none.
+     */
+    public int getEndVertex() {
+        return mEndVertex;
+    }
+
+    /**
+     * @return number of connected components, isolated vertices included.
+     */
+    public int getComponentCount() {
+        return mConnectivity.getComponentCount();
+    }
+
+    /**
+     * @return latencies in nanoseconds of {@link #METRIC_TOUCH touch handling}, {@link #METRIC_LAYOUT layout},
+     * {@link #METRIC_DRAW drawing}, {@link #METRIC_UPDATE_SHORTEST_PATH path updates},
+     * {@link #METRIC_MERGE_VERTICES merges} and {@link PathSolver#METRIC_SOLVE background solves}, plus counters of
+     * vertices, edges, vertices settled by path searches and steady state gesture allocations in debuggable builds.
+     */
+    public Metrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Copies the current graph for headless queries such as {@link BatchRouter}, which can then run off the main
+     * thread while editing goes on. Vertex ids serve as snapshot indices, ids of removed vertices are left isolated.
+     */
+    public GraphSnapshot takeSnapshot() {
+        int vertexCount = mVertexModel.getIdCount();
+        GraphSnapshot snapshot = new GraphSnapshot(mEdges.getVersion(), collectEdges(), new float[vertexCount << 1],
+                mStartVertex, mEndVertex);
+        for (int v = 0; v < vertexCount; v++) {
+            snapshot.setPosition(v, mVertexModel.getX(v), mVertexModel.getY(v));
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return number of vertices connected to the vertex, itself included.
+     */
+    public int getComponentSize(int vertex) {
+        return mConnectivity.getComponentSize(vertex);
+    }
+
+    /**
+     * Starts a batch of changes to the graph. Changes are applied to the model right away, while spatial index
+     * updates, layout, redraw and path search are done once, on {@link Edit#commit()}. Gesture in progress is
+     * cancelled.
+     *
+     * @throws IllegalStateException if another edit is open or a graph is being imported.
+     */
+    public Edit beginEdit() {
+        if (mEdit != null) {
+            throw new IllegalStateException("Edit is in progress already");
+        }
+        if (mImporter.isImporting()) {
+            throw new IllegalStateException("Graph is being imported");
+        }
+        stopAutoLayout();
+        if (mTouchDownVertex >= 0 || mPanning) {
+            onTouchCancel(null);
+        }
+        mEdit = new Edit();
+        return mEdit;
+    }
+
+    /**
+     * Starts moving vertices towards a force-directed layout, see {@link ForceLayout}. Layout is computed in the
+     * background and vertices are animated frame by frame until it converges. Touching a vertex, editing, loading or
+     * importing a graph stops it.
+     *
+     * @throws IllegalStateException if a graph is being imported.
+     */
+    public void startAutoLayout() {
+        if (mImporter.isImporting()) {
+            throw new IllegalStateException("Graph is being imported");
+        }
+        if (mTouchDownVertex >= 0) {
+            onTouchCancel(null);
+        }
+        int[] vertices = new int[mVertexModel.size()];
+        int[] denseVertices = new int[mVertexModel.getIdCount()];
+        float[] coordinates = new float[vertices.length << 1];
+        for (int vertex = 0, i = 0, idCount = mVertexModel.getIdCount(); vertex < idCount; vertex++) {
+            if (mVertexModel.contains(vertex)) {
+                coordinates[i << 1] = mVertexModel.getX(vertex);
+                coordinates[(i << 1) + 1] = mVertexModel.getY(vertex);
+                denseVertices[vertex] = i;
+                vertices[i++] = vertex;
+            }
+        }
+        int[] edges = new int[mEdges.getEdgeCount() << 1];
+        for (int edge = 0, i = 0, edgeIdCount = mEdges.getEdgeIdCount(); edge < edgeIdCount; edge++) {
+            if (mEdges.isEdge(edge)) {
+                edges[i++] = denseVertices[mEdges.getSource(edge)];
+                edges[i++] = denseVertices[mEdges.getTarget(edge)];
+            }
+        }
+        float edgeLength = 2 * getResources().getDimensionPixelSize(R.dimen.vertex_size);
+        mAutoLayout.start(new ForceLayout(coordinates, edges, edgeLength), vertices, mVertexModel.getIdCount());
+    }
+
+    /**
+     * Stops the auto layout in progress, if any, vertices stay where they are.
+     */
+    public void stopAutoLayout() {
+        if (mAutoLayout.isRunning()) {
+            mAutoLayout.stop();
+            finishAutoLayout();
+        }
+    }
+
+    public boolean isAutoLayoutRunning() {
+        return mAutoLayout.isRunning();
+    }
+
+    /**
+     * Writes the graph to the file in {@link GraphFile} format.
+     */
+    public void saveGraph(File file) throws IOException {
+        GraphFile.write(file, mVertexModel, mEdges);
+    }
+
+    /**
+     * Replaces the graph with the one from the {@link GraphFile}. START and END vertices of the file take place of the
+     * ones of this layout, if there are any.
+     *
+     * @throws IOException if file can not be read or is not a valid graph file, graph is left intact then.
+     */
+    public void loadGraph(File file) throws IOException {
+        cancelImport();
+        stopAutoLayout();
+        GraphFile graph = GraphFile.map(file);
+        GraphJournal journal = mJournal;
+        mJournal = null;
+        try {
+            replaceGraph(graph);
+        } finally {
+            mJournal = journal;
+        }
+        if (mJournal != null) {
+            mJournal.compact(mVertexModel, mEdges);
+        }
+        onGraphReplaced();
+    }
+
+    /**
+     * Restores the graph from the journal snapshot and records made after it, then records every following edit to
+     * the journal. Like an import, the graph is read in the background and built batch by batch with editing
+     * suspended. START and END vertices of the saved graph take place of the ones of this layout. Vertices keep ids
+     * of the journal, so that it resumes recording without a compaction. Graphs of more than a few hundred vertices
+     * are drawn in virtual rendering mode.
+     *
+     * @param listener notified on the main thread about progress and completion. The journal is attached only if the
+     *                 graph was restored in full.
+     */
+    public void attachJournal(GraphJournal journal, ImportListener listener) {
+        cancelImport();
+        stopAutoLayout();
+        mPendingConnectorVertex = -1;
+        completeTouchHandling();
+        mJournal = null;
+        removeAllVertices();
+        mRestoringJournal = journal;
+        mImportedVertices.clear();
+        mImportListener = listener;
+        mImporter.start(new JournalReader(journal));
+        onGraphReplaced();
+    }
+
+    /**
+     * Replaces the graph with the one read by the parser, START and END vertices are kept. Parsing runs in the
+     * background and the graph is built and shown batch by batch, editing is suspended meanwhile but panning and
+     * zooming are not. The viewport is centered on the imported graph. Vertices are drawn in virtual rendering mode
+     * from then on, a view per imported vertex would not fit in memory.
+     *
+     * @param listener notified on the main thread about progress and completion.
+     */
+    public void importGraph(GraphParser parser, ImportListener listener) {
+        cancelImport();
+        stopAutoLayout();
+        mPendingConnectorVertex = -1;
+        completeTouchHandling();
+        mSuspendedJournal = mJournal;
+        mJournal = null;
+        clearGraph();
+        switchToVirtualRendering();
+        mImportedVertices.clear();
+        mImportListener = listener;
+        mImportSpacing = parser.getSpacing();
+        mImporter.start(parser);
+        onGraphReplaced();
+    }
+
+    /**
+     * Stops the import in progress, if any, keeping what has been imported so far. Listener is notified with
+     * {@link InterruptedIOException}.
+     */
+    public void cancelImport() {
+        if (mImporter.isImporting()) {
+            mImporter.cancel();
+            finishImport(new InterruptedIOException("Import cancelled"));
+        }
+    }
+
+    private void replaceGraph(GraphFile graph) throws IOException {
+        int vertexCount = graph.getVertexCount();
+        int maxId = -1;
+        for (int row = 0; row < vertexCount; row++) {
+            int id = graph.getId(row), type = graph.getType(row);
+            if (id < 0) {
+                throw new IOException("Vertex " + row + " has invalid id " + id);
+            }
+            if (type < VertexModel.TYPE_INTERMEDIATE || type > VertexModel.TYPE_END) {
+                throw new IOException("Vertex " + id + " has unknown type " + type);
+            }
+            maxId = Math.max(maxId, id);
+        }
+        int[] vertices = new int[maxId + 1];
+        Arrays.fill(vertices, -1);
+        for (int row = 0; row < vertexCount; row++) {
+            int id = graph.getId(row);
+            if (vertices[id] >= 0) {
+                throw new IOException("Duplicate vertex " + id);
+            }
+            vertices[id] = row;
+        }
+        for (int edge = 0, edgeCount = graph.getEdgeCount(); edge < edgeCount; edge++) {
+            int source = graph.getEdgeSource(edge), target = graph.getEdgeTarget(edge);
+            if (source < 0 || source > maxId || vertices[source] < 0 || target < 0 || target > maxId
+                    || vertices[target] < 0) {
+                throw new IOException("Edge " + edge + " refers to unknown vertex");
+            }
+        }
+
+        mPendingConnectorVertex = -1;
+        completeTouchHandling();
+        clearGraph();
+        if (vertexCount > MAX_VERTEX_VIEWS) {
+            switchToVirtualRendering();
+        }
+        int start = mStartVertex, end = mEndVertex;
+        for (int row = 0; row < vertexCount; row++) {
+            int type = graph.getType(row);
+            float x = graph.getX(row), y = graph.getY(row);
+            int vertex;
+            if (type == VertexModel.TYPE_START && start >= 0) {
+                vertex = start;
+                start = -1;
+            } else if (type == VertexModel.TYPE_END && end >= 0) {
+                vertex = end;
+                end = -1;
+            } else {
+                vertex = addVertex(type, x, y);
+            }
+            moveVertex(vertex, x, y);
+            markPlaced(vertex);
+            vertices[graph.getId(row)] = vertex;
+        }
+        for (int edge = 0, edgeCount = graph.getEdgeCount(); edge < edgeCount; edge++) {
+            addEdge(vertices[graph.getEdgeSource(edge)], vertices[graph.getEdgeTarget(edge)]);
+        }
+    }
+
+    /**
+     * Shows the imported graph or, for a restored one, switches to virtual rendering mode if it is large.
+     */
+    private void startImportedGraph(int vertexCount) {
+        if (mRestoringJournal == null) {
+            showImportedGraph(vertexCount);
+        } else if (vertexCount > MAX_VERTEX_VIEWS) {
+            switchToVirtualRendering();
+        }
+    }
+
+    /**
+     * Centers the viewport on the imported graph and, if its size is known, zooms out to fit it.
+     */
+    private void showImportedGraph(int vertexCount) {
+        int width = getWidth(), height = getHeight();
+        if (vertexCount > 0 && width > 0 && height > 0) {
+            // Imported vertices take about spacing x spacing each, with some margin around.
+            float extent = 1.2f * mImportSpacing * (float) Math.sqrt(vertexCount);
+            mViewport.zoom(Math.min(width, height) / extent / mViewport.getScale(), width / 2f, height / 2f);
+        }
+        mViewport.pan(width / 2f - mViewport.toScreenX(0), height / 2f - mViewport.toScreenY(0));
+        onViewportChanged();
+    }
+
+    private void applyImportedBatch(GraphImporter.Batch batch) {
+        boolean restoring = mRestoringJournal != null;
+        for (int i = 0, vertexCount = batch.getVertexCount(); i < vertexCount; i++) {
+            if (restoring) {
+                restoreVertex(batch.getVertex(i), batch.getType(i), batch.getX(i), batch.getY(i));
+            } else {
+                mImportedVertices.add(addVertex(batch.getType(i), batch.getX(i), batch.getY(i)));
+            }
+        }
+        for (int i = 0, edgeCount = batch.getEdgeCount(); i < edgeCount; i++) {
+            int source = batch.getEdgeSource(i), target = batch.getEdgeTarget(i);
+            if (restoring) {
+                addEdge(source, target);
+            } else {
+                addEdge(mImportedVertices.get(source), mImportedVertices.get(target));
+            }
+        }
+        if (mVertexRenderer == null) {
+            requestLayout();
+        }
+        invalidate();
+        if (mImportListener != null) {
+            mImportListener.onImportProgress(batch.getProgress());
+        }
+    }
+
+    private void finishImport(IOException error) {
+        GraphJournal restoredJournal = mRestoringJournal;
+        mRestoringJournal = null;
+        if (restoredJournal != null) {
+            if (error == null) {
+                try {
+                    restoredJournal.resume();
+                    mJournal = restoredJournal;
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            // Saved graph might have no START or END, this layout keeps its own then.
+            addSpareVertices();
+        } else {
+            mJournal = mSuspendedJournal;
+            mSuspendedJournal = null;
+            compactJournal();
+        }
+        mImportedVertices.clear();
+        ImportListener listener = mImportListener;
+        mImportListener = null;
+        onGraphReplaced();
+        if (listener != null) {
+            listener.onImportFinished(error);
+        }
+    }
+
+    /**
+     * Takes the frame as vertex positions of the model, renderers draw from it. Only views on the screen are moved,
+     * the path is searched for once the layout finishes.
+     *
+     * @return positions the frame replaced.
+     */
+    private float[] applyLayoutFrame(float[] coordinates, boolean converged) {
+        float[] previous = mVertexModel.swapCoordinates(coordinates);
+        if (mVertexRenderer == null) {
+            int pad = mVertexSize, width = getWidth(), height = getHeight();
+            for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
+                VertexView view = (VertexView) getChildAt(i);
+                int vertex = view.getVertexId();
+                float oldX = view.getTranslationX() + ((view.getLeft() + view.getRight()) >> 1);
+                float oldY = view.getTranslationY() + ((view.getTop() + view.getBottom()) >> 1);
+                // Views leaving the screen are moved as well, so that they do not stay behind at its edge.
+                if (isOnScreen(getScreenX(vertex), getScreenY(vertex), pad, width, height)
+                        || isOnScreen(oldX, oldY, pad, width, height)) {
+                    positionVertexView(vertex);
+                }
+            }
+        }
+        invalidate();
+        if (converged) {
+            finishAutoLayout();
+        }
+        return previous;
+    }
+
+    private static boolean isOnScreen(float x, float y, int pad, int width, int height) {
+        return x >= -pad && x <= width + pad && y >= -pad && y <= height + pad;
+    }
+
+    /**
+     * Vertices moved by the layout are saved with a single compaction instead of a journal record each.
+     */
+    private void finishAutoLayout() {
+        syncLayoutPositions();
+        updateShortestPath();
+        compactJournal();
+    }
+
+    /**
+     * Updates the spatial index and all views to positions the auto layout has moved vertices to.
+     */
+    private void syncLayoutPositions() {
+        for (int vertex = 0, idCount = mVertexModel.getIdCount(); vertex < idCount; vertex++) {
+            if (mVertexModel.contains(vertex)) {
+                mVertexIndex.put(vertex, mVertexModel.getX(vertex), mVertexModel.getY(vertex));
+                if (mVertexRenderer == null) {
+                    positionVertexView(vertex);
+                }
+            }
+        }
+    }
+
+    private void compactJournal() {
+        if (mJournal != null) {
+            mJournalCompactor.compact(mJournal);
+        }
+    }
+
+    private void onGraphReplaced() {
+        if (mVertexRenderer == null) {
+            requestLayout();
+        }
+        invalidate();
+        updateShortestPath();
+    }
+
+    /**
+     * Only {@link VertexView}s can be added. START and END ones are placed at the left and right edge during the next
+     * layout. In virtual rendering mode the view is not kept, only its type and color are.
+     */
+    @Override
+    public void addView(View child, int index, ViewGroup.LayoutParams params) {
+        VertexView view = (VertexView) child;
+        int type = view.getVertexType().ordinal();
+        int vertex = mVertexModel.add(type, 0, 0);
+        mConnectivity.addVertex(vertex);
+        mUnplacedVertices.add(vertex);
+        updateCounters();
+        if (mVertexRenderer != null) {
+            mVertexRenderer.setColor(type, view.getOutlineColor());
+        } else {
+            super.addView(child, index, params);
+            bindVertexView(vertex, view);
+        }
+        switch (type) {
+            case VertexModel.TYPE_START:
+                mStartVertex = vertex;
+                break;
+            case VertexModel.TYPE_END:
+                mEndVertex = vertex;
+                break;
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mPathSolver.start();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        cancelImport();
+        stopAutoLayout();
+        mMoveScheduler.unschedule();
+        mPathSolver.stop();
+        mEdgeRenderer.release();
+        super.onDetachedFromWindow();
+    }
+
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        long startTime = System.nanoTime();
+        placeVertices();
         for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
             VertexView child = (VertexView) getChildAt(i);
+            int vertex = child.getVertexId();
+            int x = (int) mVertexModel.getX(vertex), y = (int) mVertexModel.getY(vertex);
             int childWidth = child.getMeasuredWidth();
             int childHeight = child.getMeasuredHeight();
-            GraphLayoutParams lp = resolveLayoutParamsForVertex(child);
-            child.setLayoutParams(lp);
-            child.layout(lp.x - (childWidth >> 1), lp.y - (childHeight >> 1),
-                    lp.x + (childWidth >> 1), lp.y + (childHeight >> 1));
+            child.layout(x - (childWidth >> 1), y - (childHeight >> 1), x + (childWidth >> 1), y + (childHeight >> 1));
+            positionVertexView(vertex);
         }
+        mLayoutLatency.record(System.nanoTime() - startTime);
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        if (mVertexRenderer != null) {
+            return;
+        }
+        mVertexSize = 0;
         for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
-            getChildAt(i).measure(widthMeasureSpec, heightMeasureSpec);
+            View child = getChildAt(i);
+            child.measure(widthMeasureSpec, heightMeasureSpec);
+            mVertexSize = Math.max(mVertexSize, Math.max(child.getMeasuredWidth(), child.getMeasuredHeight()));
         }
     }
 
+    /**
+     * Times all of the drawing, vertex views are drawn in dispatchDraw after onDraw.
+     */
+    @Override
+    public void draw(Canvas canvas) {
+        long startTime = System.nanoTime();
+        mAllocationCounter.beginSection();
+        super.draw(canvas);
+        mAllocationCounter.endSection();
+        mDrawLatency.record(System.nanoTime() - startTime);
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
-        for (Connector connector : mConnectors) {
-            Paint connectorPaint = mConnectorPaint;
-            if (mShortestPath != null) {
-                for (int i = 0, length = mShortestPath.size(); i < length; i++) {
-                    Edge edge = mShortestPath.get(i);
-                    if (connector.connects(edge.getSource(), edge.getTarget())) {
-                        connectorPaint = mShortestPathConnectorPaint;
-                        break;
-                    }
-                }
-            }
-            drawConnector(canvas, connector, connectorPaint);
+        if (mHighlightedEdgesVersion != mEdges.getVersion()) {
+            updateHighlightedEdges();
         }
-        if (mPendingConnector != null) {
+        mEdgeRenderer.draw(canvas, mEdges, mVertexModel, getWidth(), getHeight());
+        if (mPendingConnectorVertex >= 0) {
             mConnectorPaint.setAlpha(100);
-            drawConnector(canvas, mPendingConnector, mConnectorPaint);
+            canvas.drawLine(getScreenX(mPendingConnectorVertex), getScreenY(mPendingConnectorVertex),
+                    getScreenX(mTouchDownVertex), getScreenY(mTouchDownVertex), mConnectorPaint);
             mConnectorPaint.setAlpha(255);
         }
+        if (mVertexRenderer != null) {
+            // Only vertices within the clip are drawn, while dragging it is just the dirty region.
+            canvas.getClipBounds(mTempRect);
+            float radius = mVertexRenderer.getMaxSize() / 2f;
+            float left = mViewport.toWorldX(mTempRect.left - radius), top = mViewport.toWorldY(mTempRect.top - radius);
+            float right = mViewport.toWorldX(mTempRect.right + radius);
+            float bottom = mViewport.toWorldY(mTempRect.bottom + radius);
+            mQueryResult.clear();
+            if (mAutoLayout.isRunning()) {
+                // Spatial index is behind the layout, vertices are culled one by one as edges are.
+                collectVertices(left, top, right, bottom, mQueryResult);
+            } else {
+                mVertexIndex.query(left, top, right, bottom, mQueryResult);
+            }
+            mVertexRenderer.draw(canvas, mVertexModel, mQueryResult, getWidth(), getHeight());
+        }
         super.onDraw(canvas);
     }
 
-    private static void drawConnector(Canvas canvas, Connector connector, Paint paint) {
-        float startX = connector.v1.getX() + (connector.v1.getWidth() >> 1);
-        float startY = connector.v1.getY() + (connector.v1.getHeight() >> 1);
-        float endX = connector.v2.getX() + (connector.v2.getWidth() >> 1);
-        float endY = connector.v2.getY() + (connector.v2.getHeight() >> 1);
-        canvas.drawLine(startX, startY, endX, endY, paint);
+    /**
+     * Flags edges along the shortest path and alternative paths. Paths found for another structure are not
+     * highlighted, their vertex ids might have been reused already.
+     */
+    private void updateHighlightedEdges() {
+        mEdgeRenderer.clearHighlightedEdges();
+        if (mShortestPath != null && mShortestPathStructureVersion == mEdges.getVersion()) {
+            highlightPath(mShortestPath, 0);
+            for (int i = 0, count = Math.min(mAlternativePaths.length, mAlternativePathCount); i < count; i++) {
+                highlightPath(mAlternativePaths[i], i + 1);
+            }
+        }
+        mHighlightedEdgesVersion = mEdges.getVersion();
     }
 
-    private boolean onTouchDown(int x, int y) {
-        for (int i = getChildCount() - 1; i >= 0; i--) {
-            VertexView child = (VertexView) getChildAt(i);
-            child.getHitRect(mTempRect);
-            if (mTempRect.contains(x, y)) {
-                mTouchDownView = child;
-                mTouchDownX = x;
-                mTouchDownY = y;
-                // User wants to move the vertex or initiate adding a new one (via the long press).
-                startWaitingForLongPress();
-                break;
+    private void highlightPath(int[] path, int level) {
+        for (int i = 1; i < path.length; i++) {
+            int edge = mEdges.findEdge(path[i - 1], path[i]);
+            if (edge >= 0) {
+                mEdgeRenderer.highlightEdge(edge, level);
             }
         }
-        return mTouchDownView != null;
     }
 
+    private boolean onTouchDown(int x, int y) {
+        mAllocationCounter.startGesture();
+        if (mAutoLayout.isRunning()) {
+            syncLayoutPositions();
+        }
+        // Vertices might overlap, the one closest to the touch point wins. Graph being imported can only be panned.
+        mTouchDownVertex = mImporter.isImporting() ? -1 : findClosestVertex(mViewport.toWorldX(x),
+                mViewport.toWorldY(y), (mVertexSize >> 1) / mViewport.getScale(), -1);
+        if (mTouchDownVertex >= 0) {
+            // User takes over.
+            stopAutoLayout();
+            mTouchDownX = x;
+            mTouchDownY = y;
+            mTouchDownVertexX = mVertexModel.getX(mTouchDownVertex);
+            mTouchDownVertexY = mVertexModel.getY(mTouchDownVertex);
+            // User wants to move the vertex or initiate adding a new one (via the long press).
+            startWaitingForLongPress();
+        } else {
+            mPanning = true;
+            mLastPanX = x;
+            mLastPanY = y;
+        }
+        return true;
+    }
+
+    /**
+     * Keeps the latest position to apply at the next frame, so that dragging moves the vertex, searches the path and
+     * invalidates at most once per frame however often the digitizer reports.
+     */
     private boolean onTouchMove(MotionEvent event) {
-        boolean handled = false;
-        if (mTouchDownView != null) {
-            float dX = event.getX() - mTouchDownX, dY = event.getY() - mTouchDownY;
-            if (mPendingCheckForLongPress == null || Math.hypot(dX, dY) >= mTouchSlop) {
-                mTouchDownView.setTranslationX(dX);
-                mTouchDownView.setTranslationY(dY);
-                updateShortestPath();
-                // TODO Invalidate only area that needs to be redrawn.
-                invalidate();
-                stopWaitingForLongPress();
+        if (!mPanning && mTouchDownVertex < 0) {
+            return false;
+        }
+        if (mWaitingForLongPress) {
+            // Any sample since the previous event might have left the slop, not just the latest one.
+            for (int i = 0, historySize = event.getHistorySize(); i <= historySize; i++) {
+                float x = i < historySize ? event.getHistoricalX(i) : event.getX();
+                float y = i < historySize ? event.getHistoricalY(i) : event.getY();
+                if (Math.hypot(x - mTouchDownX, y - mTouchDownY) >= mTouchSlop) {
+                    stopWaitingForLongPress();
+                    break;
+                }
             }
-            handled = true;
         }
-        return handled;
+        mMoveX = event.getX();
+        mMoveY = event.getY();
+        mMoveScheduler.schedule();
+        return true;
+    }
+
+    private void applyMove() {
+        mAllocationCounter.beginSection();
+        if (mPanning) {
+            mViewport.pan(mMoveX - mLastPanX, mMoveY - mLastPanY);
+            mLastPanX = mMoveX;
+            mLastPanY = mMoveY;
+            onViewportChanged();
+        } else if (mTouchDownVertex >= 0 && !mWaitingForLongPress) {
+            // Only connectors moving with the vertex need to be redrawn, the rest comes from the static layer.
+            mEdgeRenderer.setDraggedVertex(mTouchDownVertex);
+            mDirtyRect.setEmpty();
+            unionDragBounds(mDirtyRect);
+            float scale = mViewport.getScale();
+            moveVertex(mTouchDownVertex, mTouchDownVertexX + (mMoveX - mTouchDownX) / scale,
+                    mTouchDownVertexY + (mMoveY - mTouchDownY) / scale);
+            unionDragBounds(mDirtyRect);
+            int inset = (int) Math.ceil(mConnectorPaint.getStrokeWidth()) + 1;
+            mDirtyRect.inset(-inset, -inset);
+            // Only software rendering clips to the rectangle, hardware acceleration redraws the whole view.
+            invalidate(mDirtyRect);
+            updateShortestPath();
+        }
+        mAllocationCounter.endSection();
+    }
+
+    /**
+     * Applies the latest move right away instead of at the next frame, for gestures driven without frames.
+     */
+    void flushMove() {
+        mMoveScheduler.runNow();
     }
 
     private boolean onTouchUp(MotionEvent event) {
+        // Vertex is dropped where the last move left it.
+        mMoveScheduler.runNow();
         boolean handled = false;
-        if (mTouchDownView != null) {
-            int newX = (int) mTouchDownView.getX() + mTouchDownView.getWidth() / 2;
-            int newY = (int) mTouchDownView.getY() + mTouchDownView.getHeight() / 2;
-            GraphLayoutParams lp = (GraphLayoutParams) mTouchDownView.getLayoutParams();
-            lp.x = newX;
-            lp.y = newY;
-            mTouchDownView.setTemporary(false);
-
-            // Merging mTouchDownView with other Vertex in case if it was dropped over it.
-            Rect vertexRect = new Rect();
-            mTouchDownView.getHitRect(vertexRect);
-            for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
-                VertexView child = (VertexView) getChildAt(i);
-                if (mTouchDownView != child) {
-                    child.getHitRect(mTempRect);
-                    if (mTempRect.intersect(vertexRect)) {
-                        // Disallow swallowing start and end vertices!
-                        if (mTouchDownView.getVertexType() != VertexView.VertexType.INTERMEDIATE) {
-                            mergeVertices(mTouchDownView, child);
-                        } else {
-                            mergeVertices(child, mTouchDownView);
-                        }
-                        if (mPendingConnector != null) {
-                            mPendingConnector = new Connector(mPendingConnector.v1, child);
-                        }
-                        break;
-                    }
+        if (mTouchDownVertex >= 0) {
+            int vertex = mTouchDownVertex;
+            setTemporary(vertex, false);
+            float x = mVertexModel.getX(vertex), y = mVertexModel.getY(vertex);
+            if (mJournal != null && (x != mTouchDownVertexX || y != mTouchDownVertexY)) {
+                mJournal.moveVertex(vertex, x, y);
+            }
+
+            // Merging dropped vertex with other one in case if it was dropped over it.
+            int target = findClosestVertex(x, y, mVertexSize / mViewport.getScale(), vertex);
+            if (target >= 0) {
+                // Disallow swallowing start and end vertices!
+                if (mVertexModel.getType(vertex) != VertexModel.TYPE_INTERMEDIATE) {
+                    mergeVertices(vertex, target);
+                } else {
+                    mergeVertices(target, vertex);
+                    vertex = target;
                 }
             }
 
-            if (mPendingConnector != null) {
-                if (!mConnectors.contains(mPendingConnector) && !mPendingConnector.isCyclic()) {
-                    mConnectors.add(mPendingConnector);
+            if (mPendingConnectorVertex >= 0) {
+                if (addEdge(mPendingConnectorVertex, vertex) >= 0 && mJournal != null) {
+                    mJournal.addEdge(mPendingConnectorVertex, vertex);
                 }
-                mPendingConnector = null;
+                mPendingConnectorVertex = -1;
+            }
+            if (mVertexRenderer == null) {
+                requestLayout();
             }
-            updateShortestPath();
-            requestLayout();
             handled = true;
         }
         completeTouchHandling();
+        commitJournal();
+        updateShortestPath();
         return handled;
     }
 
     private boolean onTouchCancel(MotionEvent event) {
-        if (mTouchDownView != null && mPendingConnector != null) {
-            // We were trying to add new vertex but event was cancelled.
-            mPendingConnector = null;
-            removeView(mTouchDownView);
+        if (mTouchDownVertex >= 0) {
+            if (mPendingConnectorVertex >= 0) {
+                // We were trying to add new vertex but event was cancelled.
+                mPendingConnectorVertex = -1;
+                removeVertex(mTouchDownVertex);
+                if (mJournal != null) {
+                    mJournal.removeVertex(mTouchDownVertex);
+                }
+            } else {
+                moveVertex(mTouchDownVertex, mTouchDownVertexX, mTouchDownVertexY);
+            }
         }
         completeTouchHandling();
+        commitJournal();
+        updateShortestPath();
         return true;
     }
 
     private void completeTouchHandling() {
         stopWaitingForLongPress();
-        if (mTouchDownView != null) {
-            mTouchDownView.setTranslationX(0);
-            mTouchDownView.setTranslationY(0);
-            mTouchDownX = mTouchDownY = 0;
-            mTouchDownView = null;
+        mMoveScheduler.unschedule();
+        mEdgeRenderer.setDraggedVertex(-1);
+        invalidate();
+        mTouchDownX = mTouchDownY = 0;
+        mTouchDownVertex = -1;
+        mPanning = false;
+        mAllocationCounter.finishGesture();
+    }
+
+    /**
+     * Extends rect to cover the dragged vertex and connectors attached to it.
+     */
+    private void unionDragBounds(Rect rect) {
+        int vertex = mTouchDownVertex;
+        int x = (int) getScreenX(vertex), y = (int) getScreenY(vertex);
+        int radius = (mVertexRenderer != null ? mVertexRenderer.getMaxSize() : mVertexSize) / 2 + 1;
+        rect.union(x - radius, y - radius, x + radius, y + radius);
+        for (int i = 0, degree = mEdges.getDegree(vertex); i < degree; i++) {
+            int other = mEdges.getOppositeVertex(mEdges.getIncidentEdge(vertex, i), vertex);
+            rect.union((int) getScreenX(other), (int) getScreenY(other));
+        }
+        if (mPendingConnectorVertex >= 0) {
+            rect.union((int) getScreenX(mPendingConnectorVertex), (int) getScreenY(mPendingConnectorVertex));
         }
     }
 
-    private void startNewVertex(VertexView parent) {
-        VertexView newVertex = new VertexView(getContext());
-        newVertex.setTemporary(true);
-        GraphLayoutParams lp = new GraphLayoutParams(parent.getLayoutParams());
-        lp.x = mTouchDownX;
-        lp.y = mTouchDownY;
-        newVertex.setLayoutParams(lp);
-        addView(newVertex);
-        mPendingConnector = new Connector(mTouchDownView, newVertex);
-        mTouchDownView = newVertex;
+    private void startNewVertex(int parent) {
+        float x = mViewport.toWorldX(mTouchDownX), y = mViewport.toWorldY(mTouchDownY);
+        int vertex = addVertex(VertexModel.TYPE_INTERMEDIATE, x, y);
+        setTemporary(vertex, true);
+        mPendingConnectorVertex = parent;
+        mTouchDownVertex = vertex;
+        mTouchDownVertexX = x;
+        mTouchDownVertexY = y;
+        invalidate();
+    }
+
+    /**
+     * START and END vertices get spare views of those types, if there are any. Views created for them look like
+     * intermediate ones, view type comes from attributes only.
+     *
+     * @return id of the new vertex.
+     */
+    private int addVertex(int type, float x, float y) {
+        int vertex = mVertexModel.add(type, x, y);
+        onVertexAdded(vertex, type, x, y);
+        return vertex;
+    }
+
+    /**
+     * Adds the vertex with its id in the restored graph.
+     */
+    private void restoreVertex(int vertex, int type, float x, float y) {
+        mVertexModel.add(vertex, type, x, y);
+        onVertexAdded(vertex, type, x, y);
     }
 
-    private void mergeVertices(VertexView absorber, VertexView victim) {
-        List<Connector> newConnectors = new ArrayList<>();
-        Iterator<Connector> connectorsIterator = mConnectors.iterator();
-        while (connectorsIterator.hasNext()) {
-            Connector connector = connectorsIterator.next();
-            if (connector.v1 == victim && connector.v2 == absorber) {
-                connectorsIterator.remove();
-            } else if (connector.v2 == victim && connector.v1 == absorber) {
-                connectorsIterator.remove();
-            } else if (connector.v1 == victim) {
-                connectorsIterator.remove();
-                newConnectors.add(new Connector(absorber, connector.v2));
-            } else if (connector.v2 == victim) {
-                connectorsIterator.remove();
-                newConnectors.add(new Connector(connector.v1, absorber));
+    private void onVertexAdded(int vertex, int type, float x, float y) {
+        mConnectivity.addVertex(vertex);
+        mVertexIndex.put(vertex, x, y);
+        updateCounters();
+        if (mJournal != null) {
+            mJournal.addVertex(vertex, type, x, y);
+        }
+        if (mVertexRenderer == null) {
+            VertexView view = mSpareViews[type];
+            mSpareViews[type] = null;
+            if (view == null) {
+                view = new VertexView(getContext());
             }
+            super.addView(view, -1, generateDefaultLayoutParams());
+            bindVertexView(vertex, view);
         }
-        for (Connector connector : newConnectors) {
-            if (!mConnectors.contains(connector) && !connector.isCyclic()) {
-                mConnectors.add(connector);
+        switch (type) {
+            case VertexModel.TYPE_START:
+                mStartVertex = vertex;
+                break;
+            case VertexModel.TYPE_END:
+                mEndVertex = vertex;
+                break;
+        }
+    }
+
+    private void moveVertex(int vertex, float x, float y) {
+        mVertexModel.setPosition(vertex, x, y);
+        mVertexIndex.put(vertex, x, y);
+        if (mVertexRenderer == null) {
+            positionVertexView(vertex);
+        }
+    }
+
+    private void setTemporary(int vertex, boolean temporary) {
+        mVertexModel.setTemporary(vertex, temporary);
+        if (mVertexRenderer == null) {
+            mVertexViews[vertex].setTemporary(temporary);
+        }
+    }
+
+    private void mergeVertices(int absorber, int victim) {
+        long startTime = System.nanoTime();
+        mEdges.mergeVertices(absorber, victim);
+        mConnectivity.mergeVertices(absorber, victim);
+        removeVertex(victim);
+        if (mJournal != null) {
+            mJournal.mergeVertices(absorber, victim);
+        }
+        mMergeVerticesLatency.record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Makes edits recorded so far durable, compacting the journal once it outgrows the graph.
+     */
+    private void commitJournal() {
+        if (mJournal == null) {
+            return;
+        }
+        if (mJournal.needsCompaction(mVertexModel.size() + mEdges.getEdgeCount())) {
+            mJournalCompactor.compact(mJournal);
+            return;
+        }
+        try {
+            mJournal.flush();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to save graph edits", e);
+        }
+    }
+
+    /**
+     * @return vertex closest to (x, y) within maxDistance along both axes, other than the excluded one, or -1 if there
+     * is none.
+     */
+    private int findClosestVertex(float x, float y, float maxDistance, int excluded) {
+        mQueryResult.clear();
+        mVertexIndex.query(x - maxDistance, y - maxDistance, x + maxDistance, y + maxDistance, mQueryResult);
+        int closest = -1;
+        double closestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0, size = mQueryResult.size(); i < size; i++) {
+            int vertex = mQueryResult.get(i);
+            double distance = Math.hypot(mVertexIndex.getX(vertex) - x, mVertexIndex.getY(vertex) - y);
+            if (vertex != excluded && distance < closestDistance) {
+                closestDistance = distance;
+                closest = vertex;
             }
         }
-        removeView(victim);
+        return closest;
     }
 
-    private void startWaitingForLongPress() {
-        mPendingCheckForLongPress = new CheckForLongPress();
-        postDelayed(mPendingCheckForLongPress, LONG_PRESS_TIMEOUT);
+    /**
+     * @return id of the new edge or -1 if it would be a loop or a duplicate.
+     */
+    private int addEdge(int vertex1, int vertex2) {
+        int edge = mEdges.addEdge(vertex1, vertex2);
+        if (edge >= 0) {
+            mConnectivity.addEdge(vertex1, vertex2);
+            updateCounters();
+        }
+        return edge;
     }
 
-    private void stopWaitingForLongPress() {
-        if (mPendingCheckForLongPress != null) {
-            removeCallbacks(mPendingCheckForLongPress);
-            mPendingCheckForLongPress = null;
+    private void removeEdge(int edge) {
+        mConnectivity.removeEdge(mEdges.getSource(edge), mEdges.getTarget(edge));
+        mEdges.removeEdge(edge);
+        updateCounters();
+    }
+
+    private void removeVertex(int vertex) {
+        mConnectivity.removeVertex(vertex);
+        mEdges.removeVertex(vertex);
+        mVertexIndex.remove(vertex);
+        mVertexModel.remove(vertex);
+        updateCounters();
+        if (vertex == mStartVertex) {
+            mStartVertex = -1;
+        } else if (vertex == mEndVertex) {
+            mEndVertex = -1;
+        }
+        if (mVertexRenderer == null) {
+            VertexView view = mVertexViews[vertex];
+            mVertexViews[vertex] = null;
+            view.setVertexId(-1);
+            removeView(view);
         }
     }
 
-    private GraphLayoutParams resolveLayoutParamsForVertex(VertexView view) {
-        ViewGroup.LayoutParams lp = view.getLayoutParams();
-        if (!(lp instanceof GraphLayoutParams)) {
-            GraphLayoutParams graphLayoutParams = new GraphLayoutParams(lp);
-            switch (view.getVertexType()) {
-                case START:
-                    graphLayoutParams.x = view.getMeasuredWidth() / 2;
-                    graphLayoutParams.y = getMeasuredHeight() / 2;
-                    break;
-                case END:
-                    graphLayoutParams.x = getMeasuredWidth() - view.getMeasuredWidth() / 2;
-                    graphLayoutParams.y = getMeasuredHeight() / 2;
-                    break;
-                case INTERMEDIATE:
-                default:
-                    throw new IllegalStateException("Unable to resolve layout params for view " + view + " with type " +
-                            view.getVertexType());
+    /**
+     * Removes all vertices but START and END, and all edges.
+     */
+    private void clearGraph() {
+        for (int vertex = 0, idCount = mVertexModel.getIdCount(); vertex < idCount; vertex++) {
+            if (mVertexModel.contains(vertex) && vertex != mStartVertex && vertex != mEndVertex) {
+                removeVertex(vertex);
             }
-            lp = graphLayoutParams;
         }
-        return (GraphLayoutParams) lp;
+        mEdges.clear();
+        mConnectivity.invalidate();
+        updateCounters();
     }
 
     /**
-     * TODO Consider reusing existing graph and updating weights instead of recreating it.
+     * Removes all vertices, START and END included, and all edges, so that vertex ids start over. Views of START and
+     * END are kept as spare ones.
      */
-    private void updateShortestPath() {
-        mShortestPath = null;
-        Vertex start = null, end = null;
-        Map<VertexView, Vertex> verticesMap = new HashMap<>();
-        SimpleWeightedGraph<Vertex, Edge> graph = new SimpleWeightedGraph(Edge.class);
-        for (Connector connector : mConnectors) {
-            Vertex vertex1 = verticesMap.get(connector.v1);
-            if (vertex1 == null) {
-                vertex1 = new Vertex(connector.v1.getVertexId());
-                verticesMap.put(connector.v1, vertex1);
-            }
-            switch (connector.v1.getVertexType()) {
-                case START:
-                    start = vertex1;
-                    break;
-                case END:
-                    end = vertex1;
-                    break;
+    private void removeAllVertices() {
+        clearGraph();
+        for (int vertex : new int[]{mStartVertex, mEndVertex}) {
+            if (vertex >= 0) {
+                if (mVertexRenderer == null) {
+                    mSpareViews[mVertexModel.getType(vertex)] = mVertexViews[vertex];
+                }
+                removeVertex(vertex);
+            }
+        }
+        mVertexModel.clear();
+        mConnectivity.invalidate();
+        mUnplacedVertices.clear();
+    }
+
+    /**
+     * Adds START and END vertices missing from the graph, to be placed during the next layout like the ones declared
+     * in layout.
+     */
+    private void addSpareVertices() {
+        if (mStartVertex < 0) {
+            mUnplacedVertices.add(addVertex(VertexModel.TYPE_START, 0, 0));
+        }
+        if (mEndVertex < 0) {
+            mUnplacedVertices.add(addVertex(VertexModel.TYPE_END, 0, 0));
+        }
+        requestLayout();
+    }
+
+    private void collectVertices(float left, float top, float right, float bottom, IntList result) {
+        for (int vertex = 0, idCount = mVertexModel.getIdCount(); vertex < idCount; vertex++) {
+            if (mVertexModel.contains(vertex)) {
+                float x = mVertexModel.getX(vertex), y = mVertexModel.getY(vertex);
+                if (x >= left && x <= right && y >= top && y <= bottom) {
+                    result.add(vertex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps {@link #METRIC_VERTICES} and {@link #METRIC_EDGES} counters up to date, called on every change of the
+     * graph.
+     */
+    private void updateCounters() {
+        mVertexCounter.set(mVertexModel.size());
+        mEdgeCounter.set(mEdges.getEdgeCount());
+    }
+
+    private void markPlaced(int vertex) {
+        for (int i = mUnplacedVertices.size() - 1; i >= 0; i--) {
+            if (mUnplacedVertices.get(i) == vertex) {
+                mUnplacedVertices.set(i, mUnplacedVertices.get(mUnplacedVertices.size() - 1));
+                mUnplacedVertices.removeLast();
             }
+        }
+    }
+
+    /**
+     * Replaces vertex views with a {@link VertexRenderer}, which draws vertices in the colors of the views.
+     */
+    private void switchToVirtualRendering() {
+        if (mVertexRenderer != null) {
+            return;
+        }
+        mVertexRenderer = new VertexRenderer(getContext(), mViewport);
+        for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
+            VertexView view = (VertexView) getChildAt(i);
+            mVertexRenderer.setColor(mVertexModel.getType(view.getVertexId()), view.getOutlineColor());
+            view.setVertexId(-1);
+        }
+        for (int type = 0; type < mSpareViews.length; type++) {
+            if (mSpareViews[type] != null) {
+                mVertexRenderer.setColor(type, mSpareViews[type].getOutlineColor());
+                mSpareViews[type] = null;
+            }
+        }
+        removeAllViewsInLayout();
+        mVertexViews = new VertexView[16];
+        mVertexSize = mVertexRenderer.getSize();
+        requestLayout();
+        invalidate();
+    }
+
+    private void bindVertexView(int vertex, VertexView view) {
+        if (vertex >= mVertexViews.length) {
+            mVertexViews = Arrays.copyOf(mVertexViews, Math.max(vertex + 1, mVertexViews.length << 1));
+        }
+        mVertexViews[vertex] = view;
+        view.setVertexId(vertex);
+    }
+
+    /**
+     * Moves the view to the screen position of the vertex via translation, so that dragging, panning and zooming do
+     * not require layout.
+     */
+    private void positionVertexView(int vertex) {
+        VertexView view = mVertexViews[vertex];
+        view.setTranslationX(getScreenX(vertex) - ((view.getLeft() + view.getRight()) >> 1));
+        view.setTranslationY(getScreenY(vertex) - ((view.getTop() + view.getBottom()) >> 1));
+    }
+
+    private float getScreenX(int vertex) {
+        return mViewport.toScreenX(mVertexModel.getX(vertex));
+    }
+
+    private float getScreenY(int vertex) {
+        return mViewport.toScreenY(mVertexModel.getY(vertex));
+    }
+
+    private void onViewportChanged() {
+        if (mVertexRenderer == null) {
+            for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
+                positionVertexView(((VertexView) getChildAt(i)).getVertexId());
+            }
+        }
+        invalidate();
+    }
 
-            Vertex vertex2 = verticesMap.get(connector.v2);
-            if (vertex2 == null) {
-                vertex2 = new Vertex(connector.v2.getVertexId());
-                verticesMap.put(connector.v2, vertex2);
+    /**
+     * Places START and END vertices declared in layout at the middle of the left and right edge of the screen.
+     */
+    private void placeVertices() {
+        int radius = mVertexSize >> 1;
+        for (int i = 0, size = mUnplacedVertices.size(); i < size; i++) {
+            int vertex = mUnplacedVertices.get(i);
+            if (!mVertexModel.contains(vertex)) {
+                continue;
             }
-            switch (connector.v2.getVertexType()) {
-                case START:
-                    start = vertex2;
+            int type = mVertexModel.getType(vertex);
+            int x;
+            switch (type) {
+                case VertexModel.TYPE_START:
+                    x = radius;
                     break;
-                case END:
-                    end = vertex2;
+                case VertexModel.TYPE_END:
+                    x = getMeasuredWidth() - radius;
                     break;
+                case VertexModel.TYPE_INTERMEDIATE:
+                default:
+                    throw new IllegalStateException("Unable to place vertex " + vertex + " with type " + type);
             }
-            float edgeLength = (float) Math.hypot(connector.v1.getX() - connector.v2.getX(),
-                    connector.v1.getY() - connector.v2.getY());
-            graph.addVertex(vertex1);
-            graph.addVertex(vertex2);
-            Edge edge = graph.addEdge(vertex1, vertex2);
-            graph.setEdgeWeight(edge, edgeLength);
+            float worldX = mViewport.toWorldX(x), worldY = mViewport.toWorldY(getMeasuredHeight() / 2);
+            mVertexModel.setPosition(vertex, worldX, worldY);
+            mVertexIndex.put(vertex, worldX, worldY);
+            if (mJournal != null) {
+                mJournal.moveVertex(vertex, worldX, worldY);
+            }
+        }
+        if (!mUnplacedVertices.isEmpty()) {
+            mUnplacedVertices.clear();
+            commitJournal();
         }
+    }
 
-        if (start != null && end != null) {
-            mShortestPath = DijkstraShortestPath.findPathBetween(graph, start, end);
+    private void startWaitingForLongPress() {
+        mWaitingForLongPress = true;
+        postDelayed(mCheckForLongPress, LONG_PRESS_TIMEOUT);
+    }
+
+    private void stopWaitingForLongPress() {
+        if (mWaitingForLongPress) {
+            removeCallbacks(mCheckForLongPress);
+            mWaitingForLongPress = false;
         }
     }
 
-    private final class CheckForLongPress implements Runnable {
-        @Override
-        public void run() {
-            performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
-            mPendingCheckForLongPress = null;
-            startNewVertex(mTouchDownView);
+    /**
+     * Hands current graph over to the path solver. Result is delivered asynchronously. Search is skipped if START and
+     * END are not connected.
+     */
+    private void updateShortestPath() {
+        long startTime = System.nanoTime();
+        submitShortestPath();
+        mUpdateShortestPathLatency.record(System.nanoTime() - startTime);
+    }
+
+    private void submitShortestPath() {
+        if (mStartVertex < 0 || mEndVertex < 0 || !mConnectivity.isConnected(mStartVertex, mEndVertex)) {
+            // Results of searches in flight are dropped as well.
+            mSnapshotStructureVersion = -1;
+            if (mShortestPath != null) {
+                mShortestPath = null;
+                mAlternativePaths = null;
+                mHighlightedEdgesVersion = -1;
+                invalidate();
+            }
+            return;
         }
+        if (mSnapshotStructureVersion != mEdges.getVersion()) {
+            updateSnapshotStructure();
+        }
+        // Vertex ids serve as snapshot indices, ids of removed vertices are left isolated.
+        GraphSnapshot snapshot = mPathSolver.obtainSnapshot(mSnapshotStructureVersion, mSnapshotEdges,
+                mSnapshotVertexCount, mSnapshotStart, mSnapshotEnd);
+        for (int i = 0; i < mSnapshotVertexCount; i++) {
+            snapshot.setPosition(i, mVertexModel.getX(i), mVertexModel.getY(i));
+        }
+        mPathSolver.submit(snapshot);
     }
 
-    private static final class GraphLayoutParams extends ViewGroup.LayoutParams {
-        public int x, y;
+    private void updateSnapshotStructure() {
+        mSnapshotVertexCount = mVertexModel.getIdCount();
+        mSnapshotStart = mStartVertex;
+        mSnapshotEnd = mEndVertex;
+        mSnapshotEdges = collectEdges();
+        mSnapshotStructureVersion = mEdges.getVersion();
+    }
 
-        public GraphLayoutParams(ViewGroup.LayoutParams source) {
-            super(source);
-            if (source instanceof GraphLayoutParams) {
-                GraphLayoutParams lp = (GraphLayoutParams) source;
-                x = lp.x;
-                y = lp.y;
+    /**
+     * @return pairs of endpoints of all edges.
+     */
+    private int[] collectEdges() {
+        int[] edges = new int[mEdges.getEdgeCount() << 1];
+        for (int edge = 0, i = 0, edgeIdCount = mEdges.getEdgeIdCount(); edge < edgeIdCount; edge++) {
+            if (mEdges.isEdge(edge)) {
+                edges[i++] = mEdges.getSource(edge);
+                edges[i++] = mEdges.getTarget(edge);
             }
         }
+        return edges;
     }
 
-    private static final class Connector {
-        public final VertexView v1;
-        public final VertexView v2;
+    private static PathSearch createPathSearch(int pathSearch) {
+        switch (pathSearch) {
+            case PATH_SEARCH_INCREMENTAL:
+                return null;
+            case PATH_SEARCH_DIJKSTRA:
+                return new DijkstraPathSearch();
+            case PATH_SEARCH_A_STAR:
+                return new AStarPathSearch();
+            case PATH_SEARCH_BIDIRECTIONAL_A_STAR:
+                return new BidirectionalAStarPathSearch();
+            case PATH_SEARCH_JGRAPHT_DIJKSTRA:
+                return new JGraphTPathSearch();
+            default:
+                throw new IllegalArgumentException("Unknown path search " + pathSearch);
+        }
+    }
+
+    /**
+     * Batch of graph changes, see {@link #beginEdit()}. Vertices are referred to by ids, the ones of START and END
+     * vertices are {@link #getStartVertex()} and {@link #getEndVertex()}.
+     */
+    public final class Edit {
+        // Vertices added or moved within the edit, their index entries are updated on commit.
+        private final IntList mMovedVertices = new IntList();
+        private boolean[] mMoved = new boolean[0];
+
+        private Edit() {
+        }
+
+        /**
+         * @return id of the new intermediate vertex.
+         */
+        public int addVertex(float x, float y) {
+            checkOpen();
+            int vertex = mVertexModel.add(VertexModel.TYPE_INTERMEDIATE, x, y);
+            mConnectivity.addVertex(vertex);
+            updateCounters();
+            if (mJournal != null) {
+                mJournal.addVertex(vertex, VertexModel.TYPE_INTERMEDIATE, x, y);
+            }
+            if (mVertexRenderer == null) {
+                VertexView view = new VertexView(getContext());
+                addViewInLayout(view, -1, generateDefaultLayoutParams(), true);
+                bindVertexView(vertex, view);
+            }
+            markMoved(vertex);
+            return vertex;
+        }
+
+        public void moveVertex(int vertex, float x, float y) {
+            checkVertex(vertex);
+            mVertexModel.setPosition(vertex, x, y);
+            if (mJournal != null) {
+                mJournal.moveVertex(vertex, x, y);
+            }
+            markMoved(vertex);
+        }
 
-        public Connector(VertexView v1, VertexView v2) {
-            this.v1 = v1;
-            this.v2 = v2;
+        /**
+         * Removes the vertex and its edges.
+         */
+        public void removeVertex(int vertex) {
+            checkVertex(vertex);
+            GraphLayout.this.removeVertex(vertex);
+            if (mJournal != null) {
+                mJournal.removeVertex(vertex);
+            }
         }
 
+        /**
+         * Moves edges of victim over to absorber and removes victim.
+         */
+        public void mergeVertices(int absorber, int victim) {
+            checkVertex(absorber);
+            checkVertex(victim);
+            if (absorber == victim) {
+                throw new IllegalArgumentException("Vertex " + victim + " can not absorb itself");
+            }
+            GraphLayout.this.mergeVertices(absorber, victim);
+        }
+
+        /**
+         * @return false if vertices are the same or connected already.
+         */
+        public boolean addEdge(int vertex1, int vertex2) {
+            checkVertex(vertex1);
+            checkVertex(vertex2);
+            if (GraphLayout.this.addEdge(vertex1, vertex2) < 0) {
+                return false;
+            }
+            if (mJournal != null) {
+                mJournal.addEdge(vertex1, vertex2);
+            }
+            return true;
+        }
+
+        /**
+         * @return false if vertices are not connected.
+         */
+        public boolean removeEdge(int vertex1, int vertex2) {
+            checkVertex(vertex1);
+            checkVertex(vertex2);
+            int edge = mEdges.findEdge(vertex1, vertex2);
+            if (edge < 0) {
+                return false;
+            }
+            GraphLayout.this.removeEdge(edge);
+            if (mJournal != null) {
+                mJournal.removeEdge(vertex1, vertex2);
+            }
+            return true;
+        }
+
+        /**
+         * Updates the index, layout and shortest path for all changes of the edit and closes it.
+         */
+        public void commit() {
+            checkOpen();
+            for (int i = 0, size = mMovedVertices.size(); i < size; i++) {
+                int vertex = mMovedVertices.get(i);
+                // Vertex might have been removed after moving.
+                if (mVertexModel.contains(vertex)) {
+                    mVertexIndex.put(vertex, mVertexModel.getX(vertex), mVertexModel.getY(vertex));
+                }
+            }
+            mEdit = null;
+            commitJournal();
+            onGraphReplaced();
+        }
+
+        private void markMoved(int vertex) {
+            if (vertex >= mMoved.length) {
+                mMoved = Arrays.copyOf(mMoved, Math.max(vertex + 1, mMoved.length << 1));
+            }
+            if (!mMoved[vertex]) {
+                mMoved[vertex] = true;
+                mMovedVertices.add(vertex);
+            }
+        }
+
+        private void checkVertex(int vertex) {
+            checkOpen();
+            if (vertex < 0 || !mVertexModel.contains(vertex)) {
+                throw new IllegalArgumentException("Unknown vertex " + vertex);
+            }
+        }
+
+        private void checkOpen() {
+            if (mEdit != this) {
+                throw new IllegalStateException("Edit is committed already");
+            }
+        }
+    }
+
+    private final class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+        private float mFocusX;
+        private float mFocusY;
+
         @Override
-        public boolean equals(Object o) {
-            Connector other = (Connector) o;
-            return this == other || (v1 == other.v1 && v2 == other.v2) || (v1 == other.v2 && v2 == other.v1);
+        public boolean onScaleBegin(ScaleGestureDetector detector) {
+            mFocusX = detector.getFocusX();
+            mFocusY = detector.getFocusY();
+            return true;
         }
 
-        public boolean isCyclic() {
-            return v1 == v2;
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            // Moving fingers together pans the viewport as well.
+            float focusX = detector.getFocusX(), focusY = detector.getFocusY();
+            mViewport.pan(focusX - mFocusX, focusY - mFocusY);
+            mViewport.zoom(detector.getScaleFactor(), focusX, focusY);
+            mFocusX = focusX;
+            mFocusY = focusY;
+            onViewportChanged();
+            return true;
         }
+    }
 
-        public boolean connects(Vertex vertex1, Vertex vertex2) {
-            String v1Id = v1.getVertexId();
-            String v2Id = v2.getVertexId();
-            return (vertex1.getId().equals(v1Id) && vertex2.getId().equals(v2Id)) ||
-                    (vertex1.getId().equals(v2Id) && vertex2.getId().equals(v1Id));
+    private final class CheckForLongPress implements Runnable {
+        @Override
+        public void run() {
+            performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+            mWaitingForLongPress = false;
+            startNewVertex(mTouchDownVertex);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,73 @@
+package com.exaper.byog;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+
+/**
+ * Compacts a {@link GraphJournal} without blocking the main thread: the graph is encoded on the main thread, written
+ * on a background one, and the journal is started over on the main thread again. A compaction requested while one is
+ * in progress is started once it finishes, so that the latest graph is saved.
+ */
+public class JournalCompactor {
+    private static final String TAG = "JournalCompactor";
+
+    private final VertexModel mVertices;
+    private final EdgeStore mEdges;
+    private final Handler mMainHandler;
+    // Journal to compact again once its compaction in progress finishes.
+    private GraphJournal mPendingJournal;
+
+    public JournalCompactor(VertexModel vertices, EdgeStore edges) {
+        mVertices = vertices;
+        mEdges = edges;
+        mMainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Starts compacting the journal with the graph as it is now.
+     *
+     * @throws IllegalStateException if the journal is not recording.
+     */
+    public void compact(final GraphJournal journal) {
+        if (journal.isCompacting()) {
+            mPendingJournal = journal;
+            return;
+        }
+        final GraphJournal.Compaction compaction = journal.beginCompaction(mVertices, mEdges);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    compaction.write();
+                } catch (IOException e) {
+                    Log.w(TAG, "Unable to save graph", e);
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        finish(journal, compaction);
+                    }
+                });
+            }
+        }, TAG).start();
+    }
+
+    private void finish(GraphJournal journal, GraphJournal.Compaction compaction) {
+        try {
+            journal.finishCompaction(compaction);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to start graph journal over", e);
+        }
+        if (mPendingJournal == journal) {
+            mPendingJournal = null;
+            if (journal.isRecording()) {
+                compact(journal);
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.exaper.byog;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Solves shortest path on a background thread. Only the latest submitted snapshot is solved: snapshots submitted
+ * while solver is busy replace each other. Results are delivered on the main thread. Snapshots are pooled and paths
+ * equal to the previous ones are delivered as the same arrays, so solving while a vertex is dragged allocates nothing
+ * on the main thread.
+ * <p>
+ * Alternative paths, if asked for, are found with {@link KShortestPaths} running spur searches on a thread per core.
+ * <p>
+ * Time taken by every solve and vertices settled by shortest path queries are recorded in {@link Metrics}.
+ */
+public class PathSolver {
+    public interface Callback {
+        /**
+         * @param structureVersion structure version of the solved snapshot.
+         * @param shortestPath     vertices of the shortest path in the snapshot or null if there is no path.
+         * @param alternativePaths vertices of the next shortest loopless paths in order of length, there might be
+         *                         fewer of them than asked for.
+         */
+        void onShortestPathSolved(int structureVersion, int[] shortestPath, int[][] alternativePaths);
+    }
+
+    public static final String METRIC_SOLVE = "solve";
+    public static final String METRIC_SETTLED_VERTICES = "settled_vertices";
+
+    private static final int[][] NO_PATHS = new int[0][];
+    // Latest snapshot and ones read by the current and a stopped worker, plus one to fill.
+    private static final int SNAPSHOT_POOL_SIZE = 4;
+
+    private final Callback mCallback;
+    private final Handler mMainHandler;
+    private final AtomicReference<GraphSnapshot> mPendingSnapshot;
+    private final LatencyHistogram mSolveLatency;
+    private final AtomicLong mSettledVertices;
+    private GraphSnapshot mLatestSnapshot;
+    private final GraphSnapshot[] mSnapshotPool = new GraphSnapshot[SNAPSHOT_POOL_SIZE];
+    private volatile PathSearch mPathSearch;
+    private volatile int mAlternativePathCount;
+    private Worker mWorker;
+
+    public PathSolver(Callback callback, Metrics metrics) {
+        mCallback = callback;
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mPendingSnapshot = new AtomicReference<>();
+        mSolveLatency = metrics.histogram(METRIC_SOLVE);
+        mSettledVertices = metrics.counter(METRIC_SETTLED_VERTICES);
+    }
+
+    public void start() {
+        if (mWorker == null) {
+            mWorker = new Worker();
+            // Snapshot taken by the previous worker might have never been solved.
+            if (mLatestSnapshot != null) {
+                resubmitLatest();
+                mWorker.schedule();
+            }
+        }
+    }
+
+    public void stop() {
+        if (mWorker != null) {
+            mWorker.quit();
+            mWorker = null;
+            mMainHandler.removeCallbacksAndMessages(null);
+        }
+    }
+
+    /**
+     * @param pathSearch search to use or null for incrementally maintained shortest path tree.
+     */
+    public void setPathSearch(PathSearch pathSearch) {
+        mPathSearch = pathSearch;
+        if (mLatestSnapshot != null) {
+            resubmitLatest();
+        }
+    }
+
+    /**
+     * @param count number of alternative paths to find besides the shortest one.
+     */
+    public void setAlternativePathCount(int count) {
+        mAlternativePathCount = count;
+        if (mLatestSnapshot != null) {
+            resubmitLatest();
+        }
+    }
+
+    /**
+     * Returns a snapshot not used by the solver, positions of all of its vertices have to be set before it is
+     * submitted. Snapshots are recycled once they are solved or replaced by a newer one.
+     */
+    public GraphSnapshot obtainSnapshot(int structureVersion, int[] edges, int vertexCount, int start, int end) {
+        GraphSnapshot[] pool = mSnapshotPool;
+        for (int i = 0; i < pool.length; i++) {
+            if (pool[i] == null) {
+                pool[i] = new GraphSnapshot(structureVersion, edges, new float[vertexCount << 1], start, end);
+                return pool[i];
+            }
+            if (pool[i] != mLatestSnapshot && !pool[i].isInUse()) {
+                pool[i].reset(structureVersion, edges, vertexCount, start, end);
+                return pool[i];
+            }
+        }
+        // Stopped workers still hold the rest, this one is left to the garbage collector.
+        return new GraphSnapshot(structureVersion, edges, new float[vertexCount << 1], start, end);
+    }
+
+    /**
+     * Hands the snapshot over to the solver. It must not be changed or submitted again afterwards.
+     */
+    public void submit(GraphSnapshot snapshot) {
+        mLatestSnapshot = snapshot;
+        snapshot.setInUse(true);
+        GraphSnapshot replaced = mPendingSnapshot.getAndSet(snapshot);
+        if (replaced == null) {
+            if (mWorker != null) {
+                mWorker.schedule();
+            }
+        } else {
+            // Worker never got to it.
+            replaced.setInUse(false);
+        }
+    }
+
+    /**
+     * Submits a copy of the latest snapshot, the snapshot itself might still be read by a worker.
+     */
+    private void resubmitLatest() {
+        GraphSnapshot latest = mLatestSnapshot;
+        GraphSnapshot snapshot = obtainSnapshot(latest.getStructureVersion(), latest.getEdges(),
+                latest.getVertexCount(), latest.getStart(), latest.getEnd());
+        for (int v = 0, vertexCount = latest.getVertexCount(); v < vertexCount; v++) {
+            snapshot.setPosition(v, latest.getX(v), latest.getY(v));
+        }
+        submit(snapshot);
+    }
+
+    private void publish(final Worker worker, final int structureVersion, final int[] shortestPath,
+                         final int[][] alternativePaths) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Drop results of the worker which was stopped meanwhile.
+                if (mWorker == worker) {
+                    mCallback.onShortestPathSolved(structureVersion, shortestPath, alternativePaths);
+                }
+            }
+        });
+    }
+
+    private final class Worker implements Runnable {
+        // Engine and k shortest paths are confined to the worker thread.
+        private final ShortestPathEngine mEngine;
+        private final KShortestPaths mKShortestPaths;
+        private final ExecutorService mExecutor;
+        // Paths published last, published again while paths stay the same.
+        private int[] mShortestPath;
+        private int[][] mAlternativePaths = NO_PATHS;
+        private final HandlerThread mThread;
+        private final Handler mHandler;
+
+        Worker() {
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            mEngine = new ShortestPathEngine();
+            mKShortestPaths = new KShortestPaths(parallelism);
+            // Threads are started on the first k shortest paths query.
+            mExecutor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "PathSolverSpurs");
+                }
+            });
+            mThread = new HandlerThread("PathSolver", Process.THREAD_PRIORITY_BACKGROUND);
+            mThread.start();
+            mHandler = new Handler(mThread.getLooper());
+        }
+
+        void schedule() {
+            mHandler.post(this);
+        }
+
+        void quit() {
+            mThread.quit();
+            mExecutor.shutdownNow();
+        }
+
+        @Override
+        public void run() {
+            GraphSnapshot snapshot = mPendingSnapshot.getAndSet(null);
+            if (snapshot != null) {
+                long startTime = System.nanoTime();
+                long settledVertexCount = mEngine.getSettledVertexCount();
+                solve(snapshot);
+                mSettledVertices.addAndGet(mEngine.getSettledVertexCount() - settledVertexCount);
+                mSolveLatency.record(System.nanoTime() - startTime);
+            }
+        }
+
+        private void solve(GraphSnapshot snapshot) {
+            int structureVersion = snapshot.getStructureVersion();
+            mEngine.setPathSearch(mPathSearch);
+            mEngine.update(snapshot);
+            // Engine keeps its own copy of the graph.
+            snapshot.setInUse(false);
+            IntList shortestPath = mEngine.getShortestPath();
+            if (shortestPath == null) {
+                publish(this, structureVersion, null, NO_PATHS);
+                return;
+            }
+            int[][] alternativePaths = NO_PATHS;
+            int alternativePathCount = mAlternativePathCount;
+            if (alternativePathCount > 0) {
+                try {
+                    List<int[]> paths = mKShortestPaths.findPaths(mEngine.getGraph(), mEngine.getGraphVersion(),
+                            shortestPath, alternativePathCount + 1, mExecutor);
+                    alternativePaths = isPublished(paths) ? mAlternativePaths
+                            : paths.subList(1, paths.size()).toArray(NO_PATHS);
+                } catch (InterruptedException | RejectedExecutionException e) {
+                    // Stopped.
+                    return;
+                }
+            }
+            if (mShortestPath == null || !isPublished(shortestPath)) {
+                mShortestPath = shortestPath.toArray();
+            }
+            mAlternativePaths = alternativePaths;
+            publish(this, structureVersion, mShortestPath, alternativePaths);
+        }
+
+        private boolean isPublished(IntList shortestPath) {
+            if (shortestPath.size() != mShortestPath.length) {
+                return false;
+            }
+            for (int i = 0; i < mShortestPath.length; i++) {
+                if (shortestPath.get(i) != mShortestPath[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return true if all but the first of paths are the published alternative paths.
+         */
+        private boolean isPublished(List<int[]> paths) {
+            if (paths.size() - 1 != mAlternativePaths.length) {
+                return false;
+            }
+            for (int i = 0; i < mAlternativePaths.length; i++) {
+                if (paths.get(i + 1) != mAlternativePaths[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.exaper.byog;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+/**
+ * Draws vertices of {@link VertexModel} directly on the {@link GraphLayout} canvas, looking the same as
+ * {@link VertexView} does. Used in virtual rendering mode instead of a view per vertex.
+ * <p>
+ * Vertices keep their size on screen regardless of the {@link Viewport} scale. Below {@link #LOD_SCALE} only center
+ * dots are drawn, batched per color, and vertices falling into the same small screen cell are drawn once, so dense
+ * clusters cost as much as the pixels they cover.
+ */
+final class VertexRenderer {
+    static final float LOD_SCALE = 0.5f;
+
+    private final Paint mPaint;
+    private final int[] mColors = new int[3];
+    private final int mSize;
+    private final float mHighlightMultiplier;
+    private final Viewport mViewport;
+    // Screen cells already covered by a dot, cleared via mOccupiedCellList after each frame.
+    private final IntList mOccupiedCellList = new IntList();
+    private boolean[] mOccupiedCells = new boolean[0];
+    private float[] mPoints = new float[64];
+
+    VertexRenderer(Context context, Viewport viewport) {
+        TypedArray typedArray = context.obtainStyledAttributes(null, R.styleable.VertexView, 0,
+                R.style.VertexViewStyle);
+        int color = typedArray.getColor(R.styleable.VertexView_outlineColor, Color.WHITE);
+        mSize = typedArray.getDimensionPixelSize(R.styleable.VertexView_size, 0);
+        mHighlightMultiplier = typedArray.getFloat(R.styleable.VertexView_highlightSizeMultiplier, 1);
+        typedArray.recycle();
+        mViewport = viewport;
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+        for (int i = 0; i < mColors.length; i++) {
+            mColors[i] = color;
+        }
+    }
+
+    int getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return size of the largest vertex, temporary vertices are enlarged.
+     */
+    int getMaxSize() {
+        return (int) Math.ceil(mSize * Math.max(1, mHighlightMultiplier));
+    }
+
+    /**
+     * @param type one of VertexModel.TYPE_* constants.
+     */
+    void setColor(int type, int color) {
+        mColors[type] = color;
+    }
+
+    void draw(Canvas canvas, VertexModel model, IntList vertices, int width, int height) {
+        if (mViewport.getScale() < LOD_SCALE) {
+            drawDots(canvas, model, vertices, width, height);
+        } else {
+            drawCircles(canvas, model, vertices);
+        }
+    }
+
+    /**
+     * Draws outline circles in one pass and center dots in another, so paint style is switched once.
+     */
+    private void drawCircles(Canvas canvas, VertexModel model, IntList vertices) {
+        Paint paint = mPaint;
+        Viewport viewport = mViewport;
+        int size = vertices.size();
+        paint.setStyle(Paint.Style.STROKE);
+        for (int i = 0; i < size; i++) {
+            int vertex = vertices.get(i);
+            float radius = getRadius(model, vertex);
+            setColor(model, vertex);
+            paint.setStrokeWidth(radius / 3);
+            canvas.drawCircle(viewport.toScreenX(model.getX(vertex)), viewport.toScreenY(model.getY(vertex)),
+                    radius - radius / 6 - 1, paint);
+        }
+        paint.setStyle(Paint.Style.FILL);
+        for (int i = 0; i < size; i++) {
+            int vertex = vertices.get(i);
+            setColor(model, vertex);
+            canvas.drawCircle(viewport.toScreenX(model.getX(vertex)), viewport.toScreenY(model.getY(vertex)),
+                    getRadius(model, vertex) / 3 - 1, paint);
+        }
+    }
+
+    private void drawDots(Canvas canvas, VertexModel model, IntList vertices, int width, int height) {
+        Paint paint = mPaint;
+        Viewport viewport = mViewport;
+        float dotSize = Math.max(1, mSize / 3);
+        int cellSize = (int) dotSize;
+        int columns = width / cellSize + 1, rows = height / cellSize + 1;
+        if (mOccupiedCells.length < columns * rows) {
+            mOccupiedCells = new boolean[columns * rows];
+        }
+        if (mPoints.length < vertices.size() << 1) {
+            mPoints = new float[vertices.size() << 2];
+        }
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeWidth(dotSize);
+        // Intermediate vertices go first so that start and end ones stay on top.
+        for (int type = VertexModel.TYPE_INTERMEDIATE; type <= VertexModel.TYPE_END; type++) {
+            int pointCount = 0;
+            for (int i = 0, size = vertices.size(); i < size; i++) {
+                int vertex = vertices.get(i);
+                if (model.getType(vertex) != type) {
+                    continue;
+                }
+                float x = viewport.toScreenX(model.getX(vertex)), y = viewport.toScreenY(model.getY(vertex));
+                int column = (int) x / cellSize, row = (int) y / cellSize;
+                if (type == VertexModel.TYPE_INTERMEDIATE && x >= 0 && y >= 0 && column < columns && row < rows) {
+                    int cell = row * columns + column;
+                    if (mOccupiedCells[cell]) {
+                        continue;
+                    }
+                    mOccupiedCells[cell] = true;
+                    mOccupiedCellList.add(cell);
+                }
+                mPoints[pointCount++] = x;
+                mPoints[pointCount++] = y;
+            }
+            if (pointCount > 0) {
+                paint.setColor(mColors[type]);
+                canvas.drawPoints(mPoints, 0, pointCount, paint);
+            }
+        }
+        paint.setStrokeCap(Paint.Cap.BUTT);
+        for (int i = 0, size = mOccupiedCellList.size(); i < size; i++) {
+            mOccupiedCells[mOccupiedCellList.get(i)] = false;
+        }
+        mOccupiedCellList.clear();
+    }
+
+    private float getRadius(VertexModel model, int vertex) {
+        return model.isTemporary(vertex) ? mSize * mHighlightMultiplier / 2 : mSize / 2f;
+    }
+
+    private void setColor(VertexModel model, int vertex) {
+        mPaint.setColor(mColors[model.getType(vertex)]);
+        mPaint.setAlpha(model.isTemporary(vertex) ? 128 : 255);
+    }
+}
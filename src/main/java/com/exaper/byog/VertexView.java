@@ -8,8 +8,6 @@ import android.graphics.Paint;
 import android.util.AttributeSet;
 import android.view.View;
 
-import java.util.UUID;
-
 public class VertexView extends View {
     public enum VertexType {
         INTERMEDIATE,
@@ -17,7 +15,6 @@ public class VertexView extends View {
         END
     }
 
-    private final String mId;
     private final Paint mAreaPaint;
     private final VertexType mType;
     private final int mSize;
@@ -25,6 +22,7 @@ public class VertexView extends View {
     private final int mOutlineColor;
 
     private boolean mTemporary;
+    private int mVertexId = -1;
 
     public VertexView(Context context) {
         this(context, null);
@@ -45,11 +43,21 @@ public class VertexView extends View {
         mSize = typedArray.getDimensionPixelSize(R.styleable.VertexView_size, 0);
         mHighlightMultiplier = typedArray.getFloat(R.styleable.VertexView_highlightSizeMultiplier, 1);
         typedArray.recycle();
-        mId = UUID.randomUUID().toString();
     }
 
-    public String getVertexId() {
-        return mId;
+    /**
+     * @return id assigned by {@link GraphLayout} or -1 if vertex is not attached to it.
+     */
+    public int getVertexId() {
+        return mVertexId;
+    }
+
+    void setVertexId(int vertexId) {
+        mVertexId = vertexId;
+    }
+
+    public int getOutlineColor() {
+        return mOutlineColor;
     }
 
     public VertexType getVertexType() {